@@ -2,6 +2,7 @@ package business;
 
 import business.entities.Aventura;
 import business.entities.Combat;
+import business.entities.InstanciaMonstre;
 import business.entities.Monstre;
 import business.entities.personatge.Aventurer;
 import business.entities.personatge.Cleric;
@@ -12,6 +13,8 @@ import persistence.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Clase que gestiona las aventuras y los combates.
@@ -20,18 +23,30 @@ public class AdventureManager {
 
     public static final int LOCAL_DATA = 1;
     public static final int CLOUD_DATA = 2;
+    public static final int BTREE_DATA = 3;
+    public static final int JDBC_DATA = 4;
+    //Número de aventuras que se muestran en cada página del listado
+    public static final int PAGE_SIZE = 20;
 
 
     private int dataType;
-    private AventuresDAO aventuresDAO;
-    private MonstresDAO monstresDAO;
+    private AventuresCache aventuresDAO;
+    private MonstresCache monstresDAO;
     private PersonatgesDAO personatgesDAO;
+    //Experiencia de los personajes, compartida con las demás aventuras que usan los mismos personajes
+    private XpRegistry xpRegistry;
 
     //variables auxiliares
     private Aventura aventura;
     private Combat combat;
+    //Monstruos del combate que se está jugando
+    private ArrayList<InstanciaMonstre> enemics;
     private ArrayList<Monstre> monstresAgrupats;
     private Monstre monstre;
+    //Catálogo del último listado de monstruos, para que el índice elegido sea el del monstruo que se mostró
+    private MonstreCatalog catalog;
+    //Página actual del listado de aventuras
+    private Page<String> aventuresPage;
 
     //En este array los objetos ya han sido parseados a sus subclases (Aventurer, ...)
     private ArrayList<Personatge> party;
@@ -54,34 +69,80 @@ public class AdventureManager {
      * Inicializa aventuresDAO, monstresDAO y personatgesDAO con su clase pertinente
      * dependiendo del tipo de datos utilizado en la aplicación.
      *
-     * @param dataType El tipo de datos a establecer. Puede ser LOCAL_DATA o REMOTE_DATA.
+     * @param dataType El tipo de datos a establecer. Puede ser LOCAL_DATA, REMOTE_DATA, BTREE_DATA o JDBC_DATA.
      * @throws BusinessException Si ocurre un error al establecer el tipo de datos.
      */
     public void setDataType(int dataType) throws BusinessException {
         this.dataType = dataType;
+        //El catálogo era del almacenamiento anterior
+        this.catalog = null;
         if (dataType == LOCAL_DATA) {
-            this.aventuresDAO = new JSONAventuresDAO();
-            this.monstresDAO = new JSONMonstresDAO();
-            this.personatgesDAO = new JSONPersonatgesDAO();
+            this.aventuresDAO = AventuresCache.local();
+            this.monstresDAO = MonstresCache.local();
+            PersonatgesRoster roster = PersonatgesRoster.of(PersonatgesDAOFactory.getLocalDAO());
+            this.personatgesDAO = roster;
+            this.xpRegistry = roster.xpRegistry();
+        } else if (dataType == BTREE_DATA) {
+            try {
+                BTreeStore store = BTreeStore.getDefault();
+                this.aventuresDAO = AventuresCache.of(store.getAventuresDAO());
+                this.monstresDAO = MonstresCache.of(store.getMonstresDAO());
+                PersonatgesRoster roster = PersonatgesRoster.of(store.getPersonatgesDAO());
+                this.personatgesDAO = roster;
+                this.xpRegistry = roster.xpRegistry();
+            } catch (PersistenceException e) {
+                throw new BusinessException("Error opening the data file.", e);
+            }
+        } else if (dataType == JDBC_DATA) {
+            try {
+                JdbcStore store = JdbcStore.getDefault();
+                this.aventuresDAO = AventuresCache.of(store.getAventuresDAO());
+                this.monstresDAO = MonstresCache.of(store.getMonstresDAO());
+                PersonatgesRoster roster = PersonatgesRoster.of(store.getPersonatgesDAO());
+                this.personatgesDAO = roster;
+                this.xpRegistry = roster.xpRegistry();
+            } catch (PersistenceException e) {
+                throw new BusinessException("Error opening the database.", e);
+            }
         } else {
             try {
-                this.aventuresDAO = new AventuresAPI();
-                this.monstresDAO = new MonstresAPI();
-                this.personatgesDAO = new PersonatgesAPI();
+                this.aventuresDAO = AventuresCache.cloud();
+                this.monstresDAO = MonstresCache.cloud();
+                PersonatgesRoster roster = PersonatgesRoster.cloud();
+                this.personatgesDAO = roster;
+                this.xpRegistry = roster.xpRegistry();
             } catch (PersistenceException e) {
                 throw new BusinessException("Error connecting with the API.", e);
             }
         }
     }
 
+    /**
+     * Establece el tipo de datos y carga en paralelo los monstruos y las aventuras, para comprobar que
+     * el almacenamiento funciona y dejar los datos en las cachés.
+     *
+     * @param dataType El tipo de datos a establecer.
+     * @param executor Ejecutor de las tareas de carga.
+     * @return El resultado de la carga, que acaba con una BusinessException si falla.
+     */
+    public CompletableFuture<Void> load(int dataType, Executor executor) {
+        return AsyncTasks.run(() -> setDataType(dataType), executor)
+                .thenCompose(v -> CompletableFuture.allOf(
+                        AsyncTasks.run(this::readMonsters, executor),
+                        AsyncTasks.run(this::getAventures, executor)));
+    }
+
     /**
      * Crea una nueva aventura con el nombre y la cantidad de encuentros especificados.
+     * Se comprueba que se puede obtener el catálogo de monstruos antes de empezar a crearla.
      *
      * @param name      nombre de la aventura
      * @param encounters cantidad de encuentros en la aventura
+     * @throws BusinessException si ocurre un error al leer el archivo de monstruos
      */
-    public void createAdventure(String name, int encounters) {
+    public void createAdventure(String name, int encounters) throws BusinessException {
         aventura = new Aventura(name, encounters);
+        catalog = getCatalog();
     }
 
     /**
@@ -99,6 +160,7 @@ public class AdventureManager {
 
     /**
      * Obtiene los monstruos disponibles y los muestra como una cadena de texto.
+     * Cada listado utiliza el catálogo actual (ver getCatalog), que es el que se usa después para elegir el monstruo.
      * Si ocurre un error al leer el archivo de monstruos, se lanza una BusinessException.
      *
      * @return cadena de texto con los monstruos disponibles
@@ -106,16 +168,16 @@ public class AdventureManager {
      */
     public String getMonstres() throws BusinessException {
         //muestra todos los tipos de monstruos (en memoria)
-        String monstres = "";
-        ArrayList<Monstre> monstresArrayList = readMonsters();
+        StringBuilder monstres = new StringBuilder();
+        MonstreCatalog monstresCatalog = getCatalog();
+        catalog = monstresCatalog;
 
-        int i = 0;
-        for(Monstre m:monstresArrayList) {
-            monstres += (i+1) + ". " + m.getName() + " (" + m.getChallenge() + ")\n";
-            i++;
+        for (int i = 0; i < monstresCatalog.size(); i++) {
+            Monstre m = monstresCatalog.get(i);
+            monstres.append(i + 1).append(". ").append(m.getName()).append(" (").append(m.getChallenge()).append(")\n");
         }
 
-        return monstres;
+        return monstres.toString();
     }
 
     /**
@@ -171,20 +233,33 @@ public class AdventureManager {
     }
 
     /**
-     * Devuelve el nombre del monstruo en la posición dada.
+     * Devuelve el nombre del monstruo en la posición dada del último listado de monstruos.
      *
      * @param index El índice del monstruo.
      * @return El nombre del monstruo.
      * @throws BusinessException Si ocurre un error al obtener el nombre del monstruo.
      */
     public String getMonsterName(int index) throws BusinessException {
-        ArrayList<Monstre> monstresArrayList;
-        monstresArrayList = readMonsters();
+        MonstreCatalog monstresCatalog = catalog != null ? catalog : getCatalog();
 
-        monstre = monstresArrayList.get(index);
+        monstre = monstresCatalog.get(index);
         return monstre.getName();
     }
 
+    /**
+     * Obtiene el catálogo de monstruos. Solo se vuelve a leer del almacenamiento si ha cambiado.
+     *
+     * @return El catálogo de monstruos.
+     * @throws BusinessException Si ocurre un error al intentar obtener los monstruos desde el almacenamiento.
+     */
+    public MonstreCatalog getCatalog() throws BusinessException {
+        try {
+            return monstresDAO.getCatalog();
+        } catch (PersistenceException e) {
+            throw new BusinessException("Error trying to get monsters from storage.", e);
+        }
+    }
+
     /**
      * Lee la lista de monstruos desde la persistencia.
      *
@@ -267,28 +342,72 @@ public class AdventureManager {
 
         } catch (PersistenceException e) {
             throw new BusinessException("Error trying to create Adventure in storage.", e);
+        } finally {
+            //La creación de la aventura ha acabado: el siguiente listado vuelve a leer el catálogo
+            catalog = null;
         }
 
     }
 
     /**
-     * Muestra las aventuras disponibles.
+     * Muestra la primera página de las aventuras disponibles.
      *
-     * @return Una cadena de texto que muestra las aventuras disponibles.
-     * @throws BusinessException Si ocurre un error al obtener las aventuras.
+     * @return Una cadena con los nombres de las aventuras de la primera página.
+     * @throws BusinessException Si ocurre un error al abrir el archivo de aventuras.
      */
     public String showAdventures() throws BusinessException {
-        String aventuresTxt = "";
-        ArrayList<Aventura> aventures = getAventures();
+        return readAdventuresPage(null);
+    }
 
-        int i = 0;
-        for (Aventura a:aventures) {
-            aventuresTxt += "\t" +(i+1)+ ". " +a.getName()+ "\n";
-            i++;
+    /**
+     * Muestra la siguiente página de las aventuras disponibles.
+     *
+     * @return Una cadena con los nombres de las aventuras de la siguiente página.
+     * @throws BusinessException Si ocurre un error al abrir el archivo de aventuras.
+     */
+    public String nextAdventuresPage() throws BusinessException {
+        return readAdventuresPage(aventuresPage.getNextCursor());
+    }
+
+    /**
+     * Indica si el listado de aventuras tiene más páginas.
+     *
+     * @return true si hay una página siguiente.
+     */
+    public boolean hasMoreAdventures() {
+        return aventuresPage != null && aventuresPage.hasNext();
+    }
+
+    /**
+     * Devuelve el número de aventuras de la página mostrada.
+     *
+     * @return El número de aventuras de la página.
+     */
+    public int getAdventuresPageLength() {
+        return aventuresPage.getItems().size();
+    }
+
+    /**
+     * Lee una página de nombres de aventuras.
+     *
+     * @param cursor Cursor de la página, o null para la primera.
+     * @return Una cadena con los nombres de la página.
+     * @throws BusinessException Si ocurre un error al abrir el archivo de aventuras.
+     */
+    private String readAdventuresPage(String cursor) throws BusinessException {
+        try {
+            //Solo hacen falta los nombres, no las aventuras completas
+            aventuresPage = aventuresDAO.getAventuraNames(cursor, PAGE_SIZE);
+        } catch (PersistenceException e) {
+            throw new BusinessException("Error trying to get Adventures from storage.", e);
         }
 
-        return aventuresTxt;
+        StringBuilder aventuresTxt = new StringBuilder();
+        for (int i = 0; i < aventuresPage.getItems().size(); i++) {
+            aventuresTxt.append("\t").append(i + 1).append(". ").append(aventuresPage.getItems().get(i)).append("\n");
+        }
 
+        return aventuresTxt.toString();
     }
 
     /**
@@ -298,19 +417,28 @@ public class AdventureManager {
      * @throws BusinessException Si ocurre un error al abrir el archivo de aventuras.
      */
     public int getAventuresLength() throws BusinessException {
-        return getAventures().size();
+        try {
+            return aventuresDAO.size();
+        } catch (PersistenceException e) {
+            throw new BusinessException("Error trying to get Adventures from storage.", e);
+        }
     }
 
 
     /**
      * Guarda la aventura en memoria y devuelve el nombre de esta.
      *
-     * @param index El índice de la aventura.
+     * @param index El índice de la aventura dentro de la página mostrada.
      * @return El nombre de la aventura.
      * @throws BusinessException Si ocurre un error al abrir el archivo de aventuras.
      */
     public String setAdventure(int index) throws BusinessException {
-        aventura = getAventures().get(index);
+        try {
+            //Copia de la aventura guardada en la caché, para poder jugarla
+            aventura = aventuresDAO.getAventura(aventuresPage.getOffset() + index);
+        } catch (PersistenceException e) {
+            throw new BusinessException("Error trying to get Adventures from storage.", e);
+        }
         return aventura.getName();
     }
 
@@ -346,35 +474,26 @@ public class AdventureManager {
     /**
      * Agrega un personaje al grupo de aventureros.
      *
-     * @param index El índice del personaje.
-     * @throws BusinessException Si ocurre un error al abrir el archivo de personajes.
+     * @param name   El nombre del personaje.
+     * @param player El nombre del jugador del personaje.
+     * @throws BusinessException Si ocurre un error al abrir el archivo de personajes o el personaje no existe.
      */
-    public void addCharacterToParty(int index) throws BusinessException {
+    public void addCharacterToParty(String name, String player) throws BusinessException {
         Personatge p;
         try {
-            p = personatgesDAO.readPersonatges().get(index);
+            p = personatgesDAO.findByKey(name, player);
         } catch (PersistenceException e) {
             throw new BusinessException("Error reading the Characters from Storage.", e);
         }
-
-        //Aventurers
-        if (p.getClase().equals(Mage.MAGE)) {
-            //Mages
-            Mage m = new Mage(p.getName(), p.getPlayer(), p.getNivell(), p.getClase(), p.getXp(),
-                    p.getBody(), p.getMind(), p.getSpirit()) ;//meter atributos de p (no se puede casting)
-            party.add(m);
-        } else if (p.getClase().equals(Cleric.CLERIC) || p.getClase().equals(Cleric.PALADIN)) {
-            //Clerics
-            Cleric c = new Cleric(p.getName(), p.getPlayer(), p.getNivell(), p.getClase(), p.getXp(),
-                    p.getBody(), p.getMind(), p.getSpirit()) ;//meter atributos de p (no se puede casting)
-            party.add(c);
-        } else {
-            Aventurer a = new Aventurer(p.getName(), p.getPlayer(), p.getNivell(), p.getClase(), p.getXp(),
-                    p.getBody(), p.getMind(), p.getSpirit()) ;//meter atributos de p (no se puede casting)
-            party.add(a);
-
+        if (p == null) {
+            throw new BusinessException("Error: The character " + name + " no longer exists.", null);
         }
 
+        //La experiencia del registro puede ser más nueva que la guardada
+        p.sincronitzarXP(xpRegistry.getXp(p));
+
+        //El DAO ya devuelve el personaje como Mage, Cleric o Aventurer según su clase
+        party.add(p);
     }
 
     /**
@@ -384,6 +503,7 @@ public class AdventureManager {
      */
     public void setCombat(int index) {
         combat = aventura.getCombats().get(index);
+        enemics = combat.createInstancies();
     }
 
     /**
@@ -464,7 +584,7 @@ public class AdventureManager {
 
         combatients = new ArrayList<>();
         combatients.addAll(party);
-        combatients.addAll(combat.getMonstres());
+        combatients.addAll(enemics);
 
         //ordenamos el array de combatientes segun su valor de iniciativa
         Collections.sort(combatients, new Comparator<Object>() {
@@ -472,8 +592,8 @@ public class AdventureManager {
             public int compare(Object o1, Object o2) {
                 int iniciativa1, iniciativa2;
 
-                if (o1 instanceof Monstre) {
-                    iniciativa1 = ((Monstre) o1).getInitiative();
+                if (o1 instanceof InstanciaMonstre) {
+                    iniciativa1 = ((InstanciaMonstre) o1).getInitiative();
                 } else if (o1 instanceof Aventurer) {
                     iniciativa1 = ((Aventurer) o1).getIniciativa();
                 } else if (o1 instanceof Cleric) {
@@ -482,8 +602,8 @@ public class AdventureManager {
                     iniciativa1 = ((Mage) o1).getIniciativa();
                 }
 
-                if (o2 instanceof Monstre) {
-                    iniciativa2 = ((Monstre) o2).getInitiative();
+                if (o2 instanceof InstanciaMonstre) {
+                    iniciativa2 = ((InstanciaMonstre) o2).getInitiative();
                 } else if (o2 instanceof Aventurer) {
                     iniciativa2 = ((Aventurer) o2).getIniciativa();
                 } else if (o2 instanceof Cleric) {
@@ -497,8 +617,8 @@ public class AdventureManager {
 
         String output = "";
         for (Object combatient:combatients) {
-            if (combatient instanceof Monstre) {
-                output += "\t- " + ((Monstre) combatient).getInitiative() + " \t" + ((Monstre) combatient).getName() +"\n";
+            if (combatient instanceof InstanciaMonstre) {
+                output += "\t- " + ((InstanciaMonstre) combatient).getInitiative() + " \t" + ((InstanciaMonstre) combatient).getName() +"\n";
             } else {
                 output += "\t- " + ((Personatge) combatient).getIniciativa() + " \t" + ((Personatge) combatient).getName() +"\n";
 
@@ -533,7 +653,7 @@ public class AdventureManager {
      */
     public boolean monstresMorts() {
         //comprobar si algun monstruo sigue vivo
-        for (Monstre m: combat.getMonstres()) {
+        for (InstanciaMonstre m: enemics) {
 
             if( !m.isDead()) {
                 //si hay algun monstruo sigue vivo
@@ -586,17 +706,17 @@ public class AdventureManager {
 
                     if (!a.isDead()) {
                         //encontrar objetivo random (y comprobar que no este muerto)
-                        int target = Dado.random(combat.getMonstres().size());
-                        while ( ((Monstre) combat.getMonstres().get(target)).isDead() ) {
+                        int target = Dado.random(enemics.size());
+                        while ( enemics.get(target).isDead() ) {
                             target++;
-                            if (target >= combat.getMonstres().size()) {
+                            if (target >= enemics.size()) {
                                 target = 0;
                             }
                         }
                         if (a.getClase().equals(Aventurer.AVENTURER)) {
-                            output += a.getName()+ " attacks " +combat.getMonstres().get(target).getName()+ " with Sword slash.\n";
+                            output += a.getName()+ " attacks " +enemics.get(target).getName()+ " with Sword slash.\n";
                         } else {
-                            output += a.getName()+ " attacks " +combat.getMonstres().get(target).getName()+ " with Improved sword slash.\n";
+                            output += a.getName()+ " attacks " +enemics.get(target).getName()+ " with Improved sword slash.\n";
                         }
 
                         int lanzamiento = Dado.lanzar(10);
@@ -611,14 +731,14 @@ public class AdventureManager {
                                 dano = a.swordSlash();
                                 output += "Hits and deals " +dano+ " " +a.getTipusMal()+ " damage.\n";
                             }
-                            combat.getMonstres().get(target).receiveDamage(dano, a.getTipusMal());
+                            enemics.get(target).receiveDamage(dano, a.getTipusMal());
                         } else {
                             output += "Fails and deals 0 " +a.getTipusMal()+ " damage.\n";
                         }
 
                         //mostrar si objetivo ha muerto
-                        if (combat.getMonstres().get(target).isDead()) {
-                            output += combat.getMonstres().get(target).getName() + " dies.\n\n";
+                        if (enemics.get(target).isDead()) {
+                            output += enemics.get(target).getName() + " dies.\n\n";
                         } else {
                             output += "\n";
                         }
@@ -673,27 +793,27 @@ public class AdventureManager {
                         //Ataque
 
                         //encontrar objetivo random (y comprobar que no este muerto)
-                        int target = Dado.random(combat.getMonstres().size());
-                        while ( ((Monstre) combat.getMonstres().get(target)).isDead() ) {
+                        int target = Dado.random(enemics.size());
+                        while ( enemics.get(target).isDead() ) {
                             target++;
-                            if (target >= combat.getMonstres().size()) {
+                            if (target >= enemics.size()) {
                                 target = 0;
                             }
                         }
 
                         //Aplicar dano
                         int dano = c.attack();
-                        combat.getMonstres().get(target).receiveDamage(dano, c.getTipusMal());
+                        enemics.get(target).receiveDamage(dano, c.getTipusMal());
                         if (c.getClase().equals(Cleric.CLERIC)) {
-                            output += c.getName()+ " attacks " +combat.getMonstres().get(target).getName()+ " with Not on my watch.\n";
+                            output += c.getName()+ " attacks " +enemics.get(target).getName()+ " with Not on my watch.\n";
                         } else {
-                            output += c.getName()+ " attacks " +combat.getMonstres().get(target).getName()+ " with Never on my watch. \n";
+                            output += c.getName()+ " attacks " +enemics.get(target).getName()+ " with Never on my watch. \n";
                         }
                         output += "Hits and deals " +dano+ " psychical damage.\n";
 
                         //mostrar si objetivo ha muerto
-                        if (combat.getMonstres().get(target).isDead()) {
-                            output += combat.getMonstres().get(target).getName() + " dies.\n\n";
+                        if (enemics.get(target).isDead()) {
+                            output += enemics.get(target).getName() + " dies.\n\n";
                         } else {
                             output += "\n";
                         }
@@ -704,9 +824,9 @@ public class AdventureManager {
                     Mage m = (Mage) o;
 
                     //Comprobamos si hay más de 3 monstruos vivos y guardamos los monstruos vivos
-                    ArrayList<Monstre> monstres = new ArrayList<>();
+                    ArrayList<InstanciaMonstre> monstres = new ArrayList<>();
                     int mVivos = 0;
-                    for (Monstre monstre:combat.getMonstres()) {
+                    for (InstanciaMonstre monstre:enemics) {
                         if (!monstre.isDead()) {
                             monstres.add(monstre);
                             mVivos++;
@@ -717,18 +837,18 @@ public class AdventureManager {
                         //Arcane missile
 
                         //encontrar objetivo random (y comprobar que no este muerto)
-                        int target = Dado.random(combat.getMonstres().size());
-                        while ( combat.getMonstres().get(target).isDead() ) {
+                        int target = Dado.random(enemics.size());
+                        while ( enemics.get(target).isDead() ) {
                             target++;
-                            if (target >= combat.getMonstres().size()) {
+                            if (target >= enemics.size()) {
                                 target = 0;
                             }
                         }
 
                         //Aplicar dano
                         int dano = m.arcaneMissile();
-                        combat.getMonstres().get(target).receiveDamage(dano, m.getTipusMal());
-                        output += m.getName()+ " attacks " +combat.getMonstres().get(target).getName()+ " with Arcane missile.\n";
+                        enemics.get(target).receiveDamage(dano, m.getTipusMal());
+                        output += m.getName()+ " attacks " +enemics.get(target).getName()+ " with Arcane missile.\n";
                         output += "Hits and deals " +dano+ " magical damage.\n";
 
                     } else {
@@ -746,14 +866,14 @@ public class AdventureManager {
 
                         //Atacar a todos los monstruos del combate
                         int dano = m.fireball();
-                        for (Monstre monstre:combat.getMonstres()) {
+                        for (InstanciaMonstre monstre:enemics) {
                             if (!monstre.isDead()) {
                                 monstre.receiveDamage(dano, m.getTipusMal());
                             }
                         }
                         output += "Hits and deals " +dano+ " magical damage.\n";
 
-                        for (Monstre monstre:monstres) {
+                        for (InstanciaMonstre monstre:monstres) {
                             if (monstre.isDead()) {
                                 output += monstre.getName() + " dies.\n\n";
                             } else {
@@ -763,9 +883,9 @@ public class AdventureManager {
                         }
                     }
 
-                }else if (o instanceof Monstre) {
+                }else if (o instanceof InstanciaMonstre) {
                     //Monstruos
-                    Monstre m = (Monstre) o;
+                    InstanciaMonstre m = (InstanciaMonstre) o;
                     if (!m.isDead()) {
 
                         if (m.getChallenge().equals(Monstre.BOSS)) {
@@ -955,10 +1075,8 @@ public class AdventureManager {
         for (Personatge p:party) {
 
             output += p.getName() + " gains " + xp + " xp.";
-            boolean levelUp = p.ganarXP(xp);
-
-            //Guardar cambios en Storage (persistencia)
-            updateCharacter(p);
+            //La experiencia se suma en el registro compartido, que la guarda en segundo plano
+            boolean levelUp = p.sincronitzarXP(xpRegistry.ganarXP(p, xp));
 
             if (levelUp) {
                 //si ha subido de nivel
@@ -969,24 +1087,39 @@ public class AdventureManager {
 
         }
 
+        //Guardar el resto de cambios de toda la party (clase, atributos) en Storage de una sola vez
+        updateCharacters(party);
+
         return output;
     }
 
     /**
-     * Actualiza un personaje en persistencia.
+     * Guarda la experiencia de los personajes que todavía no se ha guardado en segundo plano.
+     *
+     * @throws BusinessException Si ocurre un error al intentar actualizar los personajes.
+     */
+    public void flushXP() throws BusinessException {
+        if (xpRegistry == null) {
+            return;
+        }
+        try {
+            xpRegistry.flush();
+        } catch (PersistenceException e) {
+            throw new BusinessException("Error: Couldn't modify the Characters file", e);
+        }
+    }
+
+    /**
+     * Actualiza varios personajes en persistencia con una sola operación.
      *
-     * @param p El personaje a actualizar.
-     * @throws BusinessException Si ocurre un error al intentar actualizar el personaje.
+     * @param personatges Los personajes a actualizar.
+     * @throws BusinessException Si ocurre un error al intentar actualizar los personajes.
      */
-    private void updateCharacter(Personatge p) throws BusinessException {
+    private void updateCharacters(ArrayList<Personatge> personatges) throws BusinessException {
 
             //Guardar cambios en JSON
             try {
-                if (dataType == LOCAL_DATA) {
-                    personatgesDAO.updateCharacter(p);
-                } else {
-                    personatgesDAO.updateCharacter(p);
-                }
+                personatgesDAO.updateCharacters(personatges);
             }catch (PersistenceException e) {
                 throw new BusinessException("Error: Couldn't modify the Characters file", e);
             }
@@ -0,0 +1,84 @@
+package business;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Clase de utilidad para ejecutar en paralelo tareas que lanzan BusinessException, como la carga de los datos.
+ */
+public final class AsyncTasks {
+
+    /**
+     * Tarea que puede lanzar una BusinessException.
+     */
+    public interface Task {
+        void run() throws BusinessException;
+    }
+
+    private AsyncTasks() {
+    }
+
+    /**
+     * Crea el ejecutor de las tareas. Sus hilos no impiden que la aplicación acabe, de forma que una carga
+     * que ya no se espera (por ejemplo, la de la API después de superar el tiempo máximo) no la bloquea.
+     *
+     * @return El ejecutor de las tareas.
+     */
+    public static ExecutorService newExecutor() {
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "lsrpg-loader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Ejecuta una tarea en el ejecutor indicado.
+     *
+     * @param task     Tarea a ejecutar.
+     * @param executor Ejecutor de la tarea.
+     * @return El resultado de la tarea, que acaba con la BusinessException de la tarea si falla.
+     */
+    public static CompletableFuture<Void> run(Task task, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (BusinessException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Espera a que acabe una tarea.
+     *
+     * @param future Resultado de la tarea.
+     * @throws BusinessException La excepción de la tarea si ha fallado, o una nueva si ha superado el tiempo máximo.
+     */
+    public static void join(CompletableFuture<?> future) throws BusinessException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Error: The data loading was interrupted.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            } else if (cause instanceof TimeoutException) {
+                throw new BusinessException("Error: The data took too long to load.", (TimeoutException) cause);
+            } else if (cause instanceof Exception) {
+                throw new BusinessException("Error: Couldn't load the data.", (Exception) cause);
+            }
+            throw new BusinessException("Error: Couldn't load the data.", e);
+        }
+    }
+}
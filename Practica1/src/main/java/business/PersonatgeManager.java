@@ -7,6 +7,8 @@ import business.entities.personatge.PersonatgeJSON;
 import persistence.*;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Clase que gestiona los personajes.
@@ -15,43 +17,78 @@ public class PersonatgeManager {
 
     public static final int LOCAL_DATA = 1;
     public static final int CLOUD_DATA = 2;
+    public static final int BTREE_DATA = 3;
+    public static final int JDBC_DATA = 4;
+    //Número de personajes que se muestran en cada página de los listados
+    public static final int PAGE_SIZE = 20;
     private int dataType;
 
-    private JSONPersonatgesDAO personatgesDAO;
-    private PersonatgesAPI personatgesAPI;
+    private PersonatgesRoster personatgesDAO;
 
+    //Personajes de la última búsqueda (una versión si el almacenamiento las guarda, para que todas sus páginas sean coherentes)
+    private PersonatgesView llistat;
+    //Página actual de la última búsqueda
     private ArrayList<Personatge> personatgesFiltrats;
+    private String filtre;
+    private String nextCursor;
     private Personatge personatgeAux;
 
 
     /**
      * Constructor de la clase PersonatgeManager.
-     * Inicializa el objeto JSONPersonatgesDAO.
      */
     public PersonatgeManager() {
     }
 
 
     /**
-     * Inicializa aventuresDAO, monstresDAO y personatgesDAO con su clase pertinente
-     * dependiendo del tipo de datos utilizado en la aplicación.
+     * Inicializa personatgesDAO con su clase pertinente dependiendo del tipo de datos utilizado en la aplicación.
+     * Los personajes se leen desde el PersonatgesRoster compartido con AdventureManager.
      *
-     * @param dataType El tipo de datos a establecer. Puede ser LOCAL_DATA o REMOTE_DATA.
+     * @param dataType El tipo de datos a establecer. Puede ser LOCAL_DATA, REMOTE_DATA, BTREE_DATA o JDBC_DATA.
      * @throws BusinessException Si ocurre un error al establecer el tipo de datos.
      */
     public void setDataType(int dataType) throws BusinessException {
         this.dataType = dataType;
         if (dataType == LOCAL_DATA) {
-            personatgesDAO = new JSONPersonatgesDAO();
+            personatgesDAO = PersonatgesRoster.of(PersonatgesDAOFactory.getLocalDAO());
+        } else if (dataType == BTREE_DATA) {
+            try {
+                personatgesDAO = PersonatgesRoster.of(BTreeStore.getDefault().getPersonatgesDAO());
+            } catch (PersistenceException e) {
+                throw new BusinessException("Error opening the data file.", e);
+            }
+        } else if (dataType == JDBC_DATA) {
+            try {
+                personatgesDAO = PersonatgesRoster.of(JdbcStore.getDefault().getPersonatgesDAO());
+            } catch (PersistenceException e) {
+                throw new BusinessException("Error opening the database.", e);
+            }
         } else {
             try {
-                personatgesAPI = new PersonatgesAPI();
+                personatgesDAO = PersonatgesRoster.cloud();
             } catch (PersistenceException e) {
                 throw new BusinessException("Error conecting to the API.", e);
             }
         }
     }
 
+    /**
+     * Establece el tipo de datos y cuenta los personajes en segundo plano, para comprobar que el almacenamiento funciona.
+     * Contar los personajes no los lee todos en los almacenamientos que los cargan por partes (binario, árbol B+,
+     * base de datos o archivos por jugador), así que el tiempo hasta el menú no depende del número de personajes.
+     *
+     * @param dataType El tipo de datos a establecer.
+     * @param executor Ejecutor de la tarea de carga.
+     * @return El resultado de la carga, que acaba con una BusinessException si falla.
+     */
+    public CompletableFuture<Void> load(int dataType, Executor executor) {
+        return AsyncTasks.run(() -> {
+            setDataType(dataType);
+            getPersonatgesLength();
+        }, executor);
+    }
+
     /**
      * Calcula el valor estadístico en base a una suma dada.
      *
@@ -213,41 +250,69 @@ public class PersonatgeManager {
     }
 
     /**
-     * Busca personajes por nombre de jugador.
+     * Busca personajes por nombre de jugador y devuelve la primera página del resultado.
      *
      * @param name El nombre del jugador.
-     * @return Una cadena con los personajes filtrados.
+     * @return Una cadena con los personajes filtrados de la primera página.
      * @throws BusinessException Si ocurre un error al buscar los personajes.
      */
     public String searchPersonatges(String name) throws BusinessException {
+        filtre = name;
+        try {
+            llistat = personatgesDAO.view();
+        } catch (PersistenceException e) {
+            throw new BusinessException("Error trying to get Characters from storage.", e);
+        }
+        return readPage(null);
+    }
 
-        ArrayList<Personatge> allPersonatges;
-        allPersonatges = readPersonatges();
-
-        personatgesFiltrats = new ArrayList<>();
+    /**
+     * Obtiene la siguiente página de la última búsqueda de personajes.
+     *
+     * @return Una cadena con los personajes filtrados de la siguiente página.
+     * @throws BusinessException Si ocurre un error al buscar los personajes.
+     */
+    public String nextPersonatgesPage() throws BusinessException {
+        return readPage(nextCursor);
+    }
 
-        //obtindre personatges
-        String personatgesFiltratsTxt = "";
+    /**
+     * Indica si la última búsqueda de personajes tiene más páginas.
+     *
+     * @return true si hay una página siguiente.
+     */
+    public boolean hasMorePersonatges() {
+        return nextCursor != null;
+    }
 
-        int i = 0;
-        if (name.length() == 0) {
-            for (Personatge a: allPersonatges) {
-                personatgesFiltratsTxt += "\t" +(i+1)+ ". " + a.getName() + "\n";
-                personatgesFiltrats.add(a);
-                i++;
+    /**
+     * Lee una página de la búsqueda actual y la guarda como lista de personajes filtrados.
+     *
+     * @param cursor Cursor de la página, o null para la primera.
+     * @return Una cadena con los personajes de la página.
+     * @throws BusinessException Si ocurre un error al buscar los personajes.
+     */
+    private String readPage(String cursor) throws BusinessException {
+        Page<Personatge> page;
+        try {
+            //obtindre personatges de la versión de la búsqueda: sin filtro todos, y con filtro los de los jugadores que coinciden
+            if (filtre.length() == 0) {
+                page = llistat.readPersonatges(cursor, PAGE_SIZE);
+            } else {
+                page = llistat.searchByPlayer(filtre, cursor, PAGE_SIZE);
             }
+        } catch (PersistenceException e) {
+            throw new BusinessException("Error trying to get Characters from storage.", e);
+        }
+        personatgesFiltrats = new ArrayList<>(page.getItems());
+        nextCursor = page.getNextCursor();
 
-        } else {
-            for (Personatge a: allPersonatges) {
-                if (a.getPlayer().contains(name)) {
-                    personatgesFiltratsTxt += "\t" +(i+1)+ ". " + a.getName() + "\n";
-                    personatgesFiltrats.add(a);
-                    i++;
-                }
-            }
+        StringBuilder personatgesFiltratsTxt = new StringBuilder();
+        for (int i = 0; i < personatgesFiltrats.size(); i++) {
+            personatgesFiltratsTxt.append("\t").append(i + 1).append(". ").append(personatgesFiltrats.get(i).getName()).append("\n");
         }
 
-        return personatgesFiltratsTxt;
+        return personatgesFiltratsTxt.toString();
     }
 
 
@@ -266,6 +331,14 @@ public class PersonatgeManager {
      */
     public String getNameByIndex(int index) {return personatgesFiltrats.get(index).getName();}
 
+    /**
+     * Obtiene el nombre del jugador de un personaje dado su índice.
+     *
+     * @param index El índice del personaje.
+     * @return El nombre del jugador.
+     */
+    public String getPlayerByIndex(int index) {return personatgesFiltrats.get(index).getPlayer();}
+
     /**
      * Obtiene la información de un personaje dado su índice.
      *
@@ -282,7 +355,11 @@ public class PersonatgeManager {
      * @throws BusinessException Si ocurre un error al leer el archivo de personajes.
      */
     public int getPersonatgesLength() throws BusinessException {
-        return readPersonatges().size();
+        try {
+            return personatgesDAO.countPersonatges();
+        } catch (PersistenceException e) {
+            throw new BusinessException("Error trying to get Characters from storage.", e);
+        }
     }
 
     /**
@@ -293,13 +370,7 @@ public class PersonatgeManager {
      */
     public ArrayList<Personatge> readPersonatges() throws BusinessException {
         try {
-            if (dataType == LOCAL_DATA) {
-                return personatgesDAO.readPersonatges();
-            } else {
-                //CLOUD_DATA
-                return personatgesAPI.readPersonatges();
-
-            }
+            return personatgesDAO.readPersonatges();
         } catch (PersistenceException e) {
             throw new BusinessException("Error trying to get Characters from storage.", e);
         }
@@ -313,13 +384,7 @@ public class PersonatgeManager {
      */
     public void createPersonatge(Personatge p) throws BusinessException {
         try {
-            if (dataType == LOCAL_DATA) {
-                personatgesDAO.createPersonatge(p);
-            } else {
-                //CLOUD_DATA
-                personatgesAPI.createPersonatge(p);
-
-            }
+            personatgesDAO.createPersonatge(p);
         } catch (PersistenceException e) {
             throw new BusinessException("Error trying to create Characters in storage.", e);
         }
@@ -339,13 +404,7 @@ public class PersonatgeManager {
 
             try {
                 Personatge removedPersonatge = personatgesFiltrats.get(index);
-
-                if (dataType == LOCAL_DATA) {
-                    personatgesAPI.deletePersonatge(removedPersonatge);
-                } else {
-                    //CLOUD_DATA
-                    personatgesAPI.deletePersonatge(removedPersonatge);
-                }
+                personatgesDAO.deletePersonatge(removedPersonatge);
 
             } catch (PersistenceException e) {
                 throw new BusinessException("Error deleting Characters from Storage", e);
@@ -367,14 +426,7 @@ public class PersonatgeManager {
     public boolean deletePersonatgeWithObject(Personatge removedPersonatge) throws BusinessException {
 
         try {
-
-            if (dataType == LOCAL_DATA) {
-                personatgesAPI.deletePersonatge(removedPersonatge);
-            } else {
-                //CLOUD_DATA
-                personatgesAPI.deletePersonatge(removedPersonatge);
-            }
-
+            personatgesDAO.deletePersonatge(removedPersonatge);
         } catch (PersistenceException e) {
             throw new BusinessException("Error: Can not modify the Characters file", e);
         }
@@ -25,6 +25,19 @@ public class Aventura {
         combats = new ArrayList<>();
     }
 
+    /**
+     Constructor de copia de la clase Aventura. Los combates también se copian; los monstruos se comparten.
+     @param a La aventura a copiar.
+     */
+    public Aventura(Aventura a) {
+        this.name = a.name;
+        this.nCombats = a.nCombats;
+        combats = new ArrayList<>(a.combats.size());
+        for (Combat c : a.combats) {
+            combats.add(new Combat(c));
+        }
+    }
+
     /**
      Añade un combate a la aventura.
      @param c El combate a añadir.
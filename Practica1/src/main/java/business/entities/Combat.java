@@ -18,6 +18,16 @@ public class Combat {
         monstres = new ArrayList<>();
     }
 
+    /**
+     Constructor de copia de la clase Combat. La lista de monstruos se copia, pero los monstruos se comparten
+     porque no se pueden modificar.
+     @param c El combate a copiar.
+     */
+    public Combat(Combat c) {
+        this.nCombat = c.nCombat;
+        monstres = new ArrayList<>(c.monstres);
+    }
+
     /**
      Obtiene la lista de monstruos del combate.
      @return La lista de monstruos del combate.
@@ -34,6 +44,19 @@ public class Combat {
         return nCombat;
     }
 
+    /**
+     Crea los monstruos con los que se juega el combate, cada uno con su vida máxima.
+     Se crean cada vez que empieza el combate, así que la aventura se puede volver a jugar sin leerla otra vez.
+     @return Una instancia de cada monstruo del combate, en el mismo orden.
+     */
+    public ArrayList<InstanciaMonstre> createInstancies() {
+        ArrayList<InstanciaMonstre> instancies = new ArrayList<>(monstres.size());
+        for (Monstre m : monstres) {
+            instancies.add(new InstanciaMonstre(m));
+        }
+        return instancies;
+    }
+
     /**
      Añade un monstruo al combate.
      @param m El monstruo a añadir.
@@ -0,0 +1,101 @@
+package business.entities;
+
+/**
+ Clase que representa a un monstruo dentro de un combate que se está jugando.
+ Las estadísticas son las de su Monstre, que se comparte entre todos los monstruos iguales;
+ cada instancia solo guarda su vida actual.
+ */
+public class InstanciaMonstre {
+    private final Monstre monstre;
+    private int hitPoints;  //Vida actual del monstruo
+
+    /**
+     Constructor de la clase InstanciaMonstre. La instancia empieza con la vida máxima del monstruo.
+     @param monstre El monstruo con las estadísticas de la instancia.
+     */
+    public InstanciaMonstre(Monstre monstre) {
+        this.monstre = monstre;
+        this.hitPoints = monstre.getHitPoints();
+    }
+
+    /**
+     Verifica si el monstruo está muerto.
+     @return true si el monstruo está muerto, false en caso contrario.
+     */
+    public boolean isDead() {
+        return hitPoints < 1;
+    }
+
+    /**
+     Realiza un ataque y retorna el daño realizado por el monstruo.
+     @return El daño realizado por el monstruo.
+     */
+    public int atacar() {
+        return monstre.atacar();
+    }
+
+    /**
+     Recibe un determinado daño y actualiza la vida del monstruo.
+     Si el daño es del mismo tipo que el del monstruo, solo recibe la mitad.
+     @param damage El daño recibido.
+     @param damageType El tipo del daño recibido.
+     */
+    public void receiveDamage(int damage, String damageType) {
+        if (damageType.equals(monstre.getDamageType())) {
+            hitPoints -= damage/2;
+        } else {
+            hitPoints -= damage;
+        }
+        if (hitPoints < 0) {
+            hitPoints = 0;
+        }
+    }
+
+    /**
+     Obtiene el monstruo con las estadísticas de la instancia.
+     @return El monstruo compartido.
+     */
+    public Monstre getMonstre() {
+        return monstre;
+    }
+
+    /**
+     Obtiene la vida actual del monstruo.
+     @return La vida actual del monstruo.
+     */
+    public int getHitPoints() {
+        return hitPoints;
+    }
+
+    /**
+     Obtiene el nombre del monstruo.
+     @return El nombre del monstruo.
+     */
+    public String getName() {
+        return monstre.getName();
+    }
+
+    /**
+     Obtiene la dificultad del monstruo.
+     @return La dificultad del monstruo.
+     */
+    public String getChallenge() {
+        return monstre.getChallenge();
+    }
+
+    /**
+     Obtiene la iniciativa del monstruo.
+     @return La iniciativa del monstruo.
+     */
+    public int getInitiative() {
+        return monstre.getInitiative();
+    }
+
+    /**
+     Obtiene el tipo de daño que causa el monstruo.
+     @return El tipo de daño que causa el monstruo.
+     */
+    public String getDamageType() {
+        return monstre.getDamageType();
+    }
+}
@@ -3,7 +3,8 @@ package business.entities;
 import business.Dado;
 
 /**
- Clase que representa a un monstruo.
+ Clase que representa a un monstruo del catálogo. No se puede modificar, así que todos los monstruos iguales
+ de las aventuras comparten el mismo objeto; la vida de cada monstruo en un combate se guarda en InstanciaMonstre.
  */
 public class Monstre {
 
@@ -12,13 +13,13 @@ public class Monstre {
      */
     public final static String BOSS = "Boss";
 
-    private String name;
-    private String challenge;
-    private int experience;
-    private int hitPoints;  //Vida del monstruo
-    private int initiative;
-    private String damageDice;
-    private String damageType;
+    private final String name;
+    private final String challenge;
+    private final int experience;
+    private final int hitPoints;  //Vida máxima del monstruo
+    private final int initiative;
+    private final String damageDice;
+    private final String damageType;
 
     /**
      Constructor de la clase Monstre.
@@ -42,14 +43,6 @@ public class Monstre {
 
 
 
-    /**
-     Verifica si el monstruo está muerto.
-     @return true si el monstruo está muerto, false en caso contrario.
-     */
-    public boolean isDead() {
-        return hitPoints < 1;
-    }
-
     /**
      Realiza un ataque y retorna el daño realizado por el monstruo.
      @return El daño realizado por el monstruo.
@@ -58,24 +51,6 @@ public class Monstre {
         return Dado.lanzar(Integer.parseInt(damageDice.substring(1)));
     }
 
-    /**
-     Recibe un determinado daño y actualiza la vida del monstruo.
-     @param damage El daño recibido.
-     */
-    public void receiveDamage(int damage, String damageType) {
-        if (damageType.equals(this.damageType)) {
-            hitPoints -= damage/2;
-            if (hitPoints < 0) {
-                hitPoints = 0;
-            }
-        } else {
-            hitPoints -= damage;
-            if (hitPoints < 0) {
-                hitPoints = 0;
-            }
-        }
-    }
-
 
 
     /**
@@ -103,8 +78,8 @@ public class Monstre {
     }
 
     /**
-     Obtiene la vida del monstruo.
-     @return La vida del monstruo.
+     Obtiene la vida máxima del monstruo, con la que empieza cada combate.
+     @return La vida máxima del monstruo.
      */
     public int getHitPoints() {
         return hitPoints;
@@ -118,6 +93,14 @@ public class Monstre {
         return initiative;
     }
 
+    /**
+     Obtiene el dado de daño del monstruo.
+     @return El dado de daño del monstruo.
+     */
+    public String getDamageDice() {
+        return damageDice;
+    }
+
     /**
      Obtiene el tipo de daño que causa el monstruo.
      @return El tipo de daño que causa el monstruo.
@@ -126,12 +109,5 @@ public class Monstre {
         return damageType;
     }
 
-    /**
-     Establece el nombre del monstruo.
-     @param name El nombre del monstruo.
-     */
-    public void setName(String name) {
-        this.name = name;
-    }
 
 }
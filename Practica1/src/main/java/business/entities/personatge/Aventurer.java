@@ -49,7 +49,7 @@ public class Aventurer extends Personatge{
      Incrementa el valor del atributo "esperit" del aventurero en 1.
      */
     public void selfMotivated() {
-        spirit++;
+        setSpirit(spirit + 1);
     }
 
 
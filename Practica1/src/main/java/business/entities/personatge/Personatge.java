@@ -11,6 +11,12 @@ public abstract class Personatge {
     public final static String MAGICAL = "Magical";
     public final static String PSYCHICAL = "Psychical";
 
+    //Atributos guardados en persistencia que pueden cambiar, para saber qué hay que guardar (ver getCanvis)
+    public final static int CANVI_CLASE = 1;
+    public final static int CANVI_XP = 1 << 1;
+    public final static int CANVI_BODY = 1 << 2;
+    public final static int CANVI_MIND = 1 << 3;
+    public final static int CANVI_SPIRIT = 1 << 4;
 
     private String name;
     private String player;
@@ -22,6 +28,8 @@ public abstract class Personatge {
     protected int body;
     protected int mind;
     protected int spirit;
+    //Atributos modificados desde que se leyó o se guardó el personaje
+    private transient int canvis;
 
 
     /**
@@ -136,6 +144,7 @@ public abstract class Personatge {
      */
     public void setClase(String clase) {
         this.clase = clase;
+        canvis |= CANVI_CLASE;
     }
 
     /**
@@ -144,6 +153,7 @@ public abstract class Personatge {
      */
     public void setXp(int xp) {
         this.xp = xp;
+        canvis |= CANVI_XP;
     }
 
     /**
@@ -152,6 +162,7 @@ public abstract class Personatge {
      */
     public void setBody(int body) {
         this.body = body;
+        canvis |= CANVI_BODY;
     }
 
     /**
@@ -160,6 +171,7 @@ public abstract class Personatge {
      */
     public void setMind(int mind) {
         this.mind = mind;
+        canvis |= CANVI_MIND;
     }
 
     /**
@@ -168,8 +180,33 @@ public abstract class Personatge {
      */
     public void setSpirit(int spirit) {
         this.spirit = spirit;
+        canvis |= CANVI_SPIRIT;
     }
 
+    /**
+     Obtiene los atributos guardados en persistencia que se han modificado desde que se leyó o se guardó el personaje,
+     como una combinación de las constantes CANVI_CLASE, CANVI_XP, CANVI_BODY, CANVI_MIND y CANVI_SPIRIT.
+     Los DAO solo guardan estos atributos al actualizar el personaje.
+     @return Los atributos modificados, o 0 si no se ha modificado ninguno.
+     */
+    public int getCanvis() {
+        return canvis;
+    }
+
+    /**
+     Indica si se ha modificado algún atributo guardado en persistencia desde que se leyó o se guardó el personaje.
+     @return true si hay cambios por guardar, false en caso contrario.
+     */
+    public boolean isModificat() {
+        return canvis != 0;
+    }
+
+    /**
+     Indica que el personaje ya está guardado en persistencia, de forma que no tiene cambios por guardar.
+     */
+    public void netejarCanvis() {
+        canvis = 0;
+    }
 
     /**
      Devuelve la información del personaje en forma de cadena de texto.
@@ -262,6 +299,7 @@ public abstract class Personatge {
 
         int previousLevel = getNivell();
         this.xp += xp;
+        canvis |= CANVI_XP;
         if (this.xp >= previousLevel*100) {
             //subir de nivel
             subirNivel();
@@ -271,6 +309,23 @@ public abstract class Personatge {
         }
     }
 
+    /**
+     Establece la experiencia total que se ha sumado fuera del personaje (ver XpRegistry) y verifica si ha subido
+     de nivel. La experiencia no queda como cambio por guardar, porque ya la guarda quien la ha sumado.
+     @param xp La experiencia total del personaje.
+     @return true si ha subido de nivel, false en caso contrario.
+     */
+    public boolean sincronitzarXP(int xp) {
+        int previousLevel = getNivell();
+        this.xp = xp;
+        if (getNivell() > previousLevel) {
+            subirNivel();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
 
 
 }
@@ -0,0 +1,100 @@
+package business.entities.personatge;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ Registro que indica qué subclase de Personatge corresponde a cada clase de personaje ("Mage", "Paladin"...).
+
+ Los DAO crean los personajes con este registro al leerlos, de forma que ya son un Mage, un Cleric o un Aventurer
+ listos para combatir y no hace falta copiarlos. Las clases que no están registradas se crean como Aventurer,
+ y los personajes sin clase como PersonatgeJSON.
+ */
+public final class PersonatgeFactory {
+
+    /**
+     Constructor de una subclase de Personatge, con los mismos parámetros que los constructores de las subclases.
+     */
+    public interface Creador {
+        Personatge crear(String nom, String player, int nivell, String clase, int xp, int cos, int ment, int esperit);
+    }
+
+    private static final ConcurrentHashMap<String, Creador> creadors = new ConcurrentHashMap<>();
+
+    static {
+        register(Aventurer.AVENTURER, Aventurer::new);
+        register(Aventurer.WARRIOR, Aventurer::new);
+        register(Aventurer.CHAMPION, Aventurer::new);
+        register(Cleric.CLERIC, Cleric::new);
+        register(Cleric.PALADIN, Cleric::new);
+        register(Mage.MAGE, Mage::new);
+    }
+
+    private PersonatgeFactory() {
+    }
+
+    /**
+     Registra la subclase que se crea para una clase de personaje.
+     @param clase La clase del personaje.
+     @param creador El constructor de la subclase.
+     */
+    public static void register(String clase, Creador creador) {
+        creadors.put(clase, creador);
+    }
+
+    /**
+     Crea un personaje de la subclase que corresponde a su clase a partir de los atributos guardados en persistencia.
+     @param name Nombre del personaje.
+     @param player Nombre del jugador del personaje.
+     @param clase Clase del personaje.
+     @param xp Experiencia del personaje.
+     @param body Valor del atributo "cos" del personaje.
+     @param mind Valor del atributo "ment" del personaje.
+     @param spirit Valor del atributo "esperit" del personaje.
+     @return El personaje creado.
+     */
+    public static Personatge create(String name, String player, String clase, int xp, int body, int mind, int spirit) {
+        if (clase == null) {
+            Personatge p = new PersonatgeJSON();
+            p.setName(name);
+            p.setPlayer(player);
+            p.setXp(xp);
+            p.setBody(body);
+            p.setMind(mind);
+            p.setSpirit(spirit);
+            p.netejarCanvis();
+            return p;
+        }
+        Creador creador = creadors.get(clase);
+        if (creador == null) {
+            creador = Aventurer::new;
+        }
+        return creador.crear(name, player, xp / 100 + 1, clase, xp, body, mind, spirit);
+    }
+
+    /**
+     Crea un personaje nuevo de la subclase que corresponde a su clase con los atributos guardados en persistencia
+     de otro personaje, sin sus atributos de combate.
+     @param p El personaje a copiar.
+     @return El personaje creado.
+     */
+    public static Personatge copy(Personatge p) {
+        return create(p.getName(), p.getPlayer(), p.getClase(), p.getXp(), p.getBody(), p.getMind(), p.getSpirit());
+    }
+
+    /**
+     Crea un personaje nuevo con los atributos de un personaje guardado, sustituyendo los que se han modificado
+     en otra instancia del mismo personaje (ver Personatge.getCanvis). El personaje guardado no cambia.
+     @param guardat El personaje guardado.
+     @param modificat El personaje con los cambios.
+     @return El personaje con los cambios aplicados, sin cambios por guardar.
+     */
+    public static Personatge merge(Personatge guardat, Personatge modificat) {
+        int canvis = modificat.getCanvis();
+        return create(guardat.getName(), guardat.getPlayer(),
+                (canvis & Personatge.CANVI_CLASE) != 0 ? modificat.getClase() : guardat.getClase(),
+                (canvis & Personatge.CANVI_XP) != 0 ? modificat.getXp() : guardat.getXp(),
+                (canvis & Personatge.CANVI_BODY) != 0 ? modificat.getBody() : guardat.getBody(),
+                (canvis & Personatge.CANVI_MIND) != 0 ? modificat.getMind() : guardat.getMind(),
+                (canvis & Personatge.CANVI_SPIRIT) != 0 ? modificat.getSpirit() : guardat.getSpirit());
+    }
+}
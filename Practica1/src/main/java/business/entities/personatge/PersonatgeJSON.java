@@ -5,6 +5,21 @@ package business.entities.personatge;
  */
 public class PersonatgeJSON extends Personatge{
 
+    /**
+     Constructor de la clase PersonatgeJSON por defecto.
+     */
+    public PersonatgeJSON() {
+    }
+
+    /**
+     Constructor que copia los atributos guardados en persistencia de otro personaje,
+     descartando los atributos de combate de las subclases.
+     @param p El personaje a copiar.
+     */
+    public PersonatgeJSON(Personatge p) {
+        super(p.getName(), p.getPlayer(), p.getNivell(), p.getClase(), p.getXp(), p.getBody(), p.getMind(), p.getSpirit());
+    }
+
     @Override
     public void calcularIniciativa() {
 
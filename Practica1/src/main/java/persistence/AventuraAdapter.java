@@ -0,0 +1,115 @@
+package persistence;
+
+import business.entities.Aventura;
+import business.entities.Combat;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Convierte las aventuras a JSON guardando los monstruos de cada combate como referencias al catálogo
+ * (el nombre del monstruo en el catálogo y cuántos hay seguidos) en lugar de una copia completa de cada uno:
+ *
+ * <pre>{"name":"...","nCombats":1,"combats":[{"nCombat":0,"monstres":[{"ref":"Goblin","count":50,"challenge":"Minion",...}]}]}</pre>
+ *
+ * Al leer, las referencias se resuelven con el catálogo y todos los monstruos iguales de una aventura son
+ * el mismo objeto del catálogo, que no se puede modificar. Cada referencia lleva también los atributos del
+ * monstruo (ver CombatAdapter), que se usan si el monstruo ya no está en el catálogo.
+ * También se leen las aventuras guardadas con copias completas de los monstruos, para poder migrarlas.
+ * Los monstruos que no están en el catálogo se siguen guardando completos, y sin catálogo (como en la API)
+ * se guardan todos completos.
+ */
+final class AventuraAdapter extends TypeAdapter<Aventura> {
+    private final MonstreCatalog catalog;
+    private final CombatAdapter combatAdapter;
+
+    /**
+     * Constructor de la clase AventuraAdapter.
+     *
+     * @param catalog Catálogo con el que se resuelven las referencias a los monstruos, o null para guardar copias completas.
+     */
+    AventuraAdapter(MonstreCatalog catalog) {
+        this.catalog = catalog;
+        this.combatAdapter = new CombatAdapter(catalog);
+    }
+
+    /**
+     * Crea un objeto Gson que convierte las aventuras con este adaptador y el resto de entidades como SharedGson.
+     *
+     * @return El objeto Gson.
+     */
+    Gson toGson() {
+        return SharedGson.get().newBuilder()
+                .registerTypeAdapter(Aventura.class, this)
+                .registerTypeAdapter(Combat.class, combatAdapter)
+                .create();
+    }
+
+    /**
+     * Obtiene el catálogo con el que se resuelven las referencias.
+     *
+     * @return El catálogo de monstruos, o null si se guardan copias completas.
+     */
+    MonstreCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Indica si alguna de las aventuras leídas con este adaptador estaba guardada con un formato anterior
+     * (ver CombatAdapter.needsMigration).
+     *
+     * @return true si se ha leído alguna aventura con un formato anterior.
+     */
+    boolean needsMigration() {
+        return combatAdapter.needsMigration();
+    }
+
+    @Override
+    public void write(JsonWriter out, Aventura aventura) throws IOException {
+        out.beginObject();
+        out.name("name").value(aventura.getName());
+        out.name("nCombats").value(aventura.getnCombats());
+        out.name("combats").beginArray();
+        for (Combat combat : aventura.getCombats()) {
+            combatAdapter.write(out, combat);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public Aventura read(JsonReader in) throws IOException {
+        String name = null;
+        int nCombats = 0;
+        ArrayList<Combat> combats = new ArrayList<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("name")) {
+                name = in.nextString();
+            } else if (field.equals("nCombats")) {
+                nCombats = in.nextInt();
+            } else if (field.equals("combats")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    combats.add(combatAdapter.read(in));
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Aventura aventura = new Aventura(name, nCombats);
+        for (Combat c : combats) {
+            aventura.addCombat(c);
+        }
+        return aventura;
+    }
+}
@@ -25,7 +25,7 @@ public class AventuresAPI implements AventuresDAO {
      */
     public AventuresAPI() throws PersistenceException {
         apiHelper = new ApiHelper();
-        gson = new Gson();
+        gson = SharedGson.get();
     }
 
     /**
@@ -42,6 +42,50 @@ public class AventuresAPI implements AventuresDAO {
         return gson.fromJson(aventuresString, type);
     }
 
+    /**
+     * Obtiene los nombres de las aventuras desde la API.
+     * La API no permite pedir solo los nombres, así que se obtienen las aventuras completas.
+     *
+     * @return Los nombres de las aventuras obtenidas.
+     * @throws PersistenceException Si ocurre un error al intentar obtener las aventuras.
+     */
+    @Override
+    public ArrayList<String> getAventuraNames() throws PersistenceException {
+        // CLOUD_DATA
+        ArrayList<String> names = new ArrayList<>();
+        for (Aventura a : getAventures()) {
+            names.add(a.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Obtiene una página de los nombres de las aventuras desde la API.
+     *
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de nombres de la página.
+     * @return La página de nombres.
+     * @throws PersistenceException Si ocurre un error al intentar obtener las aventuras o el cursor no es válido.
+     */
+    @Override
+    public Page<String> getAventuraNames(String cursor, int pageSize) throws PersistenceException {
+        // CLOUD_DATA
+        return Page.of(getAventuraNames(), cursor, pageSize);
+    }
+
+    /**
+     * Obtiene una aventura desde la API dada su posición.
+     *
+     * @param index La posición de la aventura.
+     * @return La aventura obtenida.
+     * @throws PersistenceException Si ocurre un error al intentar obtener las aventuras.
+     */
+    @Override
+    public Aventura getAventura(int index) throws PersistenceException {
+        // CLOUD_DATA
+        return getAventures().get(index);
+    }
+
     /**
      * Guarda una aventura en la API.
      *
@@ -0,0 +1,260 @@
+package persistence;
+
+import business.entities.Aventura;
+import business.entities.Combat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * AventuresDAO que guarda en memoria las aventuras de otro AventuresDAO.
+ *
+ * Los nombres de todas las aventuras se mantienen siempre en memoria. Las aventuras completas se guardan
+ * en una caché LRU cuyo tamaño se mide en monstruos: cuando se supera el presupuesto configurado con la
+ * propiedad del sistema {@value #BUDGET_PROPERTY}, se descartan las aventuras que hace más tiempo que
+ * no se usan. Como MonstresCache, todo se vuelve a leer si cambia el archivo o caduca el tiempo de validez.
+ */
+public class AventuresCache implements AventuresDAO {
+    public static final String BUDGET_PROPERTY = "lsrpg.adventures.cache.budget";
+    public static final long DEFAULT_BUDGET = 500;
+
+    private final AventuresDAO aventuresDAO;
+    private final CacheValidity validity;
+    private final long budget;
+
+    private ArrayList<String> names;
+    private final LinkedHashMap<Integer, Aventura> aventures;
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Crea la caché de las aventuras locales.
+     *
+     * @return La caché sobre el archivo JSON de aventuras.
+     */
+    public static AventuresCache local() {
+        return new AventuresCache(new JSONAventuresDAO(), Paths.get(JsonFiles.dataFile(JSONAventuresDAO.RUTA)), 0,
+                Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+    }
+
+    /**
+     * Crea una caché que no caduca nunca, para aventuras que solo se modifican a través de la propia caché
+     * (como las del archivo de datos con árboles B+ o las de la base de datos).
+     *
+     * @param aventuresDAO AventuresDAO del que se leen las aventuras.
+     * @return La caché sobre las aventuras del AventuresDAO.
+     */
+    public static AventuresCache of(AventuresDAO aventuresDAO) {
+        return new AventuresCache(aventuresDAO, null, Long.MAX_VALUE, Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+    }
+
+    /**
+     * Crea la caché de las aventuras de la API, con el mismo tiempo de validez que el catálogo de monstruos.
+     *
+     * @return La caché sobre la API de aventuras.
+     * @throws PersistenceException Si ocurre un error al crear la conexión con la API.
+     */
+    public static AventuresCache cloud() throws PersistenceException {
+        long ttl = Long.getLong(MonstresCache.TTL_PROPERTY, MonstresCache.DEFAULT_TTL_SECONDS);
+        return new AventuresCache(new AventuresAPI(), null, ttl * 1000, Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+    }
+
+    /**
+     * Constructor de la clase AventuresCache.
+     *
+     * @param aventuresDAO AventuresDAO del que se leen las aventuras.
+     * @param path         Archivo del que se comprueban los cambios, o null para usar el tiempo de validez.
+     * @param ttlMillis    Tiempo de validez en milisegundos cuando no hay archivo.
+     * @param budget       Número máximo de monstruos de las aventuras guardadas en la caché.
+     */
+    AventuresCache(AventuresDAO aventuresDAO, Path path, long ttlMillis, long budget) {
+        this.aventuresDAO = aventuresDAO;
+        this.validity = new CacheValidity(path, ttlMillis);
+        this.budget = budget;
+        //Ordenado por acceso: el primero es el que hace más tiempo que no se usa
+        this.aventures = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Obtiene el número de aventuras guardadas.
+     *
+     * @return El número de aventuras.
+     * @throws PersistenceException Si ocurre algún error durante la lectura de las aventuras.
+     */
+    public synchronized int size() throws PersistenceException {
+        refresh();
+        return names.size();
+    }
+
+    /**
+     * Obtiene los nombres de todas las aventuras, sin cargar las aventuras completas.
+     *
+     * @return Los nombres de las aventuras en el orden del almacenamiento.
+     * @throws PersistenceException Si ocurre algún error durante la lectura de las aventuras.
+     */
+    @Override
+    public synchronized ArrayList<String> getAventuraNames() throws PersistenceException {
+        refresh();
+        return new ArrayList<>(names);
+    }
+
+    @Override
+    public synchronized Page<String> getAventuraNames(String cursor, int pageSize) throws PersistenceException {
+        refresh();
+        return Page.of(names, cursor, pageSize);
+    }
+
+    /**
+     * Obtiene la aventura de la posición indicada. Se devuelve una copia de sus combates, de forma que se pueden
+     * modificar sin afectar a la aventura guardada en la caché; los monstruos se comparten porque no se pueden
+     * modificar (la vida de cada monstruo durante el combate se guarda en InstanciaMonstre).
+     *
+     * @param index Posición de la aventura.
+     * @return Una copia de la aventura.
+     * @throws PersistenceException Si ocurre algún error durante la lectura de las aventuras.
+     */
+    @Override
+    public synchronized Aventura getAventura(int index) throws PersistenceException {
+        refresh();
+        if (index < 0 || index >= names.size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        Aventura aventura = aventures.get(index);
+        if (aventura != null) {
+            hits++;
+        } else {
+            misses++;
+            try {
+                //Solo se lee la aventura que falta
+                aventura = aventuresDAO.getAventura(index);
+            } catch (PersistenceException e) {
+                validity.invalidate();
+                throw e;
+            }
+            put(index, aventura);
+        }
+        return new Aventura(aventura);
+    }
+
+    @Override
+    public synchronized ArrayList<Aventura> getAventures() throws PersistenceException {
+        refresh();
+        return aventuresDAO.getAventures();
+    }
+
+    @Override
+    public synchronized void saveAventura(Aventura aventura) throws PersistenceException {
+        aventuresDAO.saveAventura(aventura);
+        if (names != null) {
+            //Las aventuras solo se añaden al final: las posiciones de las demás no cambian
+            names.add(aventura.getName());
+            try {
+                validity.changed();
+            } catch (IOException e) {
+                validity.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Obtiene el número de aventuras encontradas en la caché.
+     *
+     * @return El número de aciertos.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Obtiene el número de aventuras que no estaban en la caché y se tuvieron que leer.
+     *
+     * @return El número de fallos.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Obtiene el número de aventuras descartadas por superar el presupuesto de la caché.
+     *
+     * @return El número de aventuras descartadas.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Obtiene el número de monstruos de las aventuras que hay ahora en la caché.
+     *
+     * @return El peso actual de la caché.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Vacía la caché si las aventuras pueden haber cambiado y carga los nombres si no están en memoria.
+     *
+     * @throws PersistenceException Si ocurre algún error durante la lectura de las aventuras.
+     */
+    private void refresh() throws PersistenceException {
+        try {
+            if (validity.changed()) {
+                names = null;
+                aventures.clear();
+                weight = 0;
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't open the Adventures file", e);
+        }
+        if (names == null) {
+            try {
+                names = aventuresDAO.getAventuraNames();
+            } catch (PersistenceException e) {
+                validity.invalidate();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Guarda una aventura en la caché y descarta las menos usadas hasta volver al presupuesto.
+     * Una aventura con más monstruos que todo el presupuesto no se guarda.
+     */
+    private void put(int index, Aventura aventura) {
+        long pes = weight(aventura);
+        if (pes > budget) {
+            return;
+        }
+        aventures.put(index, aventura);
+        weight += pes;
+
+        Iterator<Map.Entry<Integer, Aventura>> it = aventures.entrySet().iterator();
+        while (weight > budget && it.hasNext()) {
+            Map.Entry<Integer, Aventura> eldest = it.next();
+            weight -= weight(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Calcula el peso de una aventura: el número de monstruos de todos sus combates (como mínimo 1).
+     */
+    private static long weight(Aventura aventura) {
+        long monstres = 0;
+        for (Combat c : aventura.getCombats()) {
+            monstres += c.getMonstres().size();
+        }
+        return Math.max(monstres, 1);
+    }
+}
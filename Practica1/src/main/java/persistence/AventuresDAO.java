@@ -17,6 +17,33 @@ public interface AventuresDAO {
      */
     ArrayList<Aventura> getAventures() throws PersistenceException;
 
+    /**
+     * Lee únicamente los nombres de las aventuras almacenadas, sin sus combates.
+     *
+     * @return Los nombres de las aventuras, en el mismo orden que getAventures.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    ArrayList<String> getAventuraNames() throws PersistenceException;
+
+    /**
+     * Lee una página de los nombres de las aventuras almacenadas.
+     *
+     * @param cursor   Cursor de la página devuelto por la lectura anterior, o null para la primera página.
+     * @param pageSize Número máximo de nombres de la página.
+     * @return La página de nombres; su posición sirve como índice de getAventura.
+     * @throws PersistenceException Si ocurre algún error durante la lectura o el cursor no es válido.
+     */
+    Page<String> getAventuraNames(String cursor, int pageSize) throws PersistenceException;
+
+    /**
+     * Lee únicamente la aventura de la posición indicada.
+     *
+     * @param index La posición de la aventura, en el mismo orden que getAventures.
+     * @return La aventura leída.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    Aventura getAventura(int index) throws PersistenceException;
+
     /**
      * Guarda una aventura en el almacenamiento.
      *
@@ -0,0 +1,271 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Índice de las aventuras de un archivo JSON: el nombre de cada aventura y la posición en bytes donde empieza
+ * y acaba su objeto dentro del archivo. Permite listar las aventuras y leer solo la elegida sin convertir el resto.
+ *
+ * El índice se guarda en un archivo aparte junto con el tamaño y la fecha de modificación del archivo de aventuras;
+ * si no coinciden (o no existe), se reconstruye recorriendo los bytes del archivo sin convertir ninguna aventura.
+ */
+final class AventuresIndex {
+
+    /**
+     * Posición de una aventura dentro del archivo.
+     */
+    static final class Entry {
+        private String name;
+        private long offset;
+        private int length;
+
+        Entry(String name, long offset, int length) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private long size;
+    private long modified;
+    private ArrayList<Entry> aventures;
+
+    private AventuresIndex(long size, long modified, ArrayList<Entry> aventures) {
+        this.size = size;
+        this.modified = modified;
+        this.aventures = aventures;
+    }
+
+    /**
+     * Comprueba si el índice corresponde al estado actual del archivo de aventuras.
+     *
+     * @param data Archivo de aventuras.
+     * @return true si el archivo no ha cambiado desde que se creó el índice.
+     * @throws IOException Si no se puede consultar el archivo.
+     */
+    boolean matches(Path data) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(data, BasicFileAttributes.class);
+        return attributes.size() == size && attributes.lastModifiedTime().toMillis() == modified;
+    }
+
+    /**
+     * Obtiene el número de aventuras del índice.
+     */
+    int size() {
+        return aventures.size();
+    }
+
+    /**
+     * Obtiene los nombres de todas las aventuras.
+     */
+    ArrayList<String> names() {
+        ArrayList<String> names = new ArrayList<>(aventures.size());
+        for (Entry e : aventures) {
+            names.add(e.name);
+        }
+        return names;
+    }
+
+    /**
+     * Lee del archivo de aventuras únicamente el texto JSON de la aventura de la posición indicada.
+     *
+     * @param data  Archivo de aventuras.
+     * @param index Posición de la aventura.
+     * @return El objeto JSON de la aventura.
+     * @throws IOException Si ocurre algún error durante la lectura.
+     */
+    String read(Path data, int index) throws IOException {
+        Entry e = aventures.get(index);
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate(e.length);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, e.offset + bytes.position()) < 0) {
+                    throw new IOException("Unexpected end of the Adventures file");
+                }
+            }
+            return new String(bytes.array(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Obtiene el índice del archivo de aventuras: del archivo de índice si está al día, o recorriendo el archivo si no.
+     *
+     * @param data  Archivo de aventuras.
+     * @param index Archivo del índice.
+     * @param gson  Objeto Gson utilizado para leer y escribir el índice.
+     * @return El índice de las aventuras.
+     * @throws IOException Si no se puede leer el archivo de aventuras.
+     */
+    static AventuresIndex load(Path data, Path index, Gson gson) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(data, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        if (Files.exists(index)) {
+            try {
+                AventuresIndex guardat = gson.fromJson(Files.readString(index, StandardCharsets.UTF_8), AventuresIndex.class);
+                if (guardat != null && guardat.size == attributes.size() && guardat.modified == modified && guardat.aventures != null) {
+                    return guardat;
+                }
+            } catch (JsonParseException e) {
+                //Índice dañado: se reconstruye
+            }
+        }
+
+        AventuresIndex nou = new AventuresIndex(attributes.size(), modified, scan(data));
+        nou.save(index, gson);
+        return nou;
+    }
+
+    /**
+     * Crea el índice de un archivo recién escrito a partir de las posiciones de sus aventuras y lo guarda.
+     *
+     * @param data   Archivo de aventuras.
+     * @param index  Archivo del índice.
+     * @param names  Nombres de las aventuras.
+     * @param spans  Posición y longitud en bytes de cada aventura.
+     * @param gson   Objeto Gson utilizado para escribir el índice.
+     * @return El índice de las aventuras.
+     * @throws IOException Si no se puede consultar el archivo de aventuras.
+     */
+    static AventuresIndex written(Path data, Path index, List<String> names, List<long[]> spans, Gson gson) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(data, BasicFileAttributes.class);
+        ArrayList<Entry> entries = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            entries.add(new Entry(names.get(i), spans.get(i)[0], (int) spans.get(i)[1]));
+        }
+
+        AventuresIndex nou = new AventuresIndex(attributes.size(), attributes.lastModifiedTime().toMillis(), entries);
+        nou.save(index, gson);
+        return nou;
+    }
+
+    /**
+     * Guarda el índice con un renombrado atómico. Si falla, se borra el índice anterior (que ya no corresponde
+     * al archivo de aventuras) para que se reconstruya la próxima vez.
+     */
+    private void save(Path index, Gson gson) {
+        Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, gson.toJson(this), StandardCharsets.UTF_8);
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            delete(tmp);
+            delete(index);
+        }
+    }
+
+    /**
+     * Borra un archivo del índice si existe. Si tampoco se puede borrar, el índice se descartará igualmente
+     * al leerlo, porque el tamaño y la fecha de modificación ya no coinciden con los del archivo de aventuras.
+     */
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            //El índice se descarta al leerlo
+        }
+    }
+
+    /**
+     * Recorre los bytes del archivo buscando dónde empieza y acaba cada objeto del array "aventures".
+     * Solo se convierte el nombre de cada aventura; sus combates y monstruos se saltan.
+     */
+    private static ArrayList<Entry> scan(Path data) throws IOException {
+        ArrayList<Entry> entries = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            int depth = 0;
+            boolean inString = false;
+            boolean escape = false;
+            //Si el último string del objeto principal es la clave "aventures"
+            boolean enAventures = false;
+            int keyStart = -1;
+            int start = -1;
+
+            for (int i = 0; i < buffer.limit(); i++) {
+                byte b = buffer.get(i);
+                if (inString) {
+                    if (escape) {
+                        escape = false;
+                    } else if (b == '\\') {
+                        escape = true;
+                    } else if (b == '"') {
+                        inString = false;
+                        if (depth == 1) {
+                            enAventures = isKey(buffer, keyStart, i, "aventures");
+                        }
+                    }
+                    continue;
+                }
+
+                if (b == '"') {
+                    inString = true;
+                    keyStart = i + 1;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                    if (depth == 3 && b == '{' && enAventures) {
+                        start = i;
+                    }
+                } else if (b == '}' || b == ']') {
+                    if (depth == 3 && b == '}' && start >= 0) {
+                        byte[] bytes = new byte[i + 1 - start];
+                        buffer.get(start, bytes);
+                        entries.add(new Entry(readName(new String(bytes, StandardCharsets.UTF_8)), start, bytes.length));
+                        start = -1;
+                    }
+                    depth--;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Comprueba si los bytes entre las posiciones indicadas son exactamente la clave buscada.
+     */
+    private static boolean isKey(MappedByteBuffer buffer, int from, int to, String key) {
+        if (to - from != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (buffer.get(from + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lee el atributo "name" de una aventura saltando el resto de atributos sin convertirlos.
+     */
+    private static String readName(String json) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("name")) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+            return null;
+        }
+    }
+}
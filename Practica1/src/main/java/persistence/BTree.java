@@ -0,0 +1,465 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Árbol B+ guardado en las páginas de un BufferPool, con claves y valores en bytes.
+ *
+ * Las claves se ordenan comparando sus bytes sin signo. Los nodos internos solo guardan claves separadoras
+ * y las hojas guardan las entradas y están enlazadas con la hoja siguiente, de forma que buscar, insertar o
+ * modificar una entrada lee y escribe una página por nivel, y un recorrido por rango solo lee las hojas del rango.
+ * Los valores que no caben en la hoja se guardan en una cadena de páginas de desbordamiento.
+ *
+ * Formato de una página de nodo:
+ * <pre>
+ * tipo (byte) | nº de claves (short) | enlace (int) | entradas
+ * hoja:    longitud de la clave (short) | clave | longitud del valor (short) | valor
+ * interno: longitud de la clave (short) | clave | hijo (int)
+ * </pre>
+ * En las hojas el enlace es la hoja siguiente y en los nodos internos el primer hijo.
+ * Al eliminar entradas los nodos no se fusionan: las hojas vacías se mantienen y los recorridos las saltan.
+ */
+final class BTree {
+    static final int MAX_KEY = 256;
+
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int NODE_HEADER = 7;
+    //Los valores más largos se guardan fuera de la hoja
+    private static final int MAX_INLINE = 512;
+    private static final byte INLINE = 0;
+    private static final byte OVERFLOW = 1;
+    private static final int OVERFLOW_HEADER = 8;
+
+    private final BufferPool pool;
+    private final int rootSlot;
+
+    /**
+     * Nodo del árbol leído de su página.
+     */
+    private static final class Node {
+        private final boolean leaf;
+        private int link;
+        private final ArrayList<byte[]> keys = new ArrayList<>();
+        //Hojas: el valor guardado de cada clave. Nodos internos: el hijo a la derecha de cada clave
+        private final ArrayList<byte[]> cells = new ArrayList<>();
+        private final ArrayList<Integer> children = new ArrayList<>();
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        int child(int index) {
+            return index == 0 ? link : children.get(index - 1);
+        }
+
+        int size() {
+            int size = NODE_HEADER;
+            for (int i = 0; i < keys.size(); i++) {
+                size += entrySize(i);
+            }
+            return size;
+        }
+
+        int entrySize(int i) {
+            return Short.BYTES + keys.get(i).length + (leaf ? Short.BYTES + cells.get(i).length : Integer.BYTES);
+        }
+    }
+
+    /**
+     * Separación de un nodo: la clave que sube al padre y la página del nuevo nodo de la derecha.
+     */
+    private static final class Split {
+        private final byte[] key;
+        private final int right;
+
+        Split(byte[] key, int right) {
+            this.key = key;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Entrada del árbol. El valor solo se lee (incluidas sus páginas de desbordamiento) cuando se pide.
+     */
+    final class Entry {
+        private final byte[] key;
+        private final byte[] cell;
+
+        private Entry(byte[] key, byte[] cell) {
+            this.key = key;
+            this.cell = cell;
+        }
+
+        byte[] getKey() {
+            return key;
+        }
+
+        byte[] getValue() throws IOException {
+            return value(cell);
+        }
+    }
+
+    /**
+     * Constructor de la clase BTree.
+     *
+     * @param pool     Archivo de páginas donde se guarda el árbol.
+     * @param rootSlot Valor de la cabecera del archivo donde se guarda la página raíz.
+     */
+    BTree(BufferPool pool, int rootSlot) {
+        this.pool = pool;
+        this.rootSlot = rootSlot;
+    }
+
+    /**
+     * Busca el valor de una clave.
+     *
+     * @param key Clave buscada.
+     * @return El valor, o null si la clave no existe.
+     * @throws IOException Si ocurre algún error durante la lectura de las páginas.
+     */
+    byte[] get(byte[] key) throws IOException {
+        int id = pool.getValue(rootSlot);
+        if (id == 0) {
+            return null;
+        }
+        Node node = load(id);
+        while (!node.leaf) {
+            node = load(node.child(childIndex(node, key)));
+        }
+        int i = search(node, key);
+        return i >= 0 ? value(node.cells.get(i)) : null;
+    }
+
+    /**
+     * Guarda el valor de una clave, sustituyendo el anterior si ya existía.
+     * Las páginas modificadas se escriben en el siguiente flush del BufferPool.
+     *
+     * @param key   Clave.
+     * @param value Valor.
+     * @return true si la clave ya existía.
+     * @throws IOException Si ocurre algún error durante la lectura o escritura de las páginas.
+     */
+    boolean put(byte[] key, byte[] value) throws IOException {
+        if (key.length > MAX_KEY) {
+            throw new IllegalArgumentException("Key too long: " + key.length + " bytes");
+        }
+        int root = pool.getValue(rootSlot);
+        if (root == 0) {
+            root = pool.allocate();
+            store(root, new Node(true));
+            pool.setValue(rootSlot, root);
+        }
+
+        boolean[] existia = new boolean[1];
+        Split split = insert(root, key, cell(value), existia);
+        if (split != null) {
+            //La raíz se ha separado: el árbol crece un nivel
+            Node arrel = new Node(false);
+            arrel.link = root;
+            arrel.keys.add(split.key);
+            arrel.children.add(split.right);
+            int id = pool.allocate();
+            store(id, arrel);
+            pool.setValue(rootSlot, id);
+        }
+        return existia[0];
+    }
+
+    /**
+     * Elimina una clave.
+     *
+     * @param key Clave a eliminar.
+     * @return true si la clave existía.
+     * @throws IOException Si ocurre algún error durante la lectura o escritura de las páginas.
+     */
+    boolean remove(byte[] key) throws IOException {
+        int id = pool.getValue(rootSlot);
+        if (id == 0) {
+            return false;
+        }
+        Node node = load(id);
+        while (!node.leaf) {
+            id = node.child(childIndex(node, key));
+            node = load(id);
+        }
+        int i = search(node, key);
+        if (i < 0) {
+            return false;
+        }
+        freeCell(node.cells.get(i));
+        node.keys.remove(i);
+        node.cells.remove(i);
+        store(id, node);
+        return true;
+    }
+
+    /**
+     * Recorre en orden las entradas con clave mayor o igual que la indicada, leyendo cada hoja cuando se llega a ella.
+     * El árbol no se debe modificar mientras se recorre.
+     *
+     * @param from Primera clave del recorrido, o null para empezar por la primera entrada.
+     * @return Un iterador sobre las entradas. Lanza UncheckedIOException si falla la lectura de una página.
+     * @throws IOException Si ocurre algún error al buscar la primera hoja.
+     */
+    Iterator<Entry> scan(byte[] from) throws IOException {
+        int id = pool.getValue(rootSlot);
+        Node first = null;
+        int start = 0;
+        if (id != 0) {
+            first = load(id);
+            while (!first.leaf) {
+                first = load(first.child(from == null ? 0 : childIndex(first, from)));
+            }
+            if (from != null) {
+                int i = search(first, from);
+                start = i >= 0 ? i : -i - 1;
+            }
+        }
+
+        Node leaf = first;
+        int inici = start;
+        return new Iterator<>() {
+            private Node actual = leaf;
+            private int index = inici;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (actual != null && index >= actual.keys.size()) {
+                        actual = actual.link == 0 ? null : load(actual.link);
+                        index = 0;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return actual != null;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry e = new Entry(actual.keys.get(index), actual.cells.get(index));
+                index++;
+                return e;
+            }
+        };
+    }
+
+    /**
+     * Comprueba si una clave empieza por los bytes indicados.
+     */
+    static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    /**
+     * Inserta la entrada en el subárbol de la página indicada.
+     *
+     * @return La separación del nodo si ya no cabe en su página, o null.
+     */
+    private Split insert(int id, byte[] key, byte[] cell, boolean[] existia) throws IOException {
+        Node node = load(id);
+        if (node.leaf) {
+            int i = search(node, key);
+            if (i >= 0) {
+                freeCell(node.cells.get(i));
+                node.cells.set(i, cell);
+                existia[0] = true;
+            } else {
+                node.keys.add(-i - 1, key);
+                node.cells.add(-i - 1, cell);
+            }
+        } else {
+            int c = childIndex(node, key);
+            Split split = insert(node.child(c), key, cell, existia);
+            if (split == null) {
+                return null;
+            }
+            node.keys.add(c, split.key);
+            node.children.add(c, split.right);
+        }
+
+        if (node.size() <= BufferPool.PAGE_SIZE) {
+            store(id, node);
+            return null;
+        }
+        return split(id, node);
+    }
+
+    /**
+     * Separa un nodo que no cabe en su página en dos nodos con aproximadamente los mismos bytes.
+     */
+    private Split split(int id, Node node) throws IOException {
+        int total = node.size();
+        int bytes = NODE_HEADER;
+        int mig = 0;
+        while (mig < node.keys.size() - 1 && bytes + node.entrySize(mig) <= total / 2) {
+            bytes += node.entrySize(mig);
+            mig++;
+        }
+        mig = Math.max(mig, 1);
+
+        Node dreta = new Node(node.leaf);
+        int rightId = pool.allocate();
+        byte[] separador;
+        if (node.leaf) {
+            //La primera clave de la hoja derecha se copia al padre
+            separador = node.keys.get(mig);
+            dreta.keys.addAll(node.keys.subList(mig, node.keys.size()));
+            dreta.cells.addAll(node.cells.subList(mig, node.cells.size()));
+            dreta.link = node.link;
+            node.link = rightId;
+            node.cells.subList(mig, node.cells.size()).clear();
+        } else {
+            //La clave del medio sube al padre y su hijo pasa a ser el primero del nodo derecho
+            separador = node.keys.get(mig);
+            dreta.link = node.children.get(mig);
+            dreta.keys.addAll(node.keys.subList(mig + 1, node.keys.size()));
+            dreta.children.addAll(node.children.subList(mig + 1, node.children.size()));
+            node.children.subList(mig, node.children.size()).clear();
+        }
+        node.keys.subList(mig, node.keys.size()).clear();
+
+        store(id, node);
+        store(rightId, dreta);
+        return new Split(separador, rightId);
+    }
+
+    /**
+     * Busca una clave en un nodo.
+     *
+     * @return La posición de la clave, o (-(posición de inserción) - 1) si no está.
+     */
+    private static int search(Node node, byte[] key) {
+        int lo = 0;
+        int hi = node.keys.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Arrays.compareUnsigned(node.keys.get(mid), key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    /**
+     * Obtiene la posición del hijo de un nodo interno que contiene la clave: el número de separadores menores o iguales.
+     */
+    private static int childIndex(Node node, byte[] key) {
+        int i = search(node, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private Node load(int id) throws IOException {
+        ByteBuffer page = pool.get(id).duplicate();
+        Node node = new Node(page.get(0) == LEAF);
+        int count = page.getShort(1);
+        node.link = page.getInt(3);
+        page.position(NODE_HEADER);
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[page.getShort()];
+            page.get(key);
+            node.keys.add(key);
+            if (node.leaf) {
+                byte[] cell = new byte[page.getShort()];
+                page.get(cell);
+                node.cells.add(cell);
+            } else {
+                node.children.add(page.getInt());
+            }
+        }
+        return node;
+    }
+
+    private void store(int id, Node node) throws IOException {
+        ByteBuffer page = pool.get(id).duplicate();
+        page.clear();
+        page.put(node.leaf ? LEAF : INTERNAL);
+        page.putShort((short) node.keys.size());
+        page.putInt(node.link);
+        for (int i = 0; i < node.keys.size(); i++) {
+            page.putShort((short) node.keys.get(i).length);
+            page.put(node.keys.get(i));
+            if (node.leaf) {
+                page.putShort((short) node.cells.get(i).length);
+                page.put(node.cells.get(i));
+            } else {
+                page.putInt(node.children.get(i));
+            }
+        }
+        pool.markDirty(id);
+    }
+
+    /**
+     * Crea el valor guardado en la hoja: el propio valor, o la primera página y la longitud si se guarda fuera.
+     */
+    private byte[] cell(byte[] value) throws IOException {
+        if (value.length <= MAX_INLINE) {
+            ByteBuffer cell = ByteBuffer.allocate(1 + value.length);
+            cell.put(INLINE).put(value);
+            return cell.array();
+        }
+
+        int capacitat = BufferPool.PAGE_SIZE - OVERFLOW_HEADER;
+        int first = 0;
+        //Las páginas se escriben de la última a la primera para conocer siempre la siguiente
+        for (int offset = (value.length - 1) / capacitat * capacitat; offset >= 0; offset -= capacitat) {
+            int id = pool.allocate();
+            ByteBuffer page = pool.get(id);
+            int length = Math.min(capacitat, value.length - offset);
+            page.putInt(0, first);
+            page.putInt(4, length);
+            page.put(OVERFLOW_HEADER, value, offset, length);
+            pool.markDirty(id);
+            first = id;
+        }
+        return ByteBuffer.allocate(1 + 2 * Integer.BYTES).put(OVERFLOW).putInt(first).putInt(value.length).array();
+    }
+
+    private byte[] value(byte[] cell) throws IOException {
+        if (cell[0] == INLINE) {
+            return Arrays.copyOfRange(cell, 1, cell.length);
+        }
+        ByteBuffer ref = ByteBuffer.wrap(cell, 1, 2 * Integer.BYTES);
+        int id = ref.getInt();
+        byte[] value = new byte[ref.getInt()];
+        int offset = 0;
+        while (offset < value.length) {
+            ByteBuffer page = pool.get(id);
+            int length = page.getInt(4);
+            page.get(OVERFLOW_HEADER, value, offset, length);
+            offset += length;
+            id = page.getInt(0);
+        }
+        return value;
+    }
+
+    /**
+     * Libera las páginas de desbordamiento de un valor.
+     */
+    private void freeCell(byte[] cell) throws IOException {
+        if (cell[0] != OVERFLOW) {
+            return;
+        }
+        int id = ByteBuffer.wrap(cell, 1, Integer.BYTES).getInt();
+        while (id != 0) {
+            int next = pool.get(id).getInt(0);
+            pool.free(id);
+            id = next;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package persistence;
+
+import business.entities.Aventura;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Implementación de AventuresDAO sobre los árboles B+ de un BTreeStore.
+ *
+ * Cada aventura se guarda en formato JSON con su posición como clave, y sus nombres en un árbol aparte,
+ * de forma que listar las aventuras no lee sus combates y leer una aventura solo lee su camino en el árbol.
+ * Los monstruos de los combates se guardan como referencias al catálogo de monstruos del archivo (ver AventuraAdapter);
+ * las aventuras guardadas con copias completas de los monstruos se migran la primera vez que se leen.
+ */
+public class BTreeAventuresDAO implements AventuresDAO {
+    private final BTreeStore store;
+    private final BTree aventures;
+    private final BTree noms;
+    private final MonstresCache monstres;
+    private AventuraAdapter adapter;
+    private boolean migrated;
+
+    /**
+     * Constructor de la clase BTreeAventuresDAO. Se obtiene con {@link BTreeStore#getAventuresDAO()}.
+     *
+     * @param store    Archivo de datos donde se guardan las aventuras.
+     * @param monstres Catálogo con el que se resuelven los monstruos de las aventuras.
+     */
+    BTreeAventuresDAO(BTreeStore store, MonstresCache monstres) {
+        this.store = store;
+        this.aventures = store.tree(BTreeStore.ADVENTURES);
+        this.noms = store.tree(BTreeStore.ADVENTURE_NAMES);
+        this.monstres = monstres;
+    }
+
+    @Override
+    public ArrayList<Aventura> getAventures() throws PersistenceException {
+        synchronized (store) {
+            migrate();
+            ArrayList<Aventura> llista = new ArrayList<>();
+            try {
+                Iterator<BTree.Entry> it = aventures.scan(null);
+                while (it.hasNext()) {
+                    llista.add(decode(it.next().getValue()));
+                }
+            } catch (IOException | UncheckedIOException | JsonParseException e) {
+                throw readError(e);
+            }
+            return llista;
+        }
+    }
+
+    @Override
+    public ArrayList<String> getAventuraNames() throws PersistenceException {
+        synchronized (store) {
+            ArrayList<String> llista = new ArrayList<>();
+            try {
+                Iterator<BTree.Entry> it = noms.scan(null);
+                while (it.hasNext()) {
+                    llista.add(new String(it.next().getValue(), StandardCharsets.UTF_8));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+            return llista;
+        }
+    }
+
+    @Override
+    public Page<String> getAventuraNames(String cursor, int pageSize) throws PersistenceException {
+        synchronized (store) {
+            try {
+                //Se empieza directamente por la hoja de la primera aventura de la página
+                int offset = Page.offset(cursor);
+                Page<BTree.Entry> entries = Page.of(noms.scan(key(offset)), null, pageSize);
+                ArrayList<String> items = new ArrayList<>(entries.getItems().size());
+                for (BTree.Entry e : entries.getItems()) {
+                    items.add(new String(e.getValue(), StandardCharsets.UTF_8));
+                }
+                return new Page<>(items, offset, entries.hasNext() ? Page.cursor(offset + items.size()) : null);
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+        }
+    }
+
+    @Override
+    public Aventura getAventura(int index) throws PersistenceException {
+        synchronized (store) {
+            migrate();
+            return read(index);
+        }
+    }
+
+    private Aventura read(int index) throws PersistenceException {
+        synchronized (store) {
+            byte[] value;
+            try {
+                value = aventures.get(key(index));
+            } catch (IOException e) {
+                throw readError(e);
+            }
+            if (value == null) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            try {
+                return decode(value);
+            } catch (JsonParseException e) {
+                throw readError(e);
+            }
+        }
+    }
+
+    @Override
+    public void saveAventura(Aventura aventura) throws PersistenceException {
+        synchronized (store) {
+            //Las aventuras se añaden al final: la clave es el número de aventuras guardadas
+            int index = store.getValue(BTreeStore.ADVENTURE_COUNT);
+            try {
+                aventures.put(key(index), encode(aventura));
+                noms.put(key(index), aventura.getName().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new PersistenceException("Error: Couldn't write the Adventures to the data file", e);
+            }
+            store.setValue(BTreeStore.ADVENTURE_COUNT, index + 1);
+            store.commit();
+        }
+    }
+
+    /**
+     * Crea la clave de la aventura de la posición indicada. Se escribe en big-endian para que
+     * el orden de las claves sea el de las posiciones.
+     */
+    private static byte[] key(int index) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(index).array();
+    }
+
+    /**
+     * Migra las aventuras guardadas con copias completas de los monstruos al formato con referencias al catálogo.
+     * Se leen todas las aventuras, porque una aventura sin monstruos del catálogo no indica el formato del resto.
+     * Si la migración falla, se vuelve a intentar en la siguiente operación.
+     */
+    private void migrate() throws PersistenceException {
+        if (migrated) {
+            return;
+        }
+        int n = store.getValue(BTreeStore.ADVENTURE_COUNT);
+        try {
+            Aventura[] llegides = new Aventura[n];
+            for (int i = 0; i < n; i++) {
+                byte[] value = aventures.get(key(i));
+                if (value != null) {
+                    llegides[i] = decode(value);
+                }
+            }
+            if (adapter().needsMigration()) {
+                for (int i = 0; i < n; i++) {
+                    if (llegides[i] != null) {
+                        aventures.put(key(i), encode(llegides[i]));
+                    }
+                }
+                store.commit();
+            }
+        } catch (IOException | JsonParseException e) {
+            throw new PersistenceException("Error: Couldn't write the Adventures to the data file", e);
+        }
+        migrated = true;
+    }
+
+    /**
+     * Obtiene el adaptador de las aventuras con el catálogo de monstruos actual.
+     */
+    private AventuraAdapter adapter() throws PersistenceException {
+        MonstreCatalog catalog = monstres.getCatalog();
+        if (adapter == null || adapter.getCatalog() != catalog) {
+            adapter = new AventuraAdapter(catalog);
+        }
+        return adapter;
+    }
+
+    private byte[] encode(Aventura aventura) throws PersistenceException {
+        return adapter().toJson(aventura).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Aventura decode(byte[] value) throws PersistenceException, JsonParseException {
+        try {
+            return adapter().fromJson(new String(value, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new JsonParseException(e);
+        }
+    }
+
+    private static PersistenceException readError(Exception e) {
+        return new PersistenceException("Error: Couldn't read the Adventures from the data file", e);
+    }
+}
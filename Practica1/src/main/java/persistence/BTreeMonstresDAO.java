@@ -0,0 +1,73 @@
+package persistence;
+
+import business.entities.Monstre;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Implementación de MonstresDAO sobre un árbol B+ de un BTreeStore.
+ * Cada monstruo se guarda en formato JSON con su posición en el catálogo como clave.
+ */
+public class BTreeMonstresDAO implements MonstresDAO {
+    private final BTreeStore store;
+    private final BTree monstres;
+    private final Gson gson;
+
+    /**
+     * Constructor de la clase BTreeMonstresDAO. Se obtiene con {@link BTreeStore#getMonstresDAO()}.
+     *
+     * @param store Archivo de datos donde se guardan los monstruos.
+     */
+    BTreeMonstresDAO(BTreeStore store) {
+        this.store = store;
+        this.monstres = store.tree(BTreeStore.MONSTERS);
+        this.gson = SharedGson.get();
+    }
+
+    @Override
+    public ArrayList<Monstre> readMonsters() throws PersistenceException {
+        synchronized (store) {
+            ArrayList<Monstre> llista = new ArrayList<>();
+            try {
+                Iterator<BTree.Entry> it = monstres.scan(null);
+                while (it.hasNext()) {
+                    llista.add(gson.fromJson(new String(it.next().getValue(), StandardCharsets.UTF_8), Monstre.class));
+                }
+            } catch (IOException | UncheckedIOException | JsonParseException e) {
+                throw new PersistenceException("Error: Couldn't read the Monsters from the data file", e);
+            }
+            return llista;
+        }
+    }
+
+    /**
+     * Añade monstruos al final del catálogo.
+     *
+     * @param nous Monstruos a añadir.
+     * @throws PersistenceException Si ocurre algún error durante la escritura.
+     */
+    public void saveMonsters(Collection<Monstre> nous) throws PersistenceException {
+        synchronized (store) {
+            int index = store.getValue(BTreeStore.MONSTER_COUNT);
+            try {
+                for (Monstre m : nous) {
+                    monstres.put(ByteBuffer.allocate(Integer.BYTES).putInt(index).array(),
+                            gson.toJson(m, Monstre.class).getBytes(StandardCharsets.UTF_8));
+                    index++;
+                }
+            } catch (IOException e) {
+                throw new PersistenceException("Error: Couldn't write the Monsters to the data file", e);
+            }
+            store.setValue(BTreeStore.MONSTER_COUNT, index);
+            store.commit();
+        }
+    }
+}
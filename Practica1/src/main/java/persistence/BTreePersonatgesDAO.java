@@ -0,0 +1,426 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+import business.entities.personatge.PersonatgeFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Implementación de PersonatgesDAO sobre los árboles B+ de un BTreeStore.
+ *
+ * La clave de cada personaje es su jugador seguido de su nombre, de forma que los personajes de un jugador
+ * están juntos y se leen con un recorrido por rango. Un segundo árbol guarda las mismas claves precedidas
+ * del nivel, para buscar personajes por rango de niveles. El valor es la clase y las estadísticas del personaje.
+ * Los personajes se devuelven ordenados por jugador y nombre. El número de personajes se guarda en la cabecera
+ * del archivo, de forma que contarlos no recorre el árbol.
+ */
+public class BTreePersonatgesDAO implements PersonatgesDAO {
+    //El nivel ocupa 4 bytes de la clave del índice por nivel
+    private static final int MAX_KEY = BTree.MAX_KEY - Integer.BYTES;
+
+    private final BTreeStore store;
+    private final BTree personatges;
+    private final BTree perNivell;
+
+    /**
+     * Constructor de la clase BTreePersonatgesDAO. Se obtiene con {@link BTreeStore#getPersonatgesDAO()}.
+     *
+     * @param store Archivo de datos donde se guardan los personajes.
+     */
+    BTreePersonatgesDAO(BTreeStore store) {
+        this.store = store;
+        this.personatges = store.tree(BTreeStore.CHARACTERS);
+        this.perNivell = store.tree(BTreeStore.CHARACTERS_BY_LEVEL);
+    }
+
+    @Override
+    public ArrayList<Personatge> readPersonatges() throws PersistenceException {
+        synchronized (store) {
+            ArrayList<Personatge> llista = new ArrayList<>();
+            try {
+                Iterator<BTree.Entry> it = personatges.scan(null);
+                while (it.hasNext()) {
+                    llista.add(decode(it.next()));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+            return llista;
+        }
+    }
+
+    @Override
+    public int countPersonatges() throws PersistenceException {
+        synchronized (store) {
+            int guardat = store.getValue(BTreeStore.CHARACTER_COUNT);
+            if (guardat > 0) {
+                return guardat - 1;
+            }
+
+            //Archivo creado antes de guardar el número: se cuentan las claves una vez, sin decodificar los personajes
+            int count = 0;
+            try {
+                Iterator<BTree.Entry> it = personatges.scan(null);
+                while (it.hasNext()) {
+                    it.next();
+                    count++;
+                }
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+            store.setValue(BTreeStore.CHARACTER_COUNT, count + 1);
+            store.commit();
+            return count;
+        }
+    }
+
+    @Override
+    public Personatge findByKey(String name, String player) throws PersistenceException {
+        synchronized (store) {
+            try {
+                byte[] key = key(name, player);
+                byte[] value = personatges.get(key);
+                return value == null ? null : decode(key, value);
+            } catch (IOException e) {
+                throw readError(e);
+            }
+        }
+    }
+
+    @Override
+    public ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException {
+        synchronized (store) {
+            ArrayList<Personatge> trobats = new ArrayList<>();
+            try {
+                //Solo se decodifican los valores de los personajes cuyo jugador contiene el texto
+                Iterator<BTree.Entry> it = new PlayerFilter(personatges.scan(null), player);
+                while (it.hasNext()) {
+                    trobats.add(decode(it.next()));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+            return trobats;
+        }
+    }
+
+    @Override
+    public Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        synchronized (store) {
+            try {
+                return decode(Page.of(personatges.scan(null), cursor, pageSize));
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+        }
+    }
+
+    @Override
+    public Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException {
+        synchronized (store) {
+            try {
+                return decode(Page.of(new PlayerFilter(personatges.scan(null), player), cursor, pageSize));
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+        }
+    }
+
+    /**
+     * Lee los personajes de un jugador con un recorrido por rango, sin pasar por los de otros jugadores.
+     *
+     * @param player Nombre exacto del jugador.
+     * @return Los personajes del jugador ordenados por nombre.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    public ArrayList<Personatge> readByPlayer(String player) throws PersistenceException {
+        synchronized (store) {
+            byte[] prefix = prefix(player);
+            ArrayList<Personatge> trobats = new ArrayList<>();
+            try {
+                Iterator<BTree.Entry> it = personatges.scan(prefix);
+                while (it.hasNext()) {
+                    BTree.Entry e = it.next();
+                    if (!BTree.startsWith(e.getKey(), prefix)) {
+                        break;
+                    }
+                    trobats.add(decode(e));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+            return trobats;
+        }
+    }
+
+    /**
+     * Lee los personajes con un nivel dentro del rango indicado, utilizando el índice por nivel.
+     *
+     * @param minLevel Nivel mínimo (incluido).
+     * @param maxLevel Nivel máximo (incluido).
+     * @return Los personajes ordenados por nivel, jugador y nombre.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    public ArrayList<Personatge> readByLevel(int minLevel, int maxLevel) throws PersistenceException {
+        synchronized (store) {
+            ArrayList<Personatge> trobats = new ArrayList<>();
+            try {
+                Iterator<BTree.Entry> it = perNivell.scan(ByteBuffer.allocate(Integer.BYTES).putInt(Math.max(minLevel, 0)).array());
+                while (it.hasNext()) {
+                    byte[] levelKey = it.next().getKey();
+                    if (ByteBuffer.wrap(levelKey).getInt() > maxLevel) {
+                        break;
+                    }
+                    byte[] key = Arrays.copyOfRange(levelKey, Integer.BYTES, levelKey.length);
+                    trobats.add(decode(key, personatges.get(key)));
+                }
+            } catch (IOException | UncheckedIOException e) {
+                throw readError(e);
+            }
+            return trobats;
+        }
+    }
+
+    @Override
+    public void createPersonatge(Personatge p) throws PersistenceException {
+        createPersonatges(List.of(p));
+    }
+
+    @Override
+    public void deletePersonatge(Personatge p) throws PersistenceException {
+        deletePersonatges(List.of(p));
+    }
+
+    @Override
+    public void updateCharacter(Personatge p) throws PersistenceException {
+        updateCharacters(List.of(p));
+    }
+
+    @Override
+    public void createPersonatges(Collection<? extends Personatge> nous) throws PersistenceException {
+        synchronized (store) {
+            try {
+                //Comprobamos todas las claves antes de insertar ninguna
+                HashSet<PersonatgeKey> claus = new HashSet<>();
+                for (Personatge p : nous) {
+                    if (!claus.add(PersonatgeKey.of(p)) || personatges.get(key(p.getName(), p.getPlayer())) != null) {
+                        throw new PersistenceException("Error: The character " + p.getName() + " of " + p.getPlayer() + " already exists", null);
+                    }
+                }
+                for (Personatge p : nous) {
+                    byte[] key = key(p.getName(), p.getPlayer());
+                    personatges.put(key, encode(p));
+                    perNivell.put(levelKey(p.getNivell(), key), new byte[0]);
+                }
+                addCount(nous.size());
+            } catch (IOException e) {
+                throw writeError(e);
+            }
+            store.commit();
+        }
+        for (Personatge p : nous) {
+            p.netejarCanvis();
+        }
+    }
+
+    @Override
+    public void deletePersonatges(Collection<? extends Personatge> eliminats) throws PersistenceException {
+        synchronized (store) {
+            try {
+                int eliminat = 0;
+                for (Personatge p : eliminats) {
+                    byte[] key = key(p.getName(), p.getPlayer());
+                    byte[] value = personatges.get(key);
+                    if (value != null) {
+                        personatges.remove(key);
+                        perNivell.remove(levelKey(decode(key, value).getNivell(), key));
+                        eliminat++;
+                    }
+                }
+                addCount(-eliminat);
+            } catch (IOException e) {
+                throw writeError(e);
+            }
+            store.commit();
+        }
+    }
+
+    @Override
+    public void updateCharacters(Collection<? extends Personatge> modificats) throws PersistenceException {
+        synchronized (store) {
+            boolean canvis = false;
+            try {
+                //Solo se modifican las hojas de los personajes que han cambiado (y su entrada del índice si cambia el nivel)
+                for (Personatge p : modificats) {
+                    if (!p.isModificat()) {
+                        continue;
+                    }
+                    byte[] key = key(p.getName(), p.getPlayer());
+                    byte[] value = personatges.get(key);
+                    if (value == null) {
+                        continue;
+                    }
+                    //Se guardan los atributos modificados sobre los que hay en el árbol
+                    Personatge guardat = decode(key, value);
+                    Personatge nou = PersonatgeFactory.merge(guardat, p);
+                    personatges.put(key, encode(nou));
+                    if (guardat.getNivell() != nou.getNivell()) {
+                        perNivell.remove(levelKey(guardat.getNivell(), key));
+                        perNivell.put(levelKey(nou.getNivell(), key), new byte[0]);
+                    }
+                    canvis = true;
+                }
+            } catch (IOException e) {
+                throw writeError(e);
+            }
+            if (canvis) {
+                store.commit();
+            }
+        }
+        for (Personatge p : modificats) {
+            p.netejarCanvis();
+        }
+    }
+
+    /**
+     * Suma al número de personajes de la cabecera los creados o eliminados, si el número se conoce.
+     * Se escribe en el mismo commit que los personajes.
+     */
+    private void addCount(int delta) {
+        int guardat = store.getValue(BTreeStore.CHARACTER_COUNT);
+        if (guardat > 0) {
+            store.setValue(BTreeStore.CHARACTER_COUNT, guardat + delta);
+        }
+    }
+
+    /**
+     * Crea la clave de un personaje: el jugador, un byte 0 y el nombre.
+     */
+    private static byte[] key(String name, String player) throws PersistenceException {
+        byte[] prefix = prefix(player);
+        byte[] nom = name.getBytes(StandardCharsets.UTF_8);
+        if (prefix.length + nom.length > MAX_KEY) {
+            throw new PersistenceException("Error: The name of the character " + name + " of " + player + " is too long", null);
+        }
+        return ByteBuffer.allocate(prefix.length + nom.length).put(prefix).put(nom).array();
+    }
+
+    /**
+     * Obtiene el inicio de las claves de los personajes de un jugador.
+     */
+    private static byte[] prefix(String player) {
+        byte[] jugador = player.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(jugador.length + 1).put(jugador).put((byte) 0).array();
+    }
+
+    private static byte[] levelKey(int level, byte[] key) {
+        return ByteBuffer.allocate(Integer.BYTES + key.length).putInt(level).put(key).array();
+    }
+
+    /**
+     * Obtiene el jugador de una clave sin leer el valor.
+     */
+    private static String player(byte[] key) {
+        int i = 0;
+        while (key[i] != 0) {
+            i++;
+        }
+        return new String(key, 0, i, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(Personatge p) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(p.getClase());
+            out.writeInt(p.getXp());
+            out.writeInt(p.getBody());
+            out.writeInt(p.getMind());
+            out.writeInt(p.getSpirit());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Personatge decode(BTree.Entry e) throws IOException {
+        return decode(e.getKey(), e.getValue());
+    }
+
+    private static Personatge decode(byte[] key, byte[] value) throws IOException {
+        String player = player(key);
+        int inici = player.getBytes(StandardCharsets.UTF_8).length + 1;
+
+        String name = new String(key, inici, key.length - inici, StandardCharsets.UTF_8);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            //El jugador y la clase se repiten entre personajes y se internan
+            return PersonatgeFactory.create(name, StringPool.PLAYERS.intern(player), StringPool.CLASSES.intern(in.readUTF()),
+                    in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        }
+    }
+
+    /**
+     * Decodifica únicamente los personajes de una página de entradas.
+     */
+    private static Page<Personatge> decode(Page<BTree.Entry> entries) throws IOException {
+        ArrayList<Personatge> items = new ArrayList<>(entries.getItems().size());
+        for (BTree.Entry e : entries.getItems()) {
+            items.add(decode(e));
+        }
+        return new Page<>(items, entries.getOffset(), entries.getNextCursor());
+    }
+
+    private static PersistenceException readError(Exception e) {
+        return new PersistenceException("Error: Couldn't read the Characters from the data file", e);
+    }
+
+    private static PersistenceException writeError(Exception e) {
+        return new PersistenceException("Error: Couldn't write the Characters to the data file", e);
+    }
+
+    /**
+     * Recorre las entradas cuyo jugador contiene el texto indicado, mirando solo las claves.
+     */
+    private static class PlayerFilter implements Iterator<BTree.Entry> {
+        private final Iterator<BTree.Entry> entries;
+        private final String text;
+        private BTree.Entry seguent;
+
+        PlayerFilter(Iterator<BTree.Entry> entries, String text) {
+            this.entries = entries;
+            this.text = text;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (seguent == null && entries.hasNext()) {
+                BTree.Entry e = entries.next();
+                if (player(e.getKey()).contains(text)) {
+                    seguent = e;
+                }
+            }
+            return seguent != null;
+        }
+
+        @Override
+        public BTree.Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BTree.Entry e = seguent;
+            seguent = null;
+            return e;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package persistence;
+
+import business.entities.Aventura;
+import business.entities.Monstre;
+import business.entities.personatge.Personatge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ * Archivo de datos local organizado en páginas con un árbol B+ para cada tipo de dato.
+ *
+ * Guarda los personajes (con un índice secundario por nivel), las aventuras y los monstruos en un único archivo,
+ * de forma que buscar, crear o modificar un registro solo lee y escribe las páginas de su camino en el árbol
+ * en lugar de reescribir todo un archivo JSON. Las páginas se guardan en una caché LRU cuyo tamaño
+ * se configura con la propiedad del sistema {@value #CACHE_PROPERTY} (en páginas).
+ *
+ * Si el archivo no existe, se crea importando los archivos JSON de personajes, aventuras y monstruos.
+ * Todos los DAO del archivo comparten la misma instancia, que se obtiene con {@link #getDefault()}.
+ */
+public final class BTreeStore {
+    public static final String RUTA = "src/data/lsrpg.db";
+    public static final String CACHE_PROPERTY = "lsrpg.btree.cache.pages";
+    public static final int DEFAULT_CACHE_PAGES = 256;
+
+    //Valores de la cabecera del archivo
+    static final int CHARACTERS = 0;
+    static final int CHARACTERS_BY_LEVEL = 1;
+    static final int ADVENTURES = 2;
+    static final int ADVENTURE_NAMES = 3;
+    static final int MONSTERS = 4;
+    static final int ADVENTURE_COUNT = 5;
+    static final int MONSTER_COUNT = 6;
+    //Número de personajes más uno: 0 (el valor de los archivos creados antes de guardarlo) indica que no se conoce
+    static final int CHARACTER_COUNT = 7;
+
+    private static BTreeStore defaultStore;
+
+    private final BufferPool pool;
+    private final BTreePersonatgesDAO personatgesDAO;
+    private final BTreeAventuresDAO aventuresDAO;
+    private final BTreeMonstresDAO monstresDAO;
+
+    /**
+     * Obtiene el archivo de datos compartido por toda la aplicación, abriéndolo (o creándolo) la primera vez.
+     *
+     * @return El archivo de datos de la ruta por defecto.
+     * @throws PersistenceException Si no se puede abrir o crear el archivo.
+     */
+    public static synchronized BTreeStore getDefault() throws PersistenceException {
+        if (defaultStore == null) {
+            defaultStore = open(RUTA, Integer.getInteger(CACHE_PROPERTY, DEFAULT_CACHE_PAGES));
+        }
+        return defaultStore;
+    }
+
+    /**
+     * Abre un archivo de datos. Si no existe, se crea con los datos de los archivos JSON locales.
+     *
+     * @param ruta       Ruta del archivo.
+     * @param cachePages Número de páginas guardadas en memoria.
+     * @return El archivo de datos abierto.
+     * @throws PersistenceException Si no se puede abrir o crear el archivo.
+     */
+    public static BTreeStore open(String ruta, int cachePages) throws PersistenceException {
+        Path path = Paths.get(ruta);
+        if (!Files.exists(path)) {
+            importJson(path);
+        }
+        try {
+            return new BTreeStore(new BufferPool(path, cachePages));
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't open the data file", e);
+        }
+    }
+
+    private BTreeStore(BufferPool pool) {
+        this.pool = pool;
+        this.personatgesDAO = new BTreePersonatgesDAO(this);
+        this.monstresDAO = new BTreeMonstresDAO(this);
+        this.aventuresDAO = new BTreeAventuresDAO(this, MonstresCache.of(monstresDAO));
+    }
+
+    /**
+     * Obtiene el DAO de los personajes del archivo.
+     *
+     * @return El DAO de personajes.
+     */
+    public BTreePersonatgesDAO getPersonatgesDAO() {
+        return personatgesDAO;
+    }
+
+    /**
+     * Obtiene el DAO de las aventuras del archivo.
+     *
+     * @return El DAO de aventuras.
+     */
+    public BTreeAventuresDAO getAventuresDAO() {
+        return aventuresDAO;
+    }
+
+    /**
+     * Obtiene el DAO de los monstruos del archivo.
+     *
+     * @return El DAO de monstruos.
+     */
+    public BTreeMonstresDAO getMonstresDAO() {
+        return monstresDAO;
+    }
+
+    /**
+     * Obtiene el número de páginas leídas del archivo desde que se abrió.
+     *
+     * @return El número de páginas leídas.
+     */
+    public synchronized long getPageReads() {
+        return pool.getReads();
+    }
+
+    /**
+     * Obtiene el número de páginas escritas en el archivo desde que se abrió.
+     *
+     * @return El número de páginas escritas.
+     */
+    public synchronized long getPageWrites() {
+        return pool.getWrites();
+    }
+
+    /**
+     * Obtiene el número de páginas encontradas en la caché desde que se abrió.
+     *
+     * @return El número de aciertos de la caché de páginas.
+     */
+    public synchronized long getPageHits() {
+        return pool.getHits();
+    }
+
+    /**
+     * Escribe las páginas pendientes y cierra el archivo.
+     *
+     * @throws PersistenceException Si ocurre algún error durante la escritura.
+     */
+    public synchronized void close() throws PersistenceException {
+        try {
+            pool.close();
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't write the data file", e);
+        }
+    }
+
+    /**
+     * Obtiene el árbol guardado en el valor de la cabecera indicado.
+     */
+    BTree tree(int slot) {
+        return new BTree(pool, slot);
+    }
+
+    int getValue(int slot) {
+        return pool.getValue(slot);
+    }
+
+    void setValue(int slot, int value) {
+        pool.setValue(slot, value);
+    }
+
+    /**
+     * Escribe en el archivo las páginas modificadas por la última operación.
+     *
+     * @throws PersistenceException Si ocurre algún error durante la escritura.
+     */
+    void commit() throws PersistenceException {
+        try {
+            pool.flush();
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't write the data file", e);
+        }
+    }
+
+    /**
+     * Crea el archivo de datos a partir de los archivos JSON. Se crea con otro nombre y se renombra al acabar,
+     * para no dejar un archivo a medias si falla la importación.
+     */
+    private static void importJson(Path path) throws PersistenceException {
+        ArrayList<Personatge> personatges = Files.exists(Paths.get(JsonFiles.dataFile(JSONPersonatgesDAO.RUTA)))
+                ? new JSONPersonatgesDAO().readFile() : new ArrayList<>();
+        ArrayList<Aventura> aventures = Files.exists(Paths.get(JsonFiles.dataFile(JSONAventuresDAO.RUTA)))
+                ? new JSONAventuresDAO().getAventures() : new ArrayList<>();
+        ArrayList<Monstre> monstres = Files.exists(Paths.get(JsonFiles.dataFile(JSONMonstresDAO.RUTA)))
+                ? MonstresCache.local().readMonsters() : new ArrayList<>();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(tmp);
+            BTreeStore store = new BTreeStore(new BufferPool(tmp, DEFAULT_CACHE_PAGES));
+            try {
+                //El archivo empieza sin personajes, así que el número se conoce desde el principio
+                store.setValue(CHARACTER_COUNT, 1);
+                store.getPersonatgesDAO().createPersonatges(personatges);
+                store.getMonstresDAO().saveMonsters(monstres);
+                for (Aventura aventura : aventures) {
+                    store.getAventuresDAO().saveAventura(aventura);
+                }
+            } finally {
+                store.close();
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't create the data file", e);
+        }
+    }
+}
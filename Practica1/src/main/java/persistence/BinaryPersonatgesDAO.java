@@ -0,0 +1,594 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+import business.entities.personatge.PersonatgeFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementación de PersonatgesDAO que guarda los personajes en un archivo binario de formato fijo
+ * y lo abre proyectándolo en memoria con {@link FileChannel#map}.
+ *
+ * Formato del archivo:
+ * <pre>
+ * cabecera:  magic (int) | versión (int) | nº de registros (int) | nº de cadenas (int)
+ * registros: name (int) | player (int) | class (int) | xp (int) | body (int) | mind (int) | spirit (int)
+ * índice:    posición de cada cadena en el archivo (int)
+ * cadenas:   longitud en bytes (int) | bytes UTF-8
+ * </pre>
+ * Los campos name, player y class de cada registro son índices de la tabla de cadenas, donde
+ * cada valor distinto aparece una sola vez, o -1 si el valor es null (por ejemplo, un personaje sin clase). Abrir el archivo solo lee la cabecera y los registros
+ * se decodifican cuando se piden. Las actualizaciones escriben directamente sobre el registro solo los
+ * atributos modificados (ver Personatge.getCanvis); crear o eliminar personajes reescribe el archivo.
+ *
+ * Un archivo proyectado en memoria no se puede sustituir ni borrar en todos los sistemas (en Windows queda bloqueado
+ * hasta que el recolector libera la proyección), así que cada reescritura crea una nueva generación del archivo
+ * con el número de generación como sufijo (personatges.bin, personatges.bin.1, personatges.bin.2...). Al abrir
+ * se usa la última generación y se intentan borrar las anteriores.
+ */
+public class BinaryPersonatgesDAO implements PersonatgesDAO {
+    public static final String RUTA = "src/data/personatges.bin";
+
+    private static final int MAGIC = 0x4C535250; //"LSRP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int RECORD_SIZE = 7 * Integer.BYTES;
+
+    private static final int NAME = 0;
+    private static final int PLAYER = 4;
+    private static final int CLASS = 8;
+    private static final int XP = 12;
+    private static final int BODY = 16;
+    private static final int MIND = 20;
+    private static final int SPIRIT = 24;
+    //Identificador de cadena de los valores null
+    private static final int NO_STRING = -1;
+
+    private final Path path;
+    private final String rutaJson;
+
+    //Archivo de la generación proyectada en memoria
+    private Path current;
+    private long generation;
+    private MappedByteBuffer buffer;
+    private int recordCount;
+    private int stringCount;
+    private String[] strings;
+    private HashMap<String, Integer> stringIds;
+    //Posición del registro de cada personaje, construido la primera vez que se busca uno
+    private HashMap<PersonatgeKey, Integer> records;
+    private PlayerIndex playerIndex;
+
+    /**
+     * Constructor de la clase BinaryPersonatgesDAO con las rutas por defecto.
+     * Si el archivo binario no existe, se crea a partir del archivo JSON de personajes.
+     */
+    public BinaryPersonatgesDAO() {
+        this(RUTA, JsonFiles.dataFile(JSONPersonatgesDAO.RUTA));
+    }
+
+    /**
+     * Constructor de la clase BinaryPersonatgesDAO.
+     *
+     * @param ruta     Ruta del archivo binario.
+     * @param rutaJson Ruta del archivo JSON a convertir si el archivo binario todavía no existe.
+     */
+    public BinaryPersonatgesDAO(String ruta, String rutaJson) {
+        this.path = Paths.get(ruta);
+        this.rutaJson = rutaJson;
+    }
+
+    /**
+     * Convierte un archivo JSON de personajes al formato binario.
+     *
+     * @param rutaJson   Ruta del archivo JSON de origen.
+     * @param rutaBinary Ruta del archivo binario de destino.
+     * @throws PersistenceException Si ocurre algún error durante la lectura o la escritura.
+     */
+    public static void convertFromJson(String rutaJson, String rutaBinary) throws PersistenceException {
+        writeFile(Paths.get(rutaBinary), new JSONPersonatgesDAO(rutaJson).readFile());
+    }
+
+    /**
+     * Convierte un archivo binario de personajes al formato JSON.
+     *
+     * @param rutaBinary Ruta del archivo binario de origen.
+     * @param rutaJson   Ruta del archivo JSON de destino.
+     * @throws PersistenceException Si ocurre algún error durante la lectura o la escritura.
+     */
+    public static void convertToJson(String rutaBinary, String rutaJson) throws PersistenceException {
+        BinaryPersonatgesDAO binary = new BinaryPersonatgesDAO(rutaBinary, null);
+        new JSONPersonatgesDAO(rutaJson).writeCharacters(binary.readPersonatges());
+    }
+
+    @Override
+    public synchronized ArrayList<Personatge> readPersonatges() throws PersistenceException {
+        open();
+        ArrayList<Personatge> personatges = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            personatges.add(decode(i));
+        }
+        return personatges;
+    }
+
+    @Override
+    public synchronized int countPersonatges() throws PersistenceException {
+        open();
+        return recordCount;
+    }
+
+    @Override
+    public synchronized Personatge findByKey(String name, String player) throws PersistenceException {
+        open();
+        Integer index = records().get(new PersonatgeKey(name, player));
+        return index == null ? null : decode(index);
+    }
+
+    @Override
+    public synchronized ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException {
+        open();
+        ArrayList<Personatge> trobats = new ArrayList<>();
+        for (PersonatgeKey clau : playerIndex().search(player)) {
+            trobats.add(decode(records().get(clau)));
+        }
+        return trobats;
+    }
+
+    @Override
+    public synchronized Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        open();
+        int offset = Page.offset(cursor);
+        Page.checkPageSize(pageSize);
+
+        //Solo se decodifican los registros de la página
+        int to = (int) Math.min((long) offset + pageSize, recordCount);
+        ArrayList<Personatge> personatges = new ArrayList<>(Math.max(to - offset, 0));
+        for (int i = offset; i < to; i++) {
+            personatges.add(decode(i));
+        }
+        return new Page<>(personatges, offset, to < recordCount ? Page.cursor(to) : null);
+    }
+
+    @Override
+    public synchronized Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException {
+        open();
+        Page<PersonatgeKey> claus = Page.of(playerIndex().search(player), cursor, pageSize);
+        ArrayList<Personatge> trobats = new ArrayList<>(claus.getItems().size());
+        for (PersonatgeKey clau : claus.getItems()) {
+            trobats.add(decode(records().get(clau)));
+        }
+        return new Page<>(trobats, claus.getOffset(), claus.getNextCursor());
+    }
+
+    /**
+     * Obtiene el número de personajes guardados sin decodificar ningún registro.
+     *
+     * @return El número de personajes.
+     * @throws PersistenceException Si ocurre algún error al abrir el archivo.
+     */
+    public synchronized int size() throws PersistenceException {
+        open();
+        return recordCount;
+    }
+
+    /**
+     * Decodifica únicamente el personaje de la posición indicada.
+     *
+     * @param index Posición del personaje.
+     * @return El personaje de esa posición.
+     * @throws PersistenceException Si ocurre algún error al abrir el archivo.
+     */
+    public synchronized Personatge getPersonatge(int index) throws PersistenceException {
+        open();
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return decode(index);
+    }
+
+    @Override
+    public void createPersonatge(Personatge p) throws PersistenceException {
+        createPersonatges(List.of(p));
+    }
+
+    @Override
+    public void deletePersonatge(Personatge p) throws PersistenceException {
+        deletePersonatges(List.of(p));
+    }
+
+    @Override
+    public void updateCharacter(Personatge p) throws PersistenceException {
+        updateCharacters(List.of(p));
+    }
+
+    @Override
+    public synchronized void createPersonatges(Collection<? extends Personatge> nous) throws PersistenceException {
+        open();
+        JSONPersonatgesDAO.checkNewKeys(records()::containsKey, nous);
+        ArrayList<Personatge> personatges = readPersonatges();
+        for (Personatge p : nous) {
+            personatges.add(p);
+        }
+        rewrite(personatges);
+        for (Personatge p : nous) {
+            p.netejarCanvis();
+        }
+    }
+
+    @Override
+    public synchronized void deletePersonatges(Collection<? extends Personatge> eliminats) throws PersistenceException {
+        open();
+        HashSet<Integer> posicions = new HashSet<>();
+        for (Personatge p : eliminats) {
+            Integer index = records().get(PersonatgeKey.of(p));
+            if (index != null) {
+                posicions.add(index);
+            }
+        }
+        if (posicions.isEmpty()) {
+            return;
+        }
+
+        ArrayList<Personatge> personatges = new ArrayList<>(recordCount - posicions.size());
+        for (int i = 0; i < recordCount; i++) {
+            if (!posicions.contains(i)) {
+                personatges.add(decode(i));
+            }
+        }
+        rewrite(personatges);
+    }
+
+    @Override
+    public synchronized void updateCharacters(Collection<? extends Personatge> modificats) throws PersistenceException {
+        open();
+        HashMap<Integer, Personatge> perPosicio = new HashMap<>();
+        boolean novaClasse = false;
+        for (Personatge p : modificats) {
+            Integer index = p.isModificat() ? records().get(PersonatgeKey.of(p)) : null;
+            if (index != null) {
+                perPosicio.put(index, p);
+                if ((p.getCanvis() & Personatge.CANVI_CLASE) != 0) {
+                    novaClasse |= p.getClase() != null && !stringIds().containsKey(p.getClase());
+                }
+            }
+        }
+
+        if (novaClasse) {
+            //Alguna clase nueva no está en la tabla de cadenas, hay que reescribir el archivo
+            ArrayList<Personatge> personatges = readPersonatges();
+            for (Map.Entry<Integer, Personatge> entry : perPosicio.entrySet()) {
+                personatges.set(entry.getKey(), PersonatgeFactory.merge(personatges.get(entry.getKey()), entry.getValue()));
+            }
+            rewrite(personatges);
+        } else {
+            //Solo se escriben los atributos modificados, directamente sobre los registros proyectados en memoria
+            for (Map.Entry<Integer, Personatge> entry : perPosicio.entrySet()) {
+                int record = HEADER_SIZE + entry.getKey() * RECORD_SIZE;
+                Personatge p = entry.getValue();
+                int canvis = p.getCanvis();
+                if ((canvis & Personatge.CANVI_CLASE) != 0) {
+                    buffer.putInt(record + CLASS, p.getClase() == null ? NO_STRING : stringIds().get(p.getClase()));
+                }
+                if ((canvis & Personatge.CANVI_XP) != 0) {
+                    buffer.putInt(record + XP, p.getXp());
+                }
+                if ((canvis & Personatge.CANVI_BODY) != 0) {
+                    buffer.putInt(record + BODY, p.getBody());
+                }
+                if ((canvis & Personatge.CANVI_MIND) != 0) {
+                    buffer.putInt(record + MIND, p.getMind());
+                }
+                if ((canvis & Personatge.CANVI_SPIRIT) != 0) {
+                    buffer.putInt(record + SPIRIT, p.getSpirit());
+                }
+            }
+            if (!perPosicio.isEmpty()) {
+                buffer.force();
+            }
+        }
+
+        for (Personatge p : perPosicio.values()) {
+            p.netejarCanvis();
+        }
+    }
+
+    /**
+     * Proyecta el archivo en memoria si todavía no se ha hecho. Solo se lee la cabecera.
+     *
+     * @throws PersistenceException Si el archivo no se puede abrir o no tiene el formato esperado.
+     */
+    private void open() throws PersistenceException {
+        if (buffer != null) {
+            return;
+        }
+        try {
+            locate();
+            if (current == null) {
+                current = path;
+                generation = 0;
+                if (rutaJson != null) {
+                    convertFromJson(rutaJson, path.toString());
+                }
+            }
+            try (FileChannel channel = FileChannel.open(current, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                buffer = null;
+                throw new IOException("Unknown characters file format");
+            }
+            recordCount = buffer.getInt(8);
+            stringCount = buffer.getInt(12);
+            strings = new String[stringCount];
+            stringIds = null;
+            records = null;
+            playerIndex = null;
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't open the Characters file", e);
+        }
+        deleteOldGenerations();
+    }
+
+    /**
+     * Busca la última generación del archivo binario. El archivo de la ruta indicada es la generación 0.
+     * Si no existe ninguna, current queda a null.
+     */
+    private void locate() throws IOException {
+        current = null;
+        generation = -1;
+        if (Files.exists(path)) {
+            current = path;
+            generation = 0;
+        }
+        for (Path file : generations()) {
+            long g = generationOf(file);
+            if (g > generation) {
+                current = file;
+                generation = g;
+            }
+        }
+    }
+
+    /**
+     * Borra las generaciones anteriores a la proyectada en memoria. Si alguna todavía no se puede borrar
+     * (porque el sistema mantiene la proyección anterior), se vuelve a intentar la siguiente vez que se abre el archivo.
+     */
+    private void deleteOldGenerations() {
+        try {
+            if (generation > 0) {
+                Files.deleteIfExists(path);
+            }
+            for (Path file : generations()) {
+                if (generationOf(file) < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            //Se vuelve a intentar en la siguiente reescritura
+        }
+    }
+
+    /**
+     * Obtiene los archivos de las generaciones a partir de la 1 (los que tienen el número de generación como sufijo).
+     */
+    private List<Path> generations() throws IOException {
+        ArrayList<Path> files = new ArrayList<>();
+        Path dir = path.toAbsolutePath().getParent();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, path.getFileName() + ".*")) {
+            for (Path file : stream) {
+                if (generationOf(file) > 0) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Obtiene el número de generación del sufijo de un archivo, o -1 si el sufijo no es un número
+     * (por ejemplo, un archivo temporal).
+     */
+    private long generationOf(Path file) {
+        String sufix = file.getFileName().toString().substring(path.getFileName().toString().length() + 1);
+        if (sufix.isEmpty()) {
+            return -1;
+        }
+        for (int i = 0; i < sufix.length(); i++) {
+            if (!Character.isDigit(sufix.charAt(i))) {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(sufix);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Decodifica el registro de la posición indicada. El jugador y la clase se internan (ver StringPool), para que
+     * los personajes compartan las mismas cadenas que los leídos de otros almacenamientos.
+     */
+    private Personatge decode(int index) {
+        int record = HEADER_SIZE + index * RECORD_SIZE;
+        return PersonatgeFactory.create(string(buffer.getInt(record + NAME)),
+                StringPool.PLAYERS.intern(string(buffer.getInt(record + PLAYER))),
+                StringPool.CLASSES.intern(string(buffer.getInt(record + CLASS))), buffer.getInt(record + XP),
+                buffer.getInt(record + BODY), buffer.getInt(record + MIND), buffer.getInt(record + SPIRIT));
+    }
+
+    /**
+     * Obtiene una cadena de la tabla, decodificándola solo la primera vez que se pide.
+     * El identificador -1 corresponde a null.
+     */
+    private String string(int id) {
+        if (id == NO_STRING) {
+            return null;
+        }
+        if (strings[id] == null) {
+            int offset = buffer.getInt(HEADER_SIZE + recordCount * RECORD_SIZE + id * Integer.BYTES);
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            buffer.get(offset + Integer.BYTES, bytes);
+            strings[id] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings[id];
+    }
+
+    /**
+     * Obtiene el mapa de cada cadena a su posición en la tabla, construyéndolo la primera vez.
+     */
+    private HashMap<String, Integer> stringIds() {
+        if (stringIds == null) {
+            stringIds = new HashMap<>();
+            for (int i = 0; i < stringCount; i++) {
+                stringIds.put(string(i), i);
+            }
+        }
+        return stringIds;
+    }
+
+    /**
+     * Obtiene el índice de cada personaje (nombre y jugador) a la posición de su registro, construyéndolo la primera vez.
+     * Solo se leen los identificadores de cadena de cada registro, sin decodificar el resto de campos.
+     */
+    private HashMap<PersonatgeKey, Integer> records() {
+        if (records == null) {
+            records = new HashMap<>();
+            for (int i = 0; i < recordCount; i++) {
+                records.put(key(i), i);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Obtiene el índice de trigramas de los jugadores, construyéndolo la primera vez en el orden de los registros.
+     */
+    private PlayerIndex playerIndex() {
+        if (playerIndex == null) {
+            ArrayList<PersonatgeKey> claus = new ArrayList<>(recordCount);
+            for (int i = 0; i < recordCount; i++) {
+                claus.add(key(i));
+            }
+            playerIndex = PlayerIndex.of(claus);
+        }
+        return playerIndex;
+    }
+
+    /**
+     * Obtiene la clave del registro de la posición indicada, decodificando solo el nombre y el jugador.
+     */
+    private PersonatgeKey key(int index) {
+        int record = HEADER_SIZE + index * RECORD_SIZE;
+        return new PersonatgeKey(string(buffer.getInt(record + NAME)), string(buffer.getInt(record + PLAYER)));
+    }
+
+    /**
+     * Reescribe los personajes indicados en una nueva generación del archivo y la proyecta en memoria. El archivo
+     * proyectado hasta ahora no se sustituye: se borra después, cuando el sistema lo permite.
+     */
+    private void rewrite(List<Personatge> personatges) throws PersistenceException {
+        writeFile(Paths.get(path + "." + (generation + 1)), personatges);
+        buffer = null;
+        open();
+    }
+
+    /**
+     * Obtiene el identificador de una cadena en la tabla, añadiéndola si todavía no está. Los valores null no se
+     * guardan en la tabla, porque no se pueden codificar como texto, y se escriben como -1.
+     */
+    private static int stringId(LinkedHashMap<String, Integer> ids, String text) {
+        if (text == null) {
+            return NO_STRING;
+        }
+        return ids.computeIfAbsent(text, k -> ids.size());
+    }
+
+    /**
+     * Escribe los personajes en formato binario. Se escribe en un archivo temporal que después
+     * sustituye al original, de forma que nunca queda un archivo a medias.
+     *
+     * @param path        Ruta del archivo binario.
+     * @param personatges Personajes a escribir.
+     * @throws PersistenceException Si ocurre algún error durante la escritura.
+     */
+    private static void writeFile(Path path, List<Personatge> personatges) throws PersistenceException {
+        //Tabla de cadenas sin repetidos, en orden de aparición
+        LinkedHashMap<String, Integer> ids = new LinkedHashMap<>();
+        int[] records = new int[personatges.size() * 3];
+        for (int i = 0; i < personatges.size(); i++) {
+            Personatge p = personatges.get(i);
+            records[i * 3] = stringId(ids, p.getName());
+            records[i * 3 + 1] = stringId(ids, p.getPlayer());
+            records[i * 3 + 2] = stringId(ids, p.getClase());
+        }
+
+        ArrayList<byte[]> encoded = new ArrayList<>(ids.size());
+        for (String s : ids.keySet()) {
+            encoded.add(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Path tmp = Paths.get(path + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(personatges.size());
+            out.writeInt(encoded.size());
+
+            for (int i = 0; i < personatges.size(); i++) {
+                Personatge p = personatges.get(i);
+                out.writeInt(records[i * 3]);
+                out.writeInt(records[i * 3 + 1]);
+                out.writeInt(records[i * 3 + 2]);
+                out.writeInt(p.getXp());
+                out.writeInt(p.getBody());
+                out.writeInt(p.getMind());
+                out.writeInt(p.getSpirit());
+            }
+
+            int offset = HEADER_SIZE + personatges.size() * RECORD_SIZE + encoded.size() * Integer.BYTES;
+            for (byte[] bytes : encoded) {
+                out.writeInt(offset);
+                offset += Integer.BYTES + bytes.length;
+            }
+            for (byte[] bytes : encoded) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Can not modify the Characters file", e);
+        }
+
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Can not modify the Characters file", e);
+        }
+    }
+}
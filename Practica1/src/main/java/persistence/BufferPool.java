@@ -0,0 +1,247 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Archivo dividido en páginas de tamaño fijo con una caché LRU de páginas en memoria.
+ *
+ * Las páginas modificadas se marcan como sucias y solo se escriben en el archivo al llamar a flush,
+ * de forma que una operación escribe únicamente las páginas que ha tocado. Cuando la caché está llena
+ * se descarta la página limpia que hace más tiempo que no se usa; las sucias se mantienen hasta el flush.
+ *
+ * La página 0 es la cabecera del archivo:
+ * <pre>
+ * magic (int) | versión (int) | tamaño de página (int) | nº de páginas (int) | primera página libre (int) | valores (int)...
+ * </pre>
+ * Los valores de la cabecera los utilizan las estructuras guardadas en el archivo (por ejemplo, la raíz de cada árbol).
+ */
+final class BufferPool {
+    static final int PAGE_SIZE = 4096;
+    static final int HEADER_VALUES = 16;
+
+    private static final int MAGIC = 0x4C534254; //"LSBT"
+    private static final int VERSION = 1;
+    private static final int PAGE_COUNT = 12;
+    private static final int FREE_PAGE = 16;
+    private static final int VALUES = 20;
+
+    private final FileChannel channel;
+    private final int capacity;
+    private final ByteBuffer header;
+    //Ordenado por acceso: la primera es la que hace más tiempo que no se usa
+    private final LinkedHashMap<Integer, ByteBuffer> pages;
+    private final TreeSet<Integer> dirty;
+
+    private long reads;
+    private long writes;
+    private long hits;
+
+    /**
+     * Abre el archivo de páginas, creándolo vacío si no existe.
+     *
+     * @param path     Ruta del archivo.
+     * @param capacity Número máximo de páginas guardadas en memoria.
+     * @throws IOException Si no se puede abrir el archivo o no tiene el formato esperado.
+     */
+    BufferPool(Path path, int capacity) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.capacity = Math.max(capacity, 8);
+        this.pages = new LinkedHashMap<>(16, 0.75f, true);
+        this.dirty = new TreeSet<>();
+        this.header = ByteBuffer.allocate(PAGE_SIZE);
+
+        if (channel.size() == 0) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, PAGE_SIZE);
+            header.putInt(PAGE_COUNT, 1);
+            header.putInt(FREE_PAGE, 0);
+            write(0, header);
+            channel.force(true);
+        } else {
+            read(0, header);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != PAGE_SIZE) {
+                channel.close();
+                throw new IOException("Invalid page file " + path);
+            }
+        }
+    }
+
+    /**
+     * Obtiene un valor de la cabecera.
+     */
+    int getValue(int slot) {
+        return header.getInt(VALUES + slot * Integer.BYTES);
+    }
+
+    /**
+     * Modifica un valor de la cabecera. Se escribe en el siguiente flush.
+     */
+    void setValue(int slot, int value) {
+        header.putInt(VALUES + slot * Integer.BYTES, value);
+        dirty.add(0);
+    }
+
+    /**
+     * Obtiene una página, leyéndola del archivo si no está en memoria.
+     * Quien la modifique debe llamar a markDirty.
+     *
+     * @param id Número de la página.
+     * @return El contenido de la página.
+     * @throws IOException Si ocurre algún error durante la lectura.
+     */
+    ByteBuffer get(int id) throws IOException {
+        ByteBuffer page = pages.get(id);
+        if (page != null) {
+            hits++;
+            return page;
+        }
+        page = ByteBuffer.allocate(PAGE_SIZE);
+        read(id, page);
+        put(id, page);
+        return page;
+    }
+
+    /**
+     * Marca una página como modificada.
+     */
+    void markDirty(int id) {
+        dirty.add(id);
+    }
+
+    /**
+     * Obtiene una página vacía: la primera de la lista de páginas libres o una nueva al final del archivo.
+     *
+     * @return El número de la página.
+     * @throws IOException Si ocurre algún error al leer la página libre.
+     */
+    int allocate() throws IOException {
+        int id = header.getInt(FREE_PAGE);
+        if (id != 0) {
+            ByteBuffer page = get(id);
+            //Las páginas libres guardan en sus primeros bytes la siguiente página libre
+            header.putInt(FREE_PAGE, page.getInt(0));
+            Arrays.fill(page.array(), (byte) 0);
+        } else {
+            id = header.getInt(PAGE_COUNT);
+            header.putInt(PAGE_COUNT, id + 1);
+            put(id, ByteBuffer.allocate(PAGE_SIZE));
+        }
+        dirty.add(0);
+        dirty.add(id);
+        return id;
+    }
+
+    /**
+     * Añade una página a la lista de páginas libres para reutilizarla.
+     *
+     * @param id Número de la página.
+     * @throws IOException Si ocurre algún error al leer la página.
+     */
+    void free(int id) throws IOException {
+        ByteBuffer page = get(id);
+        page.putInt(0, header.getInt(FREE_PAGE));
+        header.putInt(FREE_PAGE, id);
+        dirty.add(0);
+        dirty.add(id);
+    }
+
+    /**
+     * Escribe en el archivo las páginas modificadas, la cabecera en último lugar.
+     *
+     * @throws IOException Si ocurre algún error durante la escritura.
+     */
+    void flush() throws IOException {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        for (int id : dirty) {
+            if (id != 0) {
+                write(id, pages.get(id));
+            }
+        }
+        write(0, header);
+        channel.force(false);
+        dirty.clear();
+    }
+
+    /**
+     * Escribe las páginas modificadas y cierra el archivo.
+     *
+     * @throws IOException Si ocurre algún error durante la escritura.
+     */
+    void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Obtiene el número de páginas leídas del archivo.
+     */
+    long getReads() {
+        return reads;
+    }
+
+    /**
+     * Obtiene el número de páginas escritas en el archivo.
+     */
+    long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Obtiene el número de páginas encontradas en memoria.
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * Guarda una página en la caché y descarta las menos usadas si se supera la capacidad.
+     * Las páginas sucias no se descartan hasta que se escriben, de forma que un flush las encuentre siempre,
+     * ni tampoco la página que se acaba de guardar.
+     */
+    private void put(int id, ByteBuffer page) {
+        pages.put(id, page);
+
+        Iterator<Map.Entry<Integer, ByteBuffer>> it = pages.entrySet().iterator();
+        while (pages.size() > capacity && it.hasNext()) {
+            Map.Entry<Integer, ByteBuffer> eldest = it.next();
+            if (eldest.getKey() != id && !dirty.contains(eldest.getKey())) {
+                it.remove();
+            }
+        }
+    }
+
+    private void read(int id, ByteBuffer page) throws IOException {
+        page.clear();
+        while (page.hasRemaining()) {
+            if (channel.read(page, (long) id * PAGE_SIZE + page.position()) < 0) {
+                throw new IOException("Unexpected end of the page file");
+            }
+        }
+        page.clear();
+        reads++;
+    }
+
+    private void write(int id, ByteBuffer page) throws IOException {
+        ByteBuffer bytes = page.duplicate();
+        bytes.clear();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, (long) id * PAGE_SIZE + bytes.position());
+        }
+        writes++;
+    }
+}
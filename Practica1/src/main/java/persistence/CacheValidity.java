@@ -0,0 +1,67 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Decide cuándo hay que volver a leer unos datos guardados en memoria.
+ *
+ * Si los datos vienen de un archivo, cuando cambia su fecha de modificación o su tamaño;
+ * si vienen de la API, cuando ha pasado el tiempo de validez desde la última lectura.
+ */
+final class CacheValidity {
+    private final Path path;
+    private final long ttlMillis;
+
+    private boolean valid;
+    private long loadedAt;
+    private long lastModified;
+    private long size;
+
+    /**
+     * Constructor de la clase CacheValidity.
+     *
+     * @param path      Archivo del que se comprueban los cambios, o null para usar el tiempo de validez.
+     * @param ttlMillis Tiempo de validez en milisegundos cuando no hay archivo.
+     */
+    CacheValidity(Path path, long ttlMillis) {
+        this.path = path;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Comprueba si los datos pueden haber cambiado desde la última vez. Si es así, a partir de ahora
+     * se consideran vigentes, de forma que quien llama debe volver a leerlos (o llamar a invalidate si falla).
+     *
+     * @return true si hay que volver a leer los datos.
+     * @throws IOException Si no se puede consultar el archivo.
+     */
+    boolean changed() throws IOException {
+        if (path != null) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long modificat = attributes.lastModifiedTime().toMillis();
+            if (valid && modificat == lastModified && attributes.size() == size) {
+                return false;
+            }
+            lastModified = modificat;
+            size = attributes.size();
+        } else {
+            long ara = System.currentTimeMillis();
+            if (valid && ara - loadedAt < ttlMillis) {
+                return false;
+            }
+            loadedAt = ara;
+        }
+        valid = true;
+        return true;
+    }
+
+    /**
+     * Marca los datos como no vigentes, para que la siguiente comprobación obligue a leerlos.
+     */
+    void invalidate() {
+        valid = false;
+    }
+}
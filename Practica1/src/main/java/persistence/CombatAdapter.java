@@ -0,0 +1,155 @@
+package persistence;
+
+import business.entities.Combat;
+import business.entities.Monstre;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Convierte los combates a JSON y de JSON sin reflexión.
+ *
+ * Con un catálogo de monstruos, los monstruos se guardan como referencias al catálogo (el nombre del monstruo
+ * y cuántos hay seguidos, ver AventuraAdapter); sin catálogo, como copias completas, que es el formato de la API.
+ * Las referencias usan el nombre y no la posición en el catálogo, para que sigan apuntando al mismo monstruo
+ * aunque el catálogo se modifique o se reordene. Cada referencia guarda también los atributos del monstruo, que
+ * solo se usan si el monstruo ya no está en el catálogo (por ejemplo, si se ha eliminado o renombrado): así
+ * ninguna aventura deja de poderse leer por un cambio en el catálogo. Al leer se aceptan los dos formatos.
+ */
+final class CombatAdapter extends TypeAdapter<Combat> {
+    private final MonstreCatalog catalog;
+    private final MonstreAdapter monstreAdapter;
+    private boolean migrar;
+
+    /**
+     * Constructor de la clase CombatAdapter.
+     *
+     * @param catalog Catálogo con el que se resuelven las referencias a los monstruos, o null para guardar copias completas.
+     */
+    CombatAdapter(MonstreCatalog catalog) {
+        this.catalog = catalog;
+        this.monstreAdapter = new MonstreAdapter();
+    }
+
+    /**
+     * Indica si alguno de los combates leídos estaba guardado con un formato anterior: con copias completas de
+     * monstruos que se pueden guardar como referencias, o con referencias sin los atributos del monstruo.
+     */
+    boolean needsMigration() {
+        return migrar;
+    }
+
+    @Override
+    public void write(JsonWriter out, Combat combat) throws IOException {
+        out.beginObject();
+        out.name("nCombat").value(combat.getnCombat());
+        out.name("monstres").beginArray();
+
+        ArrayList<Monstre> monstres = combat.getMonstres();
+        int i = 0;
+        while (i < monstres.size()) {
+            Monstre m = monstres.get(i);
+            if (catalog == null || !catalog.isReferenceable(m)) {
+                monstreAdapter.write(out, m);
+                i++;
+                continue;
+            }
+
+            //Los monstruos iguales seguidos se guardan con una sola referencia
+            int count = 1;
+            while (i + count < monstres.size() && monstres.get(i + count).getName().equals(m.getName())
+                    && catalog.isReferenceable(monstres.get(i + count))) {
+                count++;
+            }
+            out.beginObject();
+            out.name("ref").value(m.getName());
+            out.name("count").value(count);
+            MonstreAdapter.writeStats(out, m);
+            out.endObject();
+            i += count;
+        }
+
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public Combat read(JsonReader in) throws IOException {
+        int nCombat = 0;
+        ArrayList<Monstre> monstres = new ArrayList<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("nCombat")) {
+                nCombat = in.nextInt();
+            } else if (field.equals("monstres")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    readMonstres(in, monstres);
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Combat combat = new Combat(nCombat);
+        for (Monstre m : monstres) {
+            combat.addMonstre(m);
+        }
+        return combat;
+    }
+
+    /**
+     * Añade a la lista los monstruos de un elemento del combate: una referencia al catálogo o un monstruo completo.
+     * Se usa el mismo criterio que al escribir (MonstreCatalog.isReferenceable) para decidir si una copia completa
+     * se tendría que guardar como referencia, de forma que un archivo migrado no se vuelve a migrar.
+     */
+    private void readMonstres(JsonReader in, ArrayList<Monstre> monstres) throws IOException {
+        MonstreAdapter.Camps camps = new MonstreAdapter.Camps();
+        String ref = null;
+        int count = 1;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("ref")) {
+                ref = in.nextString();
+            } else if (field.equals("count")) {
+                count = in.nextInt();
+            } else if (!camps.read(field, in)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (ref == null) {
+            Monstre m = camps.build();
+            if (catalog != null && catalog.isReferenceable(m)) {
+                migrar = true;
+                m = catalog.findByName(m.getName());
+            }
+            monstres.add(m);
+            return;
+        }
+
+        Monstre m = catalog == null ? null : catalog.findByName(ref);
+        if (m == null) {
+            if (!camps.hasStats()) {
+                //Referencia sin atributos a un monstruo que ya no está en el catálogo: no se puede recuperar
+                return;
+            }
+            m = camps.build(ref);
+        } else if (!camps.hasStats()) {
+            migrar = true;
+        }
+        for (int i = 0; i < count; i++) {
+            monstres.add(m);
+        }
+    }
+}
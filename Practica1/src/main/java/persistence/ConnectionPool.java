@@ -0,0 +1,88 @@
+package persistence;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+
+/**
+ * Conjunto de conexiones JDBC reutilizables con un número máximo de conexiones abiertas.
+ *
+ * Las conexiones se abren cuando se necesitan y, al devolverlas, se guardan para la siguiente petición.
+ * Si todas están en uso, quien pide una conexión espera a que se devuelva alguna.
+ */
+final class ConnectionPool {
+    private final String url;
+    private final int maxSize;
+    private final ArrayDeque<Connection> lliures;
+    private int obertes;
+
+    /**
+     * Constructor de la clase ConnectionPool.
+     *
+     * @param url     URL JDBC de la base de datos.
+     * @param maxSize Número máximo de conexiones abiertas a la vez.
+     */
+    ConnectionPool(String url, int maxSize) {
+        this.url = url;
+        this.maxSize = Math.max(maxSize, 1);
+        this.lliures = new ArrayDeque<>();
+    }
+
+    /**
+     * Obtiene una conexión libre, abriendo una nueva si no hay ninguna y no se ha llegado al máximo.
+     *
+     * @return Una conexión con auto-commit activado.
+     * @throws SQLException Si no se puede abrir la conexión.
+     */
+    synchronized Connection acquire() throws SQLException {
+        while (lliures.isEmpty() && obertes >= maxSize) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", e);
+            }
+        }
+        if (!lliures.isEmpty()) {
+            return lliures.pop();
+        }
+        Connection c = DriverManager.getConnection(url);
+        obertes++;
+        return c;
+    }
+
+    /**
+     * Devuelve una conexión obtenida con acquire. Si ha quedado en mal estado, se cierra y se descarta.
+     *
+     * @param c La conexión.
+     */
+    synchronized void release(Connection c) {
+        try {
+            if (c.isClosed() || !c.getAutoCommit()) {
+                c.close();
+                obertes--;
+            } else {
+                lliures.push(c);
+            }
+        } catch (SQLException e) {
+            obertes--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Cierra las conexiones libres.
+     */
+    synchronized void close() {
+        for (Connection c : lliures) {
+            try {
+                c.close();
+            } catch (SQLException e) {
+                //Se ignora: la conexión ya no se utilizará
+            }
+            obertes--;
+        }
+        lliures.clear();
+    }
+}
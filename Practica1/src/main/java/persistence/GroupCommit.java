@@ -0,0 +1,122 @@
+package persistence;
+
+/**
+ * Agrupa en una sola escritura las peticiones de guardado que llegan a la vez (group commit).
+ *
+ * Cada llamada a {@link #commit()} espera hasta que una escritura que incluya sus cambios haya terminado.
+ * La primera petición que encuentra el almacenamiento libre espera un breve intervalo para que se le unan
+ * otras y después ejecuta la escritura una sola vez para todas ellas; las peticiones que llegan mientras
+ * se está escribiendo se agrupan en la siguiente escritura.
+ */
+final class GroupCommit {
+    public static final long DEFAULT_WINDOW_MILLIS = 5;
+
+    /**
+     * Escritura que guarda el estado actual completo en el almacenamiento.
+     */
+    interface Action {
+        void run() throws PersistenceException;
+    }
+
+    private final Action action;
+    private final long windowMillis;
+
+    private long requested;
+    private long committed;
+    private boolean writing;
+
+    private long failedFrom;
+    private long failedUpTo;
+    private PersistenceException failure;
+
+    /**
+     * Constructor de la clase GroupCommit con el intervalo de espera por defecto.
+     *
+     * @param action Escritura a ejecutar.
+     */
+    GroupCommit(Action action) {
+        this(action, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * Constructor de la clase GroupCommit.
+     *
+     * @param action       Escritura a ejecutar.
+     * @param windowMillis Milisegundos que se espera a otras peticiones antes de escribir.
+     */
+    GroupCommit(Action action, long windowMillis) {
+        this.action = action;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Pide que se guarden los cambios hechos hasta ahora y espera a que estén escritos.
+     *
+     * @throws PersistenceException Si falla la escritura que debía incluir estos cambios.
+     */
+    void commit() throws PersistenceException {
+        long target;
+        synchronized (this) {
+            long ticket = ++requested;
+            while (writing) {
+                waitFor(0);
+                if (committed >= ticket) {
+                    return;
+                }
+                if (failedFrom <= ticket && ticket <= failedUpTo) {
+                    throw failure;
+                }
+            }
+
+            //Somos los primeros: esperamos a que se unan otras peticiones y escribimos por todas
+            writing = true;
+            long deadline = System.currentTimeMillis() + windowMillis;
+            long remaining;
+            try {
+                while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                    waitFor(remaining);
+                }
+            } catch (PersistenceException e) {
+                writing = false;
+                notifyAll();
+                throw e;
+            }
+            target = requested;
+        }
+
+        PersistenceException error = null;
+        try {
+            action.run();
+        } catch (PersistenceException e) {
+            error = e;
+        }
+
+        synchronized (this) {
+            if (error == null) {
+                committed = target;
+            } else {
+                failedFrom = committed + 1;
+                failedUpTo = target;
+                failure = error;
+            }
+            writing = false;
+            notifyAll();
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Espera a ser notificado o a que pase el tiempo indicado (0 para esperar sin límite).
+     */
+    private void waitFor(long millis) throws PersistenceException {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Error: Interrupted while saving the data", e);
+        }
+    }
+}
@@ -1,45 +1,183 @@
 package persistence;
 
 import business.entities.Aventura;
-import business.entities.personatge.Personatge;
 import com.google.gson.*;
 
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 /**
  * Esta clase proporciona métodos para leer y escribir los datos de las aventuras en formato JSON.
+ * Para listar las aventuras o leer solo una de ellas se utiliza un índice con la posición de cada
+ * aventura dentro del archivo (ver AventuresIndex), sin convertir las demás. Si el archivo está comprimido
+ * no se pueden leer posiciones sueltas, así que se recorre en streaming saltando las aventuras que no se piden.
+ *
+ * Los monstruos de los combates se guardan como referencias al catálogo de monstruos (ver AventuraAdapter).
+ * Los archivos guardados con copias completas de los monstruos se migran a este formato la primera vez que se leen.
  */
 public class JSONAventuresDAO implements AventuresDAO{
-    private final String ruta = "src/data/aventures.json";
-    private ArrayList<Aventura> aventures;
+    public static final String RUTA = "src/data/aventures.json";
+
+    public static final String RUTA_INDEX = "src/data/aventures.idx";
+
+    private final String ruta = JsonFiles.dataFile(RUTA);
+    private final Path path = Paths.get(ruta);
+    private final boolean compressed = JsonFiles.isCompressed(ruta);
+    private final Path indexPath = Paths.get(RUTA_INDEX);
+    private AventuresIndex index;
     private Gson gson;
+    private final MonstresCache monstres;
+    private AventuraAdapter adapter;
+    private Gson aventuraGson;
+    private boolean migrated;
+
+    //Aventuras pendientes de guardar en la siguiente escritura del archivo
+    private ArrayList<Aventura> pendents;
+    private final GroupCommit groupCommit;
 
     /**
      * Constructor de la clase JSONAventuresDAO.
-     * Inicializa el objeto Gson para el manejo de JSON.
+     * Los monstruos de las aventuras se resuelven con el catálogo local de monstruos.
      */
     public JSONAventuresDAO() {
-        this.gson = new Gson();
+        this(MonstresCache.local());
+    }
+
+    /**
+     * Constructor de la clase JSONAventuresDAO.
+     * Utiliza el objeto Gson compartido para el manejo de JSON.
+     *
+     * @param monstres Catálogo con el que se resuelven los monstruos de las aventuras.
+     */
+    public JSONAventuresDAO(MonstresCache monstres) {
+        this.gson = SharedGson.get();
+        this.monstres = monstres;
+        this.pendents = new ArrayList<>();
+        this.groupCommit = new GroupCommit(this::writePendents);
     }
 
 
     @Override
     public ArrayList<Aventura> getAventures() throws PersistenceException {
+        migrate();
+        return readAll();
+    }
+
+    /**
+     * Lee todas las aventuras del archivo en streaming.
+     */
+    private ArrayList<Aventura> readAll() throws PersistenceException {
         try {
-            // By parsing the file as a JsonObject we can process its internal values without defining an additional class
-            JsonObject object = JsonParser.parseReader(new FileReader(ruta)).getAsJsonObject();
+            // Obtenemos array de aventuras del objeto Json, leyendo el archivo en streaming
+            return JsonFiles.readArray(ruta, "aventures", Aventura.class, aventuraGson());
+        } catch (PersistenceException e) {
+            throw e;
+        } catch (Exception e) { //file not found Exception
+            throw new PersistenceException("Error: Couldn't open the Adventures file", e);
+        }
+    }
+
+    @Override
+    public synchronized ArrayList<String> getAventuraNames() throws PersistenceException {
+        migrate();
+        return names();
+    }
 
-            // Obtenemos array de aventuras del objeto Json
-            Aventura[] aventuresArray = gson.fromJson(object.get("aventures"), Aventura[].class);
-            aventures = new ArrayList<>(aventuresArray.length);
+    @Override
+    public synchronized Page<String> getAventuraNames(String cursor, int pageSize) throws PersistenceException {
+        migrate();
+        return Page.of(names(), cursor, pageSize);
+    }
 
-            aventures.addAll(Arrays.asList(aventuresArray));
-            return aventures;
-        } catch (Exception e) { //file not found Exception
+    @Override
+    public synchronized Aventura getAventura(int posicio) throws PersistenceException {
+        migrate();
+        return read(posicio);
+    }
+
+    /**
+     * Lee la aventura de la posición indicada sin convertir las demás.
+     */
+    private Aventura read(int posicio) throws PersistenceException {
+        Gson aventuraGson = aventuraGson();
+        if (compressed) {
+            try {
+                return JsonFiles.readArrayElement(ruta, "aventures", posicio, Aventura.class, aventuraGson);
+            } catch (IOException | JsonParseException e) {
+                throw new PersistenceException("Error: Couldn't open the Adventures file", e);
+            }
+        }
+
+        AventuresIndex index = index();
+        try {
+            //Solo se lee y se convierte el objeto de esta aventura
+            return aventuraGson.fromJson(index.read(path, posicio), Aventura.class);
+        } catch (IOException | JsonParseException e) {
+            throw new PersistenceException("Error: Couldn't open the Adventures file", e);
+        }
+    }
+
+    /**
+     * Obtiene el objeto Gson que convierte las aventuras con el catálogo de monstruos actual,
+     * volviéndolo a crear si el catálogo ha cambiado.
+     */
+    private synchronized Gson aventuraGson() throws PersistenceException {
+        MonstreCatalog catalog = monstres.getCatalog();
+        if (adapter == null || adapter.getCatalog() != catalog) {
+            adapter = new AventuraAdapter(catalog);
+            aventuraGson = adapter.toGson();
+        }
+        return aventuraGson;
+    }
+
+    /**
+     * Migra el archivo guardado con copias completas de los monstruos al formato con referencias al catálogo.
+     * Se leen todas las aventuras, porque una aventura sin monstruos del catálogo no indica el formato del archivo.
+     * Si la migración falla, se vuelve a intentar en la siguiente operación.
+     */
+    private synchronized void migrate() throws PersistenceException {
+        if (migrated) {
+            return;
+        }
+        if (Files.exists(path)) {
+            ArrayList<Aventura> aventures = readAll();
+            if (adapter.needsMigration()) {
+                writeAdventures(aventures);
+            }
+        }
+        migrated = true;
+    }
+
+    /**
+     * Obtiene los nombres de las aventuras, del índice o leyendo solo el nombre de cada aventura si el archivo está comprimido.
+     */
+    private ArrayList<String> names() throws PersistenceException {
+        if (!compressed) {
+            return index().names();
+        }
+        try {
+            return JsonFiles.readArrayField(ruta, "aventures", "name");
+        } catch (IOException | IllegalStateException e) {
+            throw new PersistenceException("Error: Couldn't open the Adventures file", e);
+        }
+    }
+
+    /**
+     * Obtiene el índice de las aventuras, volviéndolo a cargar si el archivo ha cambiado desde la última vez.
+     *
+     * @return El índice de las aventuras.
+     * @throws PersistenceException Si no se puede leer el archivo de aventuras.
+     */
+    private AventuresIndex index() throws PersistenceException {
+        try {
+            if (index == null || !index.matches(path)) {
+                index = AventuresIndex.load(path, indexPath, gson);
+            }
+            return index;
+        } catch (IOException e) {
             throw new PersistenceException("Error: Couldn't open the Adventures file", e);
         }
     }
@@ -51,14 +189,20 @@ public class JSONAventuresDAO implements AventuresDAO{
      * @throws PersistenceException Si ocurre algún error durante la escritura en el archivo.
      */
     public void writeAdventures(ArrayList<Aventura> avents) throws PersistenceException {
-        JsonObject jsonObject = new JsonObject();
-        JsonArray jsonArray = gson.toJsonTree(avents).getAsJsonArray();
-        jsonObject.add("aventures", jsonArray);
-
         try {
-            FileWriter writer = new FileWriter(ruta);
-            gson.toJson(jsonObject, writer);
-            writer.close();
+            ArrayList<long[]> spans = JsonFiles.writeArray(ruta, "aventures", avents, Aventura.class, aventuraGson());
+            if (compressed) {
+                return;
+            }
+
+            //Con las posiciones de la escritura el índice queda al día sin volver a recorrer el archivo
+            ArrayList<String> names = new ArrayList<>(avents.size());
+            for (Aventura a : avents) {
+                names.add(a.getName());
+            }
+            synchronized (this) {
+                index = AventuresIndex.written(path, indexPath, names, spans, gson);
+            }
         } catch (IOException e) {
             throw new PersistenceException("Error: Couldn't modify the Adventures file", e);
         }
@@ -67,9 +211,37 @@ public class JSONAventuresDAO implements AventuresDAO{
 
     @Override
     public void saveAventura(Aventura aventura) throws PersistenceException {
-        //guardar aventura en Json
-        ArrayList<Aventura> aventuresArrayList= getAventures();
-        aventuresArrayList.add(aventura);
-        writeAdventures(aventuresArrayList);
+        //guardar aventura en Json (junto con las que se hayan pedido guardar a la vez)
+        synchronized (this) {
+            pendents.add(aventura);
+        }
+        groupCommit.commit();
+    }
+
+    /**
+     * Añade al archivo todas las aventuras pendientes de guardar con una sola escritura.
+     * Si la escritura falla, las aventuras vuelven a quedar pendientes (delante de las que hayan llegado mientras
+     * tanto) para que se guarden en la siguiente escritura.
+     *
+     * @throws PersistenceException Si ocurre algún error durante la lectura o la escritura del archivo.
+     */
+    private void writePendents() throws PersistenceException {
+        ArrayList<Aventura> noves;
+        synchronized (this) {
+            noves = pendents;
+            pendents = new ArrayList<>();
+        }
+
+        try {
+            ArrayList<Aventura> aventuresArrayList = getAventures();
+            aventuresArrayList.addAll(noves);
+            writeAdventures(aventuresArrayList);
+        } catch (PersistenceException e) {
+            synchronized (this) {
+                noves.addAll(pendents);
+                pendents = noves;
+            }
+            throw e;
+        }
     }
 }
@@ -1,43 +1,139 @@
 package persistence;
 
-import business.BusinessException;
 import business.entities.personatge.Personatge;
-import business.entities.personatge.PersonatgeJSON;
 import com.google.gson.*;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * Esta clase proporciona métodos para leer y escribir los datos de los personajes en formato JSON.
+ * Los personajes se cargan una sola vez en memoria y las lecturas se responden desde ahí;
+ * las modificaciones que llegan a la vez se guardan juntas en una sola escritura atómica del archivo.
+ *
+ * En memoria los personajes se guardan en una versión inmutable indexada por su clave (nombre y jugador) y por
+ * jugador (ver PersonatgesSnapshot), de forma que buscar, modificar o eliminar un personaje no necesita recorrer
+ * toda la lista y las lecturas no esperan a las escrituras. Cada modificación publica una versión nueva, que es la
+ * misma que lee PersonatgesRoster (ver SnapshotSource).
+ *
+ * Al actualizar solo se aplican los atributos modificados de cada personaje (ver Personatge.getCanvis),
+ * y si ningún personaje ha cambiado no se reescribe el archivo. Para guardar solo los cambios sin reescribir
+ * todo el archivo está JournalPersonatgesDAO.
  */
-public class JSONPersonatgesDAO implements PersonatgesDAO{
-    private final String ruta = "src/data/personatges.json";
-    private ArrayList<Personatge> personatges;
+public class JSONPersonatgesDAO implements PersonatgesDAO, SnapshotSource {
+    public static final String RUTA = "src/data/personatges.json";
+
+    private final String ruta;
+    //Personajes en el mismo orden que en el archivo, o null si todavía no se han leído
+    private volatile PersonatgesSnapshot personatges;
     private Gson gson;
+    private final GroupCommit groupCommit;
 
     /**
      * Constructor de la clase JSONPersonatgesDAO.
-     * Inicializa el objeto Gson para el manejo de JSON.
+     * Utiliza el objeto Gson compartido para el manejo de JSON.
      */
     public JSONPersonatgesDAO() {
-        this.gson = new Gson();
+        this(JsonFiles.dataFile(RUTA));
+    }
+
+    /**
+     * Constructor de la clase JSONPersonatgesDAO sobre un archivo concreto.
+     *
+     * @param ruta Ruta del archivo JSON de personajes.
+     */
+    JSONPersonatgesDAO(String ruta) {
+        this.ruta = ruta;
+        this.gson = SharedGson.get();
+        this.groupCommit = new GroupCommit(this::writeSnapshot);
     }
 
 
     @Override
-    public ArrayList<Personatge> readPersonatges() throws PersistenceException {   //persistenceException
-        try {
-            // By parsing the file as a JsonObject we can process its internal values without defining an additional class
-            JsonObject object = JsonParser.parseReader(new FileReader(ruta)).getAsJsonObject();
+    public boolean isInMemory() {
+        return true;
+    }
+
+    @Override
+    public PersonatgesSnapshot snapshot() throws PersistenceException {
+        PersonatgesSnapshot actual = personatges;
+        return actual != null ? actual : loadPersonatges();
+    }
+
+    @Override
+    public ArrayList<Personatge> readPersonatges() throws PersistenceException {
+        //La versión devuelve personajes nuevos para que nadie modifique los personajes en memoria desde fuera
+        return snapshot().readPersonatges();
+    }
+
+    @Override
+    public int countPersonatges() throws PersistenceException {
+        return snapshot().size();
+    }
+
+    @Override
+    public Personatge findByKey(String name, String player) throws PersistenceException {
+        //La versión devuelve un personaje nuevo para que el combate no modifique el personaje en memoria
+        return snapshot().findByKey(name, player);
+    }
+
+    @Override
+    public ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException {
+        return snapshot().searchByPlayer(player);
+    }
+
+    @Override
+    public Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        return snapshot().readPersonatges(cursor, pageSize);
+    }
+
+    @Override
+    public Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException {
+        return snapshot().searchByPlayer(player, cursor, pageSize);
+    }
+
+    /**
+     * Carga los personajes del archivo JSON la primera vez que se necesitan.
+     *
+     * @return La versión con los personajes en memoria.
+     * @throws PersistenceException Si ocurre algún error durante la lectura del archivo.
+     */
+    private synchronized PersonatgesSnapshot loadPersonatges() throws PersistenceException {
+        if (personatges == null) {
+            personatges = PersonatgesSnapshot.of(index(readFile()).values());
+        }
+        return personatges;
+    }
 
-            // Obtenemos array de personatges del objeto Json
-            Personatge[] personatgesArray = gson.fromJson(object.get("personatges"), PersonatgeJSON[].class);
-            personatges = new ArrayList<>(personatgesArray.length);
+    /**
+     * Indexa una lista de personajes por su clave. Si hay personajes repetidos se queda el último.
+     *
+     * @param llista Lista de personajes.
+     * @return Los personajes indexados por clave, en el orden de la lista.
+     */
+    static LinkedHashMap<PersonatgeKey, Personatge> index(List<Personatge> llista) {
+        LinkedHashMap<PersonatgeKey, Personatge> index = new LinkedHashMap<>();
+        for (Personatge p : llista) {
+            index.put(PersonatgeKey.of(p), p);
+        }
+        return index;
+    }
 
-            personatges.addAll(Arrays.asList(personatgesArray));
-            return personatges;
+    /**
+     * Lee todos los personajes del archivo JSON sin guardarlos en memoria.
+     *
+     * @return Lista de personajes leídos.
+     * @throws PersistenceException Si ocurre algún error durante la lectura del archivo.
+     */
+    ArrayList<Personatge> readFile() throws PersistenceException {
+        try {
+            // Obtenemos array de personatges del objeto Json, leyendo el archivo en streaming
+            return new ArrayList<>(JsonFiles.readArray(ruta, "personatges", Personatge.class, gson));
         } catch (Exception e) { //file not found Exception
             throw new PersistenceException("Error: Couldn't open the Characters file", e);
         }
@@ -46,63 +142,107 @@ public class JSONPersonatgesDAO implements PersonatgesDAO{
 
     /**
      * Escribe los personajes proporcionados en el archivo JSON.
+     * Solo se escriben los atributos de Personatge, aunque la lista contenga subclases.
      *
      * @param pers Lista de personajes a escribir.
      * @throws PersistenceException Si ocurre algún error durante la escritura en el archivo.
      */
     public void writeCharacters(ArrayList<Personatge> pers) throws PersistenceException {
-        JsonObject jsonObject = new JsonObject();
-        JsonArray jsonArray = gson.toJsonTree(pers).getAsJsonArray();
-        jsonObject.add("personatges", jsonArray);
-
         try {
-            FileWriter writer = new FileWriter(ruta);
-            gson.toJson(jsonObject, writer);
-            writer.close();
-
+            JsonFiles.writeArray(ruta, "personatges", pers, Personatge.class, gson);
         }catch (IOException e) {
             throw new PersistenceException("Error: Can not modify the Characters file", e);
         }
 
     }
 
+    /**
+     * Escribe en el archivo el estado actual de los personajes en memoria.
+     * Lo ejecuta GroupCommit una sola vez para todos los cambios que se hayan agrupado.
+     *
+     * @throws PersistenceException Si ocurre algún error durante la escritura en el archivo.
+     */
+    private void writeSnapshot() throws PersistenceException {
+        //La versión no cambia mientras se escribe, así que no hace falta el bloqueo
+        writeCharacters(personatges.values());
+    }
+
     @Override
     public void createPersonatge(Personatge p) throws PersistenceException {
-        //guardar personatge en Json
-        ArrayList<Personatge> personatges = readPersonatges();
-        personatges.add(p);
-        writeCharacters(personatges);
+        createPersonatges(List.of(p));
     }
 
     @Override
     public void deletePersonatge(Personatge p) throws PersistenceException {
-        //eliminar personatge en Json
-        ArrayList<Personatge> personatges = readPersonatges();
-        for (int i=0; i < personatges.size(); i++) {
-            if ( personatges.get(i).getName().equals(p.getName()) && personatges.get(i).getPlayer().equals(p.getPlayer())) {
-                personatges.remove(i);
+        deletePersonatges(List.of(p));
+    }
+
+    @Override
+    public void updateCharacter(Personatge p) throws PersistenceException {
+        updateCharacters(List.of(p));
+    }
+
+    @Override
+    public void createPersonatges(Collection<? extends Personatge> nous) throws PersistenceException {
+        //guardar personatges en Json
+        synchronized (this) {
+            PersonatgesSnapshot actual = loadPersonatges();
+            checkNewKeys(actual::contains, nous);
+            personatges = actual.withCreated(nous);
+            for (Personatge p : nous) {
+                p.netejarCanvis();
             }
         }
-        writeCharacters(personatges);
+        groupCommit.commit();
     }
 
     @Override
-    public void updateCharacter(Personatge p) throws PersistenceException {
-        ArrayList<Personatge> personatges = readPersonatges();
+    public void deletePersonatges(Collection<? extends Personatge> eliminats) throws PersistenceException {
+        //eliminar personatges en Json
+        synchronized (this) {
+            personatges = loadPersonatges().withDeleted(eliminats);
+        }
+        groupCommit.commit();
+    }
 
-        //guardar cambios del personaje en memoria (personatge)
-        for (int i = 0; i < personatges.size(); i++) {
-            if ( personatges.get(i).getName().equals(p.getName()) && personatges.get(i).getPlayer().equals(p.getPlayer()) ) {
-                Personatge pJSON = p;
-                personatges.set(i, pJSON);
+    @Override
+    public void updateCharacters(Collection<? extends Personatge> modificats) throws PersistenceException {
+        //guardar cambios de los personajes en memoria
+        boolean canvis = false;
+        synchronized (this) {
+            PersonatgesSnapshot actual = loadPersonatges();
+            //Solo se aplican los atributos modificados de los personajes modificados. La versión nueva tiene
+            //personajes nuevos, así que no cambia el que se esté escribiendo en el archivo
+            personatges = actual.withUpdated(modificats);
+            for (Personatge p : modificats) {
+                if (p.isModificat() && actual.contains(PersonatgeKey.of(p))) {
+                    p.netejarCanvis();
+                    canvis = true;
+                }
             }
         }
 
-        writeCharacters(personatges);
+        //Si no ha cambiado nada no hace falta reescribir el archivo
+        if (canvis) {
+            groupCommit.commit();
+        }
+    }
 
-        //A veces se guardan personajes como su subclase, aqui los volvemos a leer y escribir correctamente como personajes.
-        readPersonatges();
-        writeCharacters(personatges);
+    /**
+     * Comprueba que ninguno de los personajes nuevos exista ya ni esté repetido, antes de guardar ninguno.
+     *
+     * @param existeix Indica si ya hay un personaje guardado con una clave.
+     * @param nous     Personajes a crear.
+     * @throws PersistenceException Si alguno de los personajes ya existe o está repetido.
+     */
+    static void checkNewKeys(Predicate<PersonatgeKey> existeix, Collection<? extends Personatge> nous) throws PersistenceException {
+        HashSet<PersonatgeKey> claus = new HashSet<>();
+        for (Personatge p : nous) {
+            PersonatgeKey clau = PersonatgeKey.of(p);
+            if (existeix.test(clau) || !claus.add(clau)) {
+                throw new PersistenceException("Error: The character " + p.getName() + " of " + p.getPlayer() + " already exists", null);
+            }
+        }
     }
 
 
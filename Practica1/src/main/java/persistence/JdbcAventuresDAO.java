@@ -0,0 +1,203 @@
+package persistence;
+
+import business.entities.Aventura;
+import business.entities.Combat;
+import business.entities.Monstre;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Implementación de AventuresDAO sobre las tablas de aventuras, combates y monstruos de los combates de un JdbcStore.
+ *
+ * La posición de cada aventura es su identificador en la tabla. Cada aventura se lee con una sola consulta
+ * que une sus combates con los monstruos del catálogo que referencian; los monstruos que se repiten
+ * en una lectura son el mismo objeto, en lugar de una copia por cada fila.
+ */
+public class JdbcAventuresDAO implements AventuresDAO {
+    private static final String SELECT = "SELECT a.id, a.name, a.n_combats, c.position, c.n_combat, m."
+            + JdbcMonstresDAO.COLUMNS.replace(", ", ", m.") + ", cm.monstre_id"
+            + " FROM aventures a"
+            + " LEFT JOIN combats c ON c.aventura_id = a.id"
+            + " LEFT JOIN combat_monstres cm ON cm.aventura_id = c.aventura_id AND cm.combat_position = c.position"
+            + " LEFT JOIN monstres m ON m.id = cm.monstre_id ";
+    private static final String ORDER = " ORDER BY a.id, c.position, cm.position";
+    private static final String READ_ERROR = "Error: Couldn't read the Adventures from the database";
+
+    private final JdbcStore store;
+
+    /**
+     * Constructor de la clase JdbcAventuresDAO. Se obtiene con {@link JdbcStore#getAventuresDAO()}.
+     *
+     * @param store Base de datos donde se guardan las aventuras.
+     */
+    JdbcAventuresDAO(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public ArrayList<Aventura> getAventures() throws PersistenceException {
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement(SELECT + ORDER)) {
+                return read(st);
+            }
+        });
+    }
+
+    @Override
+    public ArrayList<String> getAventuraNames() throws PersistenceException {
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement("SELECT name FROM aventures ORDER BY id")) {
+                return names(st);
+            }
+        });
+    }
+
+    @Override
+    public Page<String> getAventuraNames(String cursor, int pageSize) throws PersistenceException {
+        int offset = Page.offset(cursor);
+        Page.checkPageSize(pageSize);
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement("SELECT name FROM aventures ORDER BY id LIMIT ? OFFSET ?")) {
+                //Se pide una fila de más para saber si hay página siguiente
+                st.setInt(1, pageSize + 1);
+                st.setInt(2, offset);
+                ArrayList<String> noms = names(st);
+                boolean mes = noms.size() > pageSize;
+                List<String> items = mes ? noms.subList(0, pageSize) : noms;
+                return new Page<>(items, offset, mes ? Page.cursor(offset + pageSize) : null);
+            }
+        });
+    }
+
+    @Override
+    public Aventura getAventura(int index) throws PersistenceException {
+        ArrayList<Aventura> trobades = store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement(SELECT + "WHERE a.id = ?" + ORDER)) {
+                st.setInt(1, index);
+                return read(st);
+            }
+        });
+        if (trobades.isEmpty()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return trobades.get(0);
+    }
+
+    @Override
+    public void saveAventura(Aventura aventura) throws PersistenceException {
+        store.transaction("Error: Couldn't write the Adventure to the database", c -> {
+            insert(c, aventura);
+            return null;
+        });
+    }
+
+    /**
+     * Inserta una aventura al final, con sus combates y las referencias a sus monstruos,
+     * dentro de la transacción de quien llama.
+     */
+    void insert(Connection c, Aventura aventura) throws SQLException {
+        int id;
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id) + 1, 0) FROM aventures")) {
+            rs.next();
+            id = rs.getInt(1);
+        }
+        try (PreparedStatement st = c.prepareStatement("INSERT INTO aventures (id, name, n_combats) VALUES (?, ?, ?)")) {
+            st.setInt(1, id);
+            st.setString(2, aventura.getName());
+            st.setInt(3, aventura.getnCombats());
+            st.executeUpdate();
+        }
+
+        JdbcMonstresDAO monstres = store.getMonstresDAO();
+        //Cada monstruo se busca en el catálogo una sola vez, aunque aparezca en varios combates
+        IdentityHashMap<Monstre, Integer> ids = new IdentityHashMap<>();
+        try (PreparedStatement combats = c.prepareStatement("INSERT INTO combats (aventura_id, position, n_combat) VALUES (?, ?, ?)");
+             PreparedStatement refs = c.prepareStatement(
+                     "INSERT INTO combat_monstres (aventura_id, combat_position, position, monstre_id) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < aventura.getCombats().size(); i++) {
+                Combat combat = aventura.getCombats().get(i);
+                combats.setInt(1, id);
+                combats.setInt(2, i);
+                combats.setInt(3, combat.getnCombat());
+                combats.addBatch();
+
+                for (int j = 0; j < combat.getMonstres().size(); j++) {
+                    refs.setInt(1, id);
+                    refs.setInt(2, i);
+                    refs.setInt(3, j);
+                    Monstre m = combat.getMonstres().get(j);
+                    Integer monstreId = ids.get(m);
+                    if (monstreId == null) {
+                        monstreId = monstres.reference(c, m);
+                        ids.put(m, monstreId);
+                    }
+                    refs.setInt(4, monstreId);
+                    refs.addBatch();
+                }
+            }
+            //Los combates se insertan antes que las referencias a sus monstruos
+            combats.executeBatch();
+            refs.executeBatch();
+        }
+    }
+
+    /**
+     * Construye las aventuras a partir de las filas de la consulta, ordenadas por aventura, combate y monstruo.
+     */
+    private static ArrayList<Aventura> read(PreparedStatement st) throws SQLException {
+        ArrayList<Aventura> aventures = new ArrayList<>();
+        HashMap<Integer, Monstre> monstres = new HashMap<>();
+        try (ResultSet rs = st.executeQuery()) {
+            int aventuraId = -1;
+            int combatPosition = -1;
+            Aventura aventura = null;
+            Combat combat = null;
+            while (rs.next()) {
+                if (aventura == null || rs.getInt(1) != aventuraId) {
+                    aventuraId = rs.getInt(1);
+                    aventura = new Aventura(rs.getString(2), rs.getInt(3));
+                    aventures.add(aventura);
+                    combat = null;
+                }
+                int position = rs.getInt(4);
+                if (rs.wasNull()) {
+                    //Aventura sin combates
+                    continue;
+                }
+                if (combat == null || position != combatPosition) {
+                    combatPosition = position;
+                    combat = new Combat(rs.getInt(5));
+                    aventura.addCombat(combat);
+                }
+                int monstreId = rs.getInt(13);
+                if (!rs.wasNull()) {
+                    Monstre m = monstres.get(monstreId);
+                    if (m == null) {
+                        m = JdbcMonstresDAO.read(rs, 6);
+                        monstres.put(monstreId, m);
+                    }
+                    combat.addMonstre(m);
+                }
+            }
+        }
+        return aventures;
+    }
+
+    private static ArrayList<String> names(PreparedStatement st) throws SQLException {
+        ArrayList<String> noms = new ArrayList<>();
+        try (ResultSet rs = st.executeQuery()) {
+            while (rs.next()) {
+                noms.add(rs.getString(1));
+            }
+        }
+        return noms;
+    }
+}
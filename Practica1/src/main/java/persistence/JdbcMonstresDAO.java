@@ -0,0 +1,125 @@
+package persistence;
+
+import business.entities.Monstre;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Implementación de MonstresDAO sobre la tabla de monstruos de un JdbcStore.
+ * Los combates de las aventuras referencian las filas de esta tabla.
+ */
+public class JdbcMonstresDAO implements MonstresDAO {
+    static final String COLUMNS = "name, challenge, experience, hit_points, initiative, damage_dice, damage_type";
+
+    private final JdbcStore store;
+
+    /**
+     * Constructor de la clase JdbcMonstresDAO. Se obtiene con {@link JdbcStore#getMonstresDAO()}.
+     *
+     * @param store Base de datos donde se guardan los monstruos.
+     */
+    JdbcMonstresDAO(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public ArrayList<Monstre> readMonsters() throws PersistenceException {
+        return store.query("Error: Couldn't read the Monsters from the database", c -> {
+            ArrayList<Monstre> monstres = new ArrayList<>();
+            try (PreparedStatement st = c.prepareStatement("SELECT " + COLUMNS + " FROM monstres ORDER BY id");
+                 ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    monstres.add(read(rs, 1));
+                }
+            }
+            return monstres;
+        });
+    }
+
+    /**
+     * Añade monstruos al final del catálogo en lote, dentro de la transacción de quien llama.
+     */
+    void insert(Connection c, Collection<Monstre> nous) throws SQLException {
+        int id = nextId(c);
+        try (PreparedStatement st = c.prepareStatement("INSERT INTO monstres (id, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (Monstre m : nous) {
+                st.setInt(1, id++);
+                set(st, m);
+                st.addBatch();
+            }
+            st.executeBatch();
+        }
+    }
+
+    /**
+     * Obtiene la fila del catálogo que corresponde a un monstruo (mismo nombre y estadísticas).
+     * Si el monstruo no está en el catálogo, se añade.
+     *
+     * @param c Conexión de la transacción de quien llama.
+     * @param m Monstruo buscado.
+     * @return El identificador del monstruo en la tabla.
+     * @throws SQLException Si ocurre algún error con la base de datos.
+     */
+    int reference(Connection c, Monstre m) throws SQLException {
+        try (PreparedStatement st = c.prepareStatement("SELECT id, " + COLUMNS + " FROM monstres WHERE name = ? ORDER BY id")) {
+            st.setString(1, m.getName());
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    if (same(read(rs, 2), m)) {
+                        return rs.getInt(1);
+                    }
+                }
+            }
+        }
+
+        int id = nextId(c);
+        try (PreparedStatement st = c.prepareStatement("INSERT INTO monstres (id, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            st.setInt(1, id);
+            set(st, m);
+            st.executeUpdate();
+        }
+        return id;
+    }
+
+    /**
+     * Lee un monstruo de las columnas de COLUMNS a partir de la columna indicada. Los textos se internan
+     * como en MonstreAdapter.
+     */
+    static Monstre read(ResultSet rs, int first) throws SQLException {
+        return new Monstre(StringPool.MONSTER_NAMES.intern(rs.getString(first)),
+                StringPool.CHALLENGES.intern(rs.getString(first + 1)), rs.getInt(first + 2), rs.getInt(first + 3),
+                rs.getInt(first + 4), StringPool.DAMAGE_DICE.intern(rs.getString(first + 5)),
+                StringPool.DAMAGE_TYPES.intern(rs.getString(first + 6)));
+    }
+
+    private static void set(PreparedStatement st, Monstre m) throws SQLException {
+        st.setString(2, m.getName());
+        st.setString(3, m.getChallenge());
+        st.setInt(4, m.getExperience());
+        st.setInt(5, m.getHitPoints());
+        st.setInt(6, m.getInitiative());
+        st.setString(7, m.getDamageDice());
+        st.setString(8, m.getDamageType());
+    }
+
+    private static boolean same(Monstre a, Monstre b) {
+        return a.getName().equals(b.getName()) && Objects.equals(a.getChallenge(), b.getChallenge())
+                && a.getExperience() == b.getExperience() && a.getHitPoints() == b.getHitPoints()
+                && a.getInitiative() == b.getInitiative() && Objects.equals(a.getDamageDice(), b.getDamageDice())
+                && Objects.equals(a.getDamageType(), b.getDamageType());
+    }
+
+    private static int nextId(Connection c) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id) + 1, 0) FROM monstres")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
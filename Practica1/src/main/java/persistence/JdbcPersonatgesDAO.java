@@ -0,0 +1,311 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+import business.entities.personatge.PersonatgeFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementación de PersonatgesDAO sobre la tabla de personajes de un JdbcStore.
+ *
+ * Los personajes se identifican por jugador y nombre (con un índice único) y se devuelven en el orden en que se crearon.
+ * Crear, actualizar o eliminar varios personajes se hace en una sola transacción con sentencias en lote.
+ * Al actualizar solo se escriben las columnas de los atributos modificados (ver Personatge.getCanvis).
+ */
+public class JdbcPersonatgesDAO implements PersonatgesDAO {
+    private static final String COLUMNS = "SELECT name, player, class, xp, body, mind, spirit FROM personatges ";
+    private static final String READ_ERROR = "Error: Couldn't read the Characters from the database";
+    private static final String WRITE_ERROR = "Error: Couldn't write the Characters to the database";
+    //Columnas de los atributos que pueden cambiar, en el orden de los bits de Personatge.getCanvis()
+    private static final String[] UPDATE_COLUMNS = {"class", "xp", "body", "mind", "spirit"};
+
+    private final JdbcStore store;
+
+    /**
+     * Constructor de la clase JdbcPersonatgesDAO. Se obtiene con {@link JdbcStore#getPersonatgesDAO()}.
+     *
+     * @param store Base de datos donde se guardan los personajes.
+     */
+    JdbcPersonatgesDAO(JdbcStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public ArrayList<Personatge> readPersonatges() throws PersistenceException {
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement(COLUMNS + "ORDER BY id")) {
+                return read(st);
+            }
+        });
+    }
+
+    @Override
+    public int countPersonatges() throws PersistenceException {
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement("SELECT COUNT(*) FROM personatges");
+                 ResultSet rs = st.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        });
+    }
+
+    @Override
+    public Personatge findByKey(String name, String player) throws PersistenceException {
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement(COLUMNS + "WHERE player = ? AND name = ?")) {
+                st.setString(1, player);
+                st.setString(2, name);
+                ArrayList<Personatge> trobats = read(st);
+                return trobats.isEmpty() ? null : trobats.get(0);
+            }
+        });
+    }
+
+    @Override
+    public ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException {
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement(COLUMNS + "WHERE player LIKE ? ESCAPE '\\' ORDER BY id")) {
+                st.setString(1, like(player));
+                return read(st);
+            }
+        });
+    }
+
+    @Override
+    public Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        int offset = Page.offset(cursor);
+        Page.checkPageSize(pageSize);
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement(COLUMNS + "ORDER BY id LIMIT ? OFFSET ?")) {
+                st.setInt(1, pageSize + 1);
+                st.setInt(2, offset);
+                return page(read(st), offset, pageSize);
+            }
+        });
+    }
+
+    @Override
+    public Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException {
+        int offset = Page.offset(cursor);
+        Page.checkPageSize(pageSize);
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement(COLUMNS + "WHERE player LIKE ? ESCAPE '\\' ORDER BY id LIMIT ? OFFSET ?")) {
+                st.setString(1, like(player));
+                st.setInt(2, pageSize + 1);
+                st.setInt(3, offset);
+                return page(read(st), offset, pageSize);
+            }
+        });
+    }
+
+    /**
+     * Lee los personajes de un jugador.
+     *
+     * @param player Nombre exacto del jugador.
+     * @return Los personajes del jugador.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    public ArrayList<Personatge> readByPlayer(String player) throws PersistenceException {
+        return store.query(READ_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement(COLUMNS + "WHERE player = ? ORDER BY id")) {
+                st.setString(1, player);
+                return read(st);
+            }
+        });
+    }
+
+    /**
+     * Lee los personajes con un nivel dentro del rango indicado, utilizando el índice de la experiencia.
+     *
+     * @param minLevel Nivel mínimo (incluido).
+     * @param maxLevel Nivel máximo (incluido).
+     * @return Los personajes ordenados por experiencia.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    public ArrayList<Personatge> readByLevel(int minLevel, int maxLevel) throws PersistenceException {
+        return store.query(READ_ERROR, c -> {
+            //El nivel es xp / 100 + 1
+            try (PreparedStatement st = c.prepareStatement(COLUMNS + "WHERE xp >= ? AND xp < ? ORDER BY xp, id")) {
+                st.setLong(1, (minLevel - 1L) * 100);
+                st.setLong(2, maxLevel * 100L);
+                return read(st);
+            }
+        });
+    }
+
+    @Override
+    public void createPersonatge(Personatge p) throws PersistenceException {
+        createPersonatges(List.of(p));
+    }
+
+    @Override
+    public void deletePersonatge(Personatge p) throws PersistenceException {
+        deletePersonatges(List.of(p));
+    }
+
+    @Override
+    public void updateCharacter(Personatge p) throws PersistenceException {
+        updateCharacters(List.of(p));
+    }
+
+    @Override
+    public void createPersonatges(Collection<? extends Personatge> nous) throws PersistenceException {
+        store.transaction(WRITE_ERROR, c -> {
+            //Comprobamos todas las claves antes de insertar ninguna
+            HashSet<PersonatgeKey> claus = new HashSet<>();
+            try (PreparedStatement st = c.prepareStatement("SELECT 1 FROM personatges WHERE player = ? AND name = ?")) {
+                for (Personatge p : nous) {
+                    st.setString(1, p.getPlayer());
+                    st.setString(2, p.getName());
+                    try (ResultSet rs = st.executeQuery()) {
+                        if (!claus.add(PersonatgeKey.of(p)) || rs.next()) {
+                            throw new PersistenceException("Error: The character " + p.getName() + " of " + p.getPlayer() + " already exists", null);
+                        }
+                    }
+                }
+            }
+            insert(c, nous);
+            return null;
+        });
+        for (Personatge p : nous) {
+            p.netejarCanvis();
+        }
+    }
+
+    @Override
+    public void deletePersonatges(Collection<? extends Personatge> eliminats) throws PersistenceException {
+        store.transaction(WRITE_ERROR, c -> {
+            try (PreparedStatement st = c.prepareStatement("DELETE FROM personatges WHERE player = ? AND name = ?")) {
+                for (Personatge p : eliminats) {
+                    st.setString(1, p.getPlayer());
+                    st.setString(2, p.getName());
+                    st.addBatch();
+                }
+                st.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void updateCharacters(Collection<? extends Personatge> modificats) throws PersistenceException {
+        //Se agrupan los personajes por los atributos modificados, para actualizar solo esas columnas
+        LinkedHashMap<Integer, ArrayList<Personatge>> perCanvis = new LinkedHashMap<>();
+        for (Personatge p : modificats) {
+            if (p.isModificat()) {
+                perCanvis.computeIfAbsent(p.getCanvis(), k -> new ArrayList<>()).add(p);
+            }
+        }
+        if (perCanvis.isEmpty()) {
+            return;
+        }
+
+        store.transaction(WRITE_ERROR, c -> {
+            for (Map.Entry<Integer, ArrayList<Personatge>> entry : perCanvis.entrySet()) {
+                update(c, entry.getKey(), entry.getValue());
+            }
+            return null;
+        });
+        for (ArrayList<Personatge> llista : perCanvis.values()) {
+            for (Personatge p : llista) {
+                p.netejarCanvis();
+            }
+        }
+    }
+
+    /**
+     * Actualiza en lote las columnas de los atributos indicados de varios personajes.
+     * Los personajes que no existen no actualizan ninguna fila.
+     */
+    private static void update(Connection c, int canvis, List<Personatge> personatges) throws SQLException {
+        ArrayList<String> columnes = new ArrayList<>();
+        for (int i = 0; i < UPDATE_COLUMNS.length; i++) {
+            if ((canvis & (1 << i)) != 0) {
+                columnes.add(UPDATE_COLUMNS[i] + " = ?");
+            }
+        }
+
+        try (PreparedStatement st = c.prepareStatement(
+                "UPDATE personatges SET " + String.join(", ", columnes) + " WHERE player = ? AND name = ?")) {
+            for (Personatge p : personatges) {
+                int n = 1;
+                if ((canvis & Personatge.CANVI_CLASE) != 0) {
+                    st.setString(n++, p.getClase());
+                }
+                if ((canvis & Personatge.CANVI_XP) != 0) {
+                    st.setInt(n++, p.getXp());
+                }
+                if ((canvis & Personatge.CANVI_BODY) != 0) {
+                    st.setInt(n++, p.getBody());
+                }
+                if ((canvis & Personatge.CANVI_MIND) != 0) {
+                    st.setInt(n++, p.getMind());
+                }
+                if ((canvis & Personatge.CANVI_SPIRIT) != 0) {
+                    st.setInt(n++, p.getSpirit());
+                }
+                st.setString(n++, p.getPlayer());
+                st.setString(n, p.getName());
+                st.addBatch();
+            }
+            st.executeBatch();
+        }
+    }
+
+    /**
+     * Inserta personajes en lote con la conexión indicada, dentro de la transacción de quien llama.
+     */
+    void insert(Connection c, Collection<? extends Personatge> nous) throws SQLException {
+        try (PreparedStatement st = c.prepareStatement(
+                "INSERT INTO personatges (name, player, class, xp, body, mind, spirit) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (Personatge p : nous) {
+                st.setString(1, p.getName());
+                st.setString(2, p.getPlayer());
+                st.setString(3, p.getClase());
+                st.setInt(4, p.getXp());
+                st.setInt(5, p.getBody());
+                st.setInt(6, p.getMind());
+                st.setInt(7, p.getSpirit());
+                st.addBatch();
+            }
+            st.executeBatch();
+        }
+    }
+
+    private static ArrayList<Personatge> read(PreparedStatement st) throws SQLException {
+        ArrayList<Personatge> personatges = new ArrayList<>();
+        try (ResultSet rs = st.executeQuery()) {
+            while (rs.next()) {
+                personatges.add(PersonatgeFactory.create(rs.getString(1), StringPool.PLAYERS.intern(rs.getString(2)),
+                        StringPool.CLASSES.intern(rs.getString(3)), rs.getInt(4), rs.getInt(5), rs.getInt(6), rs.getInt(7)));
+            }
+        }
+        return personatges;
+    }
+
+    /**
+     * Crea la página a partir de las filas leídas: se pide una fila de más para saber si hay página siguiente.
+     */
+    private static Page<Personatge> page(ArrayList<Personatge> files, int offset, int pageSize) {
+        boolean mes = files.size() > pageSize;
+        List<Personatge> items = mes ? files.subList(0, pageSize) : files;
+        return new Page<>(items, offset, mes ? Page.cursor(offset + pageSize) : null);
+    }
+
+    /**
+     * Crea el patrón LIKE que busca el texto en cualquier posición, escapando los comodines.
+     */
+    private static String like(String text) {
+        return "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
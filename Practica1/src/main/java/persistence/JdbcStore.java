@@ -0,0 +1,244 @@
+package persistence;
+
+import business.entities.Aventura;
+import business.entities.Monstre;
+import business.entities.personatge.Personatge;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+/**
+ * Base de datos relacional embebida (H2 en modo archivo) con los personajes, las aventuras y los monstruos.
+ *
+ * Las aventuras están normalizadas: cada aventura tiene sus combates y cada combate referencia los monstruos
+ * del catálogo, en lugar de guardar copias. Las consultas utilizan sentencias preparadas y las escrituras
+ * se hacen en transacciones, modificando solo las filas afectadas.
+ *
+ * La URL JDBC se configura con la propiedad del sistema {@value #URL_PROPERTY} y el número máximo de conexiones
+ * con {@value #POOL_PROPERTY}. Si la base de datos está vacía, se llena importando los archivos JSON locales.
+ * Todos los DAO de la base de datos comparten la misma instancia, que se obtiene con {@link #getDefault()}.
+ */
+public final class JdbcStore {
+    public static final String URL_PROPERTY = "lsrpg.jdbc.url";
+    public static final String DEFAULT_URL = "jdbc:h2:./src/data/lsrpg";
+    public static final String POOL_PROPERTY = "lsrpg.jdbc.pool";
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    private static final int SCHEMA_VERSION = 1;
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS personatges ("
+                    + "id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "name VARCHAR(255) NOT NULL, player VARCHAR(255) NOT NULL, class VARCHAR(64) NOT NULL, "
+                    + "xp INT NOT NULL, body INT NOT NULL, mind INT NOT NULL, spirit INT NOT NULL, "
+                    + "UNIQUE (player, name))",
+            "CREATE INDEX IF NOT EXISTS personatges_xp ON personatges (xp)",
+            "CREATE TABLE IF NOT EXISTS monstres ("
+                    + "id INT PRIMARY KEY, name VARCHAR(255) NOT NULL, challenge VARCHAR(64) NOT NULL, "
+                    + "experience INT NOT NULL, hit_points INT NOT NULL, initiative INT NOT NULL, "
+                    + "damage_dice VARCHAR(16), damage_type VARCHAR(64))",
+            "CREATE INDEX IF NOT EXISTS monstres_name ON monstres (name)",
+            "CREATE TABLE IF NOT EXISTS aventures ("
+                    + "id INT PRIMARY KEY, name VARCHAR(255) NOT NULL, n_combats INT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS combats ("
+                    + "aventura_id INT NOT NULL REFERENCES aventures (id), position INT NOT NULL, n_combat INT NOT NULL, "
+                    + "PRIMARY KEY (aventura_id, position))",
+            "CREATE TABLE IF NOT EXISTS combat_monstres ("
+                    + "aventura_id INT NOT NULL, combat_position INT NOT NULL, position INT NOT NULL, "
+                    + "monstre_id INT NOT NULL REFERENCES monstres (id), "
+                    + "PRIMARY KEY (aventura_id, combat_position, position), "
+                    + "FOREIGN KEY (aventura_id, combat_position) REFERENCES combats (aventura_id, position))"
+    };
+
+    private static JdbcStore defaultStore;
+
+    private final ConnectionPool pool;
+    private final JdbcPersonatgesDAO personatgesDAO;
+    private final JdbcAventuresDAO aventuresDAO;
+    private final JdbcMonstresDAO monstresDAO;
+
+    /**
+     * Trabajo hecho con una conexión de la base de datos.
+     */
+    interface Work<T> {
+        T run(Connection c) throws SQLException, PersistenceException;
+    }
+
+    /**
+     * Obtiene la base de datos compartida por toda la aplicación, abriéndola (o creándola) la primera vez.
+     *
+     * @return La base de datos de la URL configurada.
+     * @throws PersistenceException Si no se puede abrir o crear la base de datos.
+     */
+    public static synchronized JdbcStore getDefault() throws PersistenceException {
+        if (defaultStore == null) {
+            defaultStore = open(System.getProperty(URL_PROPERTY, DEFAULT_URL), Integer.getInteger(POOL_PROPERTY, DEFAULT_POOL_SIZE));
+        }
+        return defaultStore;
+    }
+
+    /**
+     * Abre una base de datos, creando las tablas y llenándolas con los archivos JSON locales si está vacía.
+     *
+     * @param url      URL JDBC de la base de datos.
+     * @param poolSize Número máximo de conexiones abiertas a la vez.
+     * @return La base de datos abierta.
+     * @throws PersistenceException Si no se puede abrir o crear la base de datos.
+     */
+    public static JdbcStore open(String url, int poolSize) throws PersistenceException {
+        JdbcStore store = new JdbcStore(new ConnectionPool(url, poolSize));
+        store.createSchema();
+        return store;
+    }
+
+    private JdbcStore(ConnectionPool pool) {
+        this.pool = pool;
+        this.personatgesDAO = new JdbcPersonatgesDAO(this);
+        this.aventuresDAO = new JdbcAventuresDAO(this);
+        this.monstresDAO = new JdbcMonstresDAO(this);
+    }
+
+    /**
+     * Obtiene el DAO de los personajes de la base de datos.
+     *
+     * @return El DAO de personajes.
+     */
+    public JdbcPersonatgesDAO getPersonatgesDAO() {
+        return personatgesDAO;
+    }
+
+    /**
+     * Obtiene el DAO de las aventuras de la base de datos.
+     *
+     * @return El DAO de aventuras.
+     */
+    public JdbcAventuresDAO getAventuresDAO() {
+        return aventuresDAO;
+    }
+
+    /**
+     * Obtiene el DAO de los monstruos de la base de datos.
+     *
+     * @return El DAO de monstruos.
+     */
+    public JdbcMonstresDAO getMonstresDAO() {
+        return monstresDAO;
+    }
+
+    /**
+     * Cierra las conexiones abiertas que no están en uso.
+     */
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Ejecuta un trabajo de lectura con una conexión del pool.
+     *
+     * @param error Mensaje de la excepción si falla.
+     * @param work  Trabajo a ejecutar.
+     * @return El resultado del trabajo.
+     * @throws PersistenceException Si ocurre algún error con la base de datos.
+     */
+    <T> T query(String error, Work<T> work) throws PersistenceException {
+        Connection c = acquire();
+        try {
+            return work.run(c);
+        } catch (SQLException e) {
+            throw new PersistenceException(error, e);
+        } finally {
+            pool.release(c);
+        }
+    }
+
+    /**
+     * Ejecuta un trabajo dentro de una transacción: se confirma si acaba bien y se deshace si falla.
+     *
+     * @param error Mensaje de la excepción si falla.
+     * @param work  Trabajo a ejecutar.
+     * @return El resultado del trabajo.
+     * @throws PersistenceException Si ocurre algún error con la base de datos o lo lanza el propio trabajo.
+     */
+    <T> T transaction(String error, Work<T> work) throws PersistenceException {
+        Connection c = acquire();
+        try {
+            c.setAutoCommit(false);
+            T result = work.run(c);
+            c.commit();
+            c.setAutoCommit(true);
+            return result;
+        } catch (SQLException e) {
+            rollback(c);
+            throw new PersistenceException(error, e);
+        } catch (PersistenceException | RuntimeException e) {
+            rollback(c);
+            throw e;
+        } finally {
+            pool.release(c);
+        }
+    }
+
+    /**
+     * Deshace la transacción de una conexión. Si falla, la conexión se descarta al devolverla al pool.
+     */
+    private static void rollback(Connection c) {
+        try {
+            c.rollback();
+            c.setAutoCommit(true);
+        } catch (SQLException ignored) {
+            //Sigue sin auto-commit: ConnectionPool la cerrará
+        }
+    }
+
+    private Connection acquire() throws PersistenceException {
+        try {
+            return pool.acquire();
+        } catch (SQLException e) {
+            throw new PersistenceException("Error: Couldn't connect to the database", e);
+        }
+    }
+
+    /**
+     * Crea las tablas que falten y, si la base de datos no se ha llenado nunca, importa los archivos JSON locales.
+     * La importación se hace en una sola transacción, de forma que si falla se vuelve a intentar la próxima vez.
+     */
+    private void createSchema() throws PersistenceException {
+        query("Error: Couldn't create the database tables", c -> {
+            try (Statement st = c.createStatement()) {
+                for (String sql : SCHEMA) {
+                    st.execute(sql);
+                }
+            }
+            return null;
+        });
+
+        transaction("Error: Couldn't import the local data into the database", c -> {
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT version FROM schema_version")) {
+                if (rs.next()) {
+                    return null;
+                }
+            }
+            ArrayList<Personatge> personatges = Files.exists(Paths.get(JsonFiles.dataFile(JSONPersonatgesDAO.RUTA)))
+                    ? new JSONPersonatgesDAO().readFile() : new ArrayList<>();
+            ArrayList<Monstre> monstres = Files.exists(Paths.get(JsonFiles.dataFile(JSONMonstresDAO.RUTA)))
+                    ? MonstresCache.local().readMonsters() : new ArrayList<>();
+            ArrayList<Aventura> aventures = Files.exists(Paths.get(JsonFiles.dataFile(JSONAventuresDAO.RUTA)))
+                    ? new JSONAventuresDAO().getAventures() : new ArrayList<>();
+
+            personatgesDAO.insert(c, personatges);
+            monstresDAO.insert(c, monstres);
+            for (Aventura aventura : aventures) {
+                aventuresDAO.insert(c, aventura);
+            }
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("INSERT INTO schema_version (version) VALUES (" + SCHEMA_VERSION + ")");
+            }
+            return null;
+        });
+    }
+}
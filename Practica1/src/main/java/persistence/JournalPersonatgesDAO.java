@@ -0,0 +1,381 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Implementación de PersonatgesDAO que guarda cada cambio como un registro al final de un diario (journal)
+ * en lugar de reescribir todo el archivo de personajes.
+ *
+ * Al arrancar se lee la última instantánea (el archivo JSON de personajes) y se aplican los registros del diario.
+ * Cuando el diario supera un tamaño máximo, un hilo en segundo plano lo compacta escribiendo una nueva instantánea.
+ * Si la compactación falla, los registros siguen en el diario, se vuelve a intentar cuando el diario vuelve a superar
+ * el tamaño máximo y el error se puede consultar con {@link #getCompactionFailure()}.
+ *
+ * En memoria los personajes se guardan en una versión inmutable (ver PersonatgesSnapshot), que es la misma que
+ * lee PersonatgesRoster (ver SnapshotSource). Cada cambio publica una versión nueva solo después de añadirlo
+ * al diario, de forma que si falla la escritura la memoria sigue igual que el disco.
+ */
+public class JournalPersonatgesDAO implements PersonatgesDAO, SnapshotSource {
+    public static final String RUTA_JOURNAL = "src/data/personatges.journal";
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1024 * 1024;
+
+    private static final String CREATE = "create";
+    private static final String UPDATE = "update";
+    private static final String DELETE = "delete";
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path compactingPath;
+    private final long compactionThreshold;
+
+    private final JSONPersonatgesDAO snapshot;
+    private final Gson gson;
+    private final ExecutorService compactor;
+
+    //Personajes de la instantánea con los registros del diario aplicados, o null si todavía no se han leído
+    private volatile PersonatgesSnapshot personatges;
+    //Sin búfer, para que una escritura fallida no deje registros pendientes de escribir
+    private OutputStream journalStream;
+    private long journalBytes;
+    private boolean compacting;
+    //Error de la última compactación, o null si no ha fallado
+    private PersistenceException compactionFailure;
+
+    /**
+     * Registro del diario: la operación realizada y el personaje afectado. Las actualizaciones solo guardan
+     * la clave del personaje y los atributos modificados (ver PersonatgeAdapter.toDelta).
+     */
+    private static class JournalEntry {
+        private String op;
+        private Personatge personatge;
+        private JsonObject canvis;
+
+        JournalEntry(String op, Personatge personatge) {
+            this.op = op;
+            this.personatge = personatge;
+        }
+
+        JournalEntry(JsonObject canvis) {
+            this.op = UPDATE;
+            this.canvis = canvis;
+        }
+    }
+
+    /**
+     * Constructor de la clase JournalPersonatgesDAO con los archivos y el umbral de compactación por defecto.
+     */
+    public JournalPersonatgesDAO() {
+        this(JsonFiles.dataFile(JSONPersonatgesDAO.RUTA), RUTA_JOURNAL, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Constructor de la clase JournalPersonatgesDAO.
+     *
+     * @param rutaSnapshot        Ruta del archivo JSON con la instantánea de los personajes.
+     * @param rutaJournal         Ruta del archivo del diario.
+     * @param compactionThreshold Tamaño en bytes a partir del cual se compacta el diario.
+     */
+    public JournalPersonatgesDAO(String rutaSnapshot, String rutaJournal, long compactionThreshold) {
+        this.snapshotPath = Paths.get(rutaSnapshot);
+        this.journalPath = Paths.get(rutaJournal);
+        this.compactingPath = Paths.get(rutaJournal + ".compacting");
+        this.compactionThreshold = compactionThreshold;
+        this.snapshot = new JSONPersonatgesDAO(rutaSnapshot);
+        this.gson = SharedGson.get();
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "personatges-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return true;
+    }
+
+    @Override
+    public PersonatgesSnapshot snapshot() throws PersistenceException {
+        PersonatgesSnapshot actual = personatges;
+        return actual != null ? actual : loadPersonatges();
+    }
+
+    @Override
+    public ArrayList<Personatge> readPersonatges() throws PersistenceException {
+        //La versión devuelve personajes nuevos para que nadie modifique los personajes en memoria desde fuera
+        return snapshot().readPersonatges();
+    }
+
+    @Override
+    public int countPersonatges() throws PersistenceException {
+        return snapshot().size();
+    }
+
+    @Override
+    public Personatge findByKey(String name, String player) throws PersistenceException {
+        //La versión devuelve un personaje nuevo para que el combate no modifique el personaje en memoria
+        return snapshot().findByKey(name, player);
+    }
+
+    @Override
+    public ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException {
+        return snapshot().searchByPlayer(player);
+    }
+
+    @Override
+    public Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        return snapshot().readPersonatges(cursor, pageSize);
+    }
+
+    @Override
+    public Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException {
+        return snapshot().searchByPlayer(player, cursor, pageSize);
+    }
+
+    @Override
+    public void createPersonatge(Personatge p) throws PersistenceException {
+        createPersonatges(List.of(p));
+    }
+
+    @Override
+    public void deletePersonatge(Personatge p) throws PersistenceException {
+        deletePersonatges(List.of(p));
+    }
+
+    @Override
+    public void updateCharacter(Personatge p) throws PersistenceException {
+        updateCharacters(List.of(p));
+    }
+
+    @Override
+    public synchronized void createPersonatges(Collection<? extends Personatge> nous) throws PersistenceException {
+        PersonatgesSnapshot actual = loadPersonatges();
+        JSONPersonatgesDAO.checkNewKeys(actual::contains, nous);
+        ArrayList<JournalEntry> entries = new ArrayList<>(nous.size());
+        for (Personatge p : nous) {
+            entries.add(new JournalEntry(CREATE, p));
+        }
+        append(entries);
+
+        personatges = actual.withCreated(nous);
+        for (Personatge p : nous) {
+            p.netejarCanvis();
+        }
+    }
+
+    @Override
+    public synchronized void deletePersonatges(Collection<? extends Personatge> eliminats) throws PersistenceException {
+        PersonatgesSnapshot actual = loadPersonatges();
+        ArrayList<JournalEntry> entries = new ArrayList<>(eliminats.size());
+        for (Personatge p : eliminats) {
+            entries.add(new JournalEntry(DELETE, p));
+        }
+        append(entries);
+
+        personatges = actual.withDeleted(eliminats);
+    }
+
+    @Override
+    public synchronized void updateCharacters(Collection<? extends Personatge> modificats) throws PersistenceException {
+        PersonatgesSnapshot actual = loadPersonatges();
+        ArrayList<JournalEntry> entries = new ArrayList<>(modificats.size());
+        for (Personatge p : modificats) {
+            if (!p.isModificat() || !actual.contains(PersonatgeKey.of(p))) {
+                //El personaje no existe o no ha cambiado: no hay nada que registrar
+                continue;
+            }
+            entries.add(new JournalEntry(PersonatgeAdapter.toDelta(p)));
+        }
+        //La versión nueva se crea antes de guardar, porque al guardar los personajes dejan de tener cambios
+        PersonatgesSnapshot nou = actual.withUpdated(modificats);
+        append(entries);
+
+        personatges = nou;
+        for (Personatge p : modificats) {
+            p.netejarCanvis();
+        }
+    }
+
+    /**
+     * Obtiene el error de la última compactación del diario. Mientras la compactación falle, los registros siguen
+     * en el diario (no se pierde ningún cambio) y se vuelve a intentar cuando el diario supera de nuevo el umbral.
+     *
+     * @return El error de la última compactación, o null si no ha fallado.
+     */
+    public synchronized PersistenceException getCompactionFailure() {
+        return compactionFailure;
+    }
+
+    /**
+     * Carga la instantánea y aplica los registros del diario la primera vez que se necesitan los personajes.
+     *
+     * @return La versión con los personajes en memoria.
+     * @throws PersistenceException Si ocurre algún error durante la lectura de la instantánea o del diario.
+     */
+    private synchronized PersonatgesSnapshot loadPersonatges() throws PersistenceException {
+        if (personatges == null) {
+            LinkedHashMap<PersonatgeKey, Personatge> loaded = JSONPersonatgesDAO.index(
+                    Files.exists(snapshotPath) ? snapshot.readFile() : new ArrayList<>());
+
+            //Primero un diario que se estuviera compactando al cerrar la aplicación y después el diario actual
+            replay(loaded, compactingPath);
+            replay(loaded, journalPath);
+
+            try {
+                journalBytes = Files.exists(journalPath) ? Files.size(journalPath) : 0;
+                journalStream = openJournal();
+            } catch (IOException e) {
+                throw new PersistenceException("Error: Couldn't open the Characters journal", e);
+            }
+            personatges = PersonatgesSnapshot.of(loaded.values());
+        }
+        return personatges;
+    }
+
+    /**
+     * Aplica sobre los personajes todos los registros de un archivo de diario.
+     *
+     * @param personatges Personajes indexados por clave sobre los que se aplican los registros.
+     * @param path        Archivo del diario.
+     * @throws PersistenceException Si ocurre algún error durante la lectura del diario.
+     */
+    private void replay(LinkedHashMap<PersonatgeKey, Personatge> personatges, Path path) throws PersistenceException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            long validBytes = 0;
+            for (int i = 0; i < lines.size(); i++) {
+                if (lines.get(i).isBlank()) {
+                    validBytes += lines.get(i).getBytes(StandardCharsets.UTF_8).length + 1;
+                    continue;
+                }
+                try {
+                    JournalEntry entry = gson.fromJson(lines.get(i), JournalEntry.class);
+                    if (entry.canvis != null) {
+                        PersonatgeKey clau = new PersonatgeKey(entry.canvis.get("name").getAsString(),
+                                entry.canvis.get("player").getAsString());
+                        Personatge guardat = personatges.get(clau);
+                        if (guardat != null) {
+                            personatges.put(clau, PersonatgeAdapter.applyDelta(guardat, entry.canvis));
+                        }
+                    } else if (entry.op.equals(DELETE)) {
+                        personatges.remove(PersonatgeKey.of(entry.personatge));
+                    } else {
+                        //Al reaplicar, crear equivale a insertar o sustituir para que repetir registros no duplique personajes
+                        personatges.put(PersonatgeKey.of(entry.personatge), entry.personatge);
+                    }
+                    validBytes += lines.get(i).getBytes(StandardCharsets.UTF_8).length + 1;
+                } catch (JsonParseException e) {
+                    //Solo se acepta que falle la última línea, que puede haber quedado a medias si la aplicación se cerró escribiendo.
+                    //La eliminamos para que los nuevos registros no se escriban a continuación
+                    if (i != lines.size() - 1) {
+                        throw e;
+                    }
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.truncate(validBytes);
+                    }
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            throw new PersistenceException("Error: Couldn't read the Characters journal", e);
+        }
+    }
+
+    /**
+     * Añade los registros al final del diario con una sola escritura y lanza la compactación
+     * si el diario ha superado el umbral.
+     *
+     * @param entries Registros a añadir.
+     * @throws PersistenceException Si ocurre algún error durante la escritura en el diario.
+     */
+    private void append(List<JournalEntry> entries) throws PersistenceException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (JournalEntry entry : entries) {
+            lines.append(gson.toJson(entry)).append('\n');
+        }
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            journalStream.write(bytes);
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Can not modify the Characters journal", e);
+        }
+        journalBytes += bytes.length;
+
+        if (journalBytes >= compactionThreshold && !compacting) {
+            compacting = true;
+            compactor.submit(this::compact);
+        }
+    }
+
+    /**
+     * Compacta el diario: escribe una nueva instantánea con todos los personajes y descarta los registros ya incluidos.
+     * Se ejecuta en el hilo de compactación; el diario se rota con el bloqueo para que los nuevos cambios
+     * sigan escribiéndose mientras se guarda la instantánea.
+     */
+    private void compact() {
+        ArrayList<Personatge> copia;
+        try {
+            synchronized (this) {
+                copia = personatges.values();
+                journalStream.close();
+                try {
+                    if (Files.exists(compactingPath)) {
+                        //Una compactación anterior falló: sus registros siguen sin estar en la instantánea
+                        Files.write(compactingPath, Files.readAllBytes(journalPath), StandardOpenOption.APPEND);
+                        Files.delete(journalPath);
+                    } else {
+                        Files.move(journalPath, compactingPath);
+                    }
+                    journalBytes = 0;
+                } finally {
+                    journalStream = openJournal();
+                }
+            }
+
+            snapshot.writeCharacters(copia);
+            Files.delete(compactingPath);
+            synchronized (this) {
+                compactionFailure = null;
+            }
+
+        } catch (IOException | PersistenceException e) {
+            //Los registros se conservan en el diario y se volverá a intentar en la siguiente compactación
+            synchronized (this) {
+                compactionFailure = new PersistenceException("Error: Couldn't compact the Characters journal", e);
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Abre el diario para añadir registros al final.
+     */
+    private OutputStream openJournal() throws IOException {
+        return new FileOutputStream(journalPath.toFile(), true);
+    }
+}
@@ -0,0 +1,390 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Clase de utilidad con las operaciones de lectura y escritura comunes a los archivos JSON de datos.
+ *
+ * Los archivos pueden estar comprimidos: el formato se escoge por la extensión ({@value #GZIP} para gzip y
+ * {@value #DEFLATE} para deflate) y se comprime y descomprime en streaming, sin cargar el archivo entero.
+ * La propiedad del sistema {@value #COMPRESSION_PROPERTY} indica con qué formato se guardan los archivos
+ * de datos ("gzip", "deflate" o "none") y {@value #LEVEL_PROPERTY} el nivel de compresión (de 0 a 9).
+ */
+final class JsonFiles {
+    public static final String COMPRESSION_PROPERTY = "lsrpg.data.compression";
+    public static final String LEVEL_PROPERTY = "lsrpg.data.compression.level";
+    public static final String GZIP = ".gz";
+    public static final String DEFLATE = ".deflate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private JsonFiles() {
+    }
+
+    /**
+     * Lee el array con el nombre indicado de un archivo JSON de la forma {"nombre": [ ... ]}.
+     * El archivo se recorre token a token y cada elemento se convierte directamente en su entidad,
+     * sin construir antes el árbol JSON completo en memoria.
+     *
+     * @param ruta      Ruta del archivo JSON.
+     * @param arrayName Nombre del array dentro del objeto principal.
+     * @param clazz     Clase de los elementos del array.
+     * @param gson      Objeto Gson utilizado para convertir cada elemento.
+     * @return Lista con los elementos leídos.
+     * @throws IOException Si el archivo no existe o no tiene el formato esperado.
+     */
+    static <T> ArrayList<T> readArray(String ruta, String arrayName, Class<T> clazz, Gson gson) throws IOException {
+        TypeAdapter<T> adapter = gson.getAdapter(clazz);
+        ArrayList<T> elements = new ArrayList<>();
+
+        try (JsonReader reader = openReader(Paths.get(ruta))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(arrayName)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        elements.add(adapter.read(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        return elements;
+    }
+
+    /**
+     * Lee únicamente el elemento de la posición indicada del array, saltando los anteriores sin convertirlos.
+     *
+     * @param ruta      Ruta del archivo JSON.
+     * @param arrayName Nombre del array dentro del objeto principal.
+     * @param index     Posición del elemento.
+     * @param clazz     Clase de los elementos del array.
+     * @param gson      Objeto Gson utilizado para convertir el elemento.
+     * @return El elemento leído.
+     * @throws IOException Si el archivo no existe o no tiene el formato esperado.
+     */
+    static <T> T readArrayElement(String ruta, String arrayName, int index, Class<T> clazz, Gson gson) throws IOException {
+        try (JsonReader reader = openReader(Paths.get(ruta))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(arrayName)) {
+                    reader.beginArray();
+                    for (int i = 0; reader.hasNext(); i++) {
+                        if (i == index) {
+                            return gson.getAdapter(clazz).read(reader);
+                        }
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+        throw new IndexOutOfBoundsException(index);
+    }
+
+    /**
+     * Lee un atributo de texto de cada elemento del array, saltando el resto de atributos sin convertirlos.
+     *
+     * @param ruta      Ruta del archivo JSON.
+     * @param arrayName Nombre del array dentro del objeto principal.
+     * @param field     Nombre del atributo.
+     * @return El valor del atributo de cada elemento (null si no lo tiene).
+     * @throws IOException Si el archivo no existe o no tiene el formato esperado.
+     */
+    static ArrayList<String> readArrayField(String ruta, String arrayName, String field) throws IOException {
+        ArrayList<String> values = new ArrayList<>();
+        try (JsonReader reader = openReader(Paths.get(ruta))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(arrayName)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String value = null;
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals(field)) {
+                                value = reader.nextString();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                        values.add(value);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return values;
+    }
+
+    /**
+     * Escribe una lista como el array con el nombre indicado de un archivo JSON de la forma {"nombre": [ ... ]}.
+     * Los datos se escriben en un archivo temporal que se sincroniza con el disco y después sustituye
+     * al original con un renombrado atómico, de forma que si la aplicación se cierra a mitad de escritura
+     * el archivo original queda intacto. Si la ruta tiene extensión de archivo comprimido, se escribe comprimido.
+     *
+     * @param ruta      Ruta del archivo JSON.
+     * @param arrayName Nombre del array dentro del objeto principal.
+     * @param elements  Elementos a escribir.
+     * @param clazz     Clase con la que se serializan los elementos (solo se escriben sus atributos).
+     * @param gson      Objeto Gson utilizado para convertir cada elemento.
+     * @return La posición y la longitud en bytes de cada elemento dentro del contenido JSON (sin comprimir).
+     * @throws IOException Si ocurre algún error durante la escritura.
+     */
+    static <T> ArrayList<long[]> writeArray(String ruta, String arrayName, List<? extends T> elements, Class<T> clazz, Gson gson) throws IOException {
+        TypeAdapter<T> adapter = gson.getAdapter(clazz);
+        Path path = Paths.get(ruta);
+        Path tmp = Paths.get(ruta + ".tmp");
+        ArrayList<long[]> spans = new ArrayList<>(elements.size());
+
+        //Los bytes se cuentan antes del búfer, así que no hace falta vaciarlo para conocer la posición de cada elemento
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                 OutputStream codec = compress(path, fos);
+                 CountingWriter counter = new CountingWriter(new BufferedWriter(
+                         new OutputStreamWriter(codec, StandardCharsets.UTF_8), BUFFER_SIZE));
+                 JsonWriter writer = new JsonWriter(counter)) {
+                writer.setSerializeNulls(false);
+                writer.beginObject();
+                writer.name(arrayName);
+                writer.beginArray();
+                for (T element : elements) {
+                    //Sin sangría, lo único que se escribe antes de cada elemento (menos el primero) es la coma
+                    long start = counter.count + (spans.isEmpty() ? 0 : 1);
+                    adapter.write(writer, element);
+                    spans.add(new long[]{start, counter.count - start});
+                }
+                writer.endArray();
+                writer.endObject();
+
+                writer.flush();
+                finish(codec);
+                fos.getFD().sync();
+            }
+
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return spans;
+    }
+
+    /**
+     * Obtiene la ruta con la que se guarda un archivo de datos según el formato de compresión configurado.
+     *
+     * Los archivos en los otros formatos no se eliminan, así que puede haber varias copias de los datos: la más
+     * reciente es la que tiene los últimos cambios. Si no es la del formato configurado (porque todavía no existe,
+     * o porque la aplicación se ha ejecutado después con otro formato), se convierte al configurado en streaming.
+     * Si la conversión falla se usa la copia más reciente en su formato, y se volverá a intentar convertir
+     * la próxima vez.
+     *
+     * @param ruta Ruta del archivo JSON sin comprimir.
+     * @return La ruta del archivo en el formato configurado, o la de la copia más reciente si no se ha podido convertir.
+     */
+    static String dataFile(String ruta) {
+        String compression = System.getProperty(COMPRESSION_PROPERTY, "none");
+        String target = compression.equals("gzip") ? ruta + GZIP : compression.equals("deflate") ? ruta + DEFLATE : ruta;
+
+        String newest = null;
+        long newestModified = Long.MIN_VALUE;
+        for (String variant : new String[]{target, ruta, ruta + GZIP, ruta + DEFLATE}) {
+            long modified = lastModified(variant);
+            //Con la misma fecha se queda el formato configurado, que se comprueba primero
+            if (modified > newestModified) {
+                newest = variant;
+                newestModified = modified;
+            }
+        }
+        if (newest == null || newest.equals(target)) {
+            return target;
+        }
+
+        try {
+            convert(Paths.get(newest), Paths.get(target));
+            return target;
+        } catch (IOException e) {
+            return newest;
+        }
+    }
+
+    /**
+     * Obtiene la fecha de modificación de un archivo en milisegundos, o Long.MIN_VALUE si no existe.
+     */
+    private static long lastModified(String ruta) {
+        try {
+            return Files.getLastModifiedTime(Paths.get(ruta)).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Indica si un archivo se guarda comprimido según su extensión.
+     */
+    static boolean isCompressed(String ruta) {
+        return ruta.endsWith(GZIP) || ruta.endsWith(DEFLATE);
+    }
+
+    /**
+     * Copia un archivo de datos a otro formato de compresión, de forma atómica.
+     */
+    private static void convert(Path source, Path target) throws IOException {
+        Path tmp = Paths.get(target + ".tmp");
+        try {
+            try (InputStream in = decompress(source, new FileInputStream(source.toFile()));
+                 FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                 OutputStream out = compress(target, fos)) {
+                in.transferTo(out);
+                out.flush();
+                finish(out);
+                fos.getFD().sync();
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    private static JsonReader openReader(Path path) throws IOException {
+        return new JsonReader(new BufferedReader(new InputStreamReader(
+                decompress(path, new FileInputStream(path.toFile())), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Añade al flujo de lectura la descompresión correspondiente a la extensión del archivo.
+     */
+    private static InputStream decompress(Path path, InputStream in) throws IOException {
+        String name = path.getFileName().toString();
+        if (name.endsWith(GZIP)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        } else if (name.endsWith(DEFLATE)) {
+            return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE);
+        }
+        return new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Añade al flujo de escritura la compresión correspondiente a la extensión del archivo.
+     */
+    private static OutputStream compress(Path path, OutputStream out) throws IOException {
+        String name = path.getFileName().toString();
+        int level = Integer.getInteger(LEVEL_PROPERTY, Deflater.DEFAULT_COMPRESSION);
+        if (name.endsWith(GZIP)) {
+            return new LevelGZIPOutputStream(out, level);
+        } else if (name.endsWith(DEFLATE)) {
+            return new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE);
+        }
+        return new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * Escribe el final del formato comprimido, para que el archivo esté completo antes de sincronizarlo con el disco.
+     */
+    private static void finish(OutputStream out) throws IOException {
+        if (out instanceof DeflaterOutputStream) {
+            ((DeflaterOutputStream) out).finish();
+        }
+        out.flush();
+    }
+
+    /**
+     * GZIPOutputStream con el nivel de compresión indicado.
+     */
+    private static final class LevelGZIPOutputStream extends GZIPOutputStream {
+        LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * Writer que cuenta los bytes que ocupan en UTF-8 los caracteres escritos, sin tener que vaciar el búfer
+     * que tiene debajo.
+     */
+    private static final class CountingWriter extends FilterWriter {
+        private long count;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count += utf8Length((char) c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            for (int i = off; i < off + len; i++) {
+                count += utf8Length(cbuf[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            for (int i = off; i < off + len; i++) {
+                count += utf8Length(str.charAt(i));
+            }
+        }
+
+        /**
+         * Obtiene los bytes de un carácter en UTF-8. Cada mitad de un par sustituto cuenta dos bytes,
+         * de forma que el par ocupa los cuatro bytes de su código.
+         */
+        private static int utf8Length(char c) {
+            if (c < 0x80) {
+                return 1;
+            } else if (c < 0x800) {
+                return 2;
+            } else if (Character.isSurrogate(c)) {
+                return 2;
+            }
+            return 3;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package persistence;
+
+import business.entities.Monstre;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Convierte los monstruos a JSON y de JSON sin reflexión, con los mismos atributos que el formato de los archivos
+ * y de la API. Los textos que se repiten entre monstruos (nombre, dificultad, dado y tipo de daño) se internan
+ * al leerlos en el conjunto de textos de cada atributo (ver StringPool), de forma que todos los monstruos comparten
+ * la misma cadena.
+ */
+final class MonstreAdapter extends TypeAdapter<Monstre> {
+
+    @Override
+    public void write(JsonWriter out, Monstre m) throws IOException {
+        out.beginObject();
+        out.name("name").value(m.getName());
+        writeStats(out, m);
+        out.endObject();
+    }
+
+    /**
+     * Escribe todos los atributos del monstruo menos el nombre, dentro de un objeto JSON ya empezado.
+     * Permite guardar el monstruo dentro de un objeto que lo identifica de otra forma (ver CombatAdapter).
+     */
+    static void writeStats(JsonWriter out, Monstre m) throws IOException {
+        out.name("challenge").value(m.getChallenge());
+        out.name("experience").value(m.getExperience());
+        out.name("hitPoints").value(m.getHitPoints());
+        out.name("initiative").value(m.getInitiative());
+        out.name("damageDice").value(m.getDamageDice());
+        out.name("damageType").value(m.getDamageType());
+    }
+
+    @Override
+    public Monstre read(JsonReader in) throws IOException {
+        Camps camps = new Camps();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!camps.read(in.nextName(), in)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return camps.build();
+    }
+
+    /**
+     * Atributos de un monstruo leídos de un objeto JSON. Permite leer los atributos del monstruo dentro de un objeto
+     * que puede tener otros atributos (como los elementos de los combates, ver CombatAdapter).
+     */
+    static final class Camps {
+        private String name;
+        private String challenge;
+        private int experience;
+        private int hitPoints;
+        private int initiative;
+        private String damageDice;
+        private String damageType;
+        private boolean stats;
+
+        /**
+         * Lee el valor de un atributo si es un atributo del monstruo.
+         *
+         * @return false si el atributo no es del monstruo y no se ha leído su valor.
+         */
+        boolean read(String field, JsonReader in) throws IOException {
+            if (field.equals("name")) {
+                name = SharedGson.nextInterned(in, StringPool.MONSTER_NAMES);
+            } else if (field.equals("challenge")) {
+                challenge = SharedGson.nextInterned(in, StringPool.CHALLENGES);
+            } else if (field.equals("experience")) {
+                experience = in.nextInt();
+            } else if (field.equals("hitPoints")) {
+                hitPoints = in.nextInt();
+            } else if (field.equals("initiative")) {
+                initiative = in.nextInt();
+            } else if (field.equals("damageDice")) {
+                damageDice = SharedGson.nextInterned(in, StringPool.DAMAGE_DICE);
+            } else if (field.equals("damageType")) {
+                damageType = SharedGson.nextInterned(in, StringPool.DAMAGE_TYPES);
+            } else {
+                return false;
+            }
+            stats |= !field.equals("name");
+            return true;
+        }
+
+        /**
+         * Indica si se ha leído alguno de los atributos del monstruo aparte del nombre.
+         */
+        boolean hasStats() {
+            return stats;
+        }
+
+        Monstre build() {
+            return build(name);
+        }
+
+        /**
+         * Crea el monstruo con el nombre indicado y los atributos leídos.
+         */
+        Monstre build(String name) {
+            return new Monstre(name, challenge, experience, hitPoints, initiative, damageDice, damageType);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package persistence;
+
+import business.entities.Monstre;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Catálogo de monstruos leído del almacenamiento. No se puede modificar una vez creado,
+ * así que se puede compartir entre lecturas sin copiarlo.
+ */
+public final class MonstreCatalog {
+    private final List<Monstre> monstres;
+    private final HashMap<String, Monstre> perNom;
+
+    /**
+     * Constructor de la clase MonstreCatalog.
+     *
+     * @param monstres Monstruos del catálogo, en el orden del almacenamiento.
+     */
+    MonstreCatalog(List<Monstre> monstres) {
+        this.monstres = List.copyOf(monstres);
+        this.perNom = new HashMap<>();
+        for (int i = 0; i < this.monstres.size(); i++) {
+            perNom.putIfAbsent(this.monstres.get(i).getName(), this.monstres.get(i));
+        }
+    }
+
+    /**
+     * Obtiene el número de monstruos del catálogo.
+     *
+     * @return El número de monstruos.
+     */
+    public int size() {
+        return monstres.size();
+    }
+
+    /**
+     * Obtiene el monstruo de la posición indicada.
+     *
+     * @param index Posición del monstruo.
+     * @return El monstruo de esa posición.
+     */
+    public Monstre get(int index) {
+        return monstres.get(index);
+    }
+
+    /**
+     * Busca un monstruo del catálogo por su nombre.
+     *
+     * @param name Nombre del monstruo.
+     * @return El primer monstruo del catálogo con ese nombre, o null si no hay ninguno.
+     */
+    public Monstre findByName(String name) {
+        return perNom.get(name);
+    }
+
+    /**
+     * Indica si un monstruo es el monstruo del catálogo al que se llega por su nombre, es decir, si se puede guardar
+     * como una referencia con su nombre.
+     *
+     * @param m Monstruo a buscar.
+     * @return true si el primer monstruo del catálogo con su nombre tiene también las mismas estadísticas.
+     */
+    public boolean isReferenceable(Monstre m) {
+        Monstre perNom = findByName(m.getName());
+        return perNom != null && key(perNom).equals(key(m));
+    }
+
+    /**
+     * Obtiene todos los monstruos del catálogo como una lista que no se puede modificar.
+     *
+     * @return Los monstruos del catálogo.
+     */
+    public List<Monstre> getMonstres() {
+        return monstres;
+    }
+
+    /**
+     * Obtiene una copia modificable de los monstruos del catálogo.
+     *
+     * @return Una nueva lista con los monstruos.
+     */
+    public ArrayList<Monstre> toArrayList() {
+        return new ArrayList<>(monstres);
+    }
+
+    private static List<Object> key(Monstre m) {
+        return Arrays.asList(m.getName(), m.getChallenge(), m.getExperience(), m.getHitPoints(),
+                m.getInitiative(), m.getDamageDice(), m.getDamageType());
+    }
+}
@@ -25,7 +25,7 @@ public class MonstresAPI implements MonstresDAO {
      */
     public MonstresAPI() throws PersistenceException {
         apiHelper = new ApiHelper();
-        gson = new Gson();
+        gson = SharedGson.get();
     }
 
     /**
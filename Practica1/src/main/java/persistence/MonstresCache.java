@@ -0,0 +1,101 @@
+package persistence;
+
+import business.entities.Monstre;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * MonstresDAO que guarda en memoria el catálogo de monstruos de otro MonstresDAO y solo lo vuelve a leer
+ * cuando puede haber cambiado.
+ *
+ * Con datos locales se vuelve a leer cuando cambia la fecha de modificación o el tamaño del archivo;
+ * con la API, cuando ha pasado el tiempo de validez configurado con la propiedad del sistema
+ * {@value #TTL_PROPERTY} (en segundos).
+ */
+public class MonstresCache implements MonstresDAO {
+    public static final String TTL_PROPERTY = "lsrpg.monsters.ttl";
+    public static final long DEFAULT_TTL_SECONDS = 300;
+
+    //Caché del catálogo local, compartida por todos los que lo usan
+    private static MonstresCache localCache;
+
+    private final MonstresDAO monstresDAO;
+    private final CacheValidity validity;
+
+    private MonstreCatalog catalog;
+
+    /**
+     * Obtiene la caché del catálogo local de monstruos. Es la misma para toda la aplicación, de forma que
+     * el catálogo se lee una sola vez aunque lo usen a la vez los monstruos y las aventuras.
+     *
+     * @return La caché sobre el archivo JSON de monstruos.
+     */
+    public static synchronized MonstresCache local() {
+        if (localCache == null) {
+            localCache = new MonstresCache(new JSONMonstresDAO(), Paths.get(JsonFiles.dataFile(JSONMonstresDAO.RUTA)), 0);
+        }
+        return localCache;
+    }
+
+    /**
+     * Crea una caché que no caduca nunca, para catálogos que no se modifican mientras se ejecuta la aplicación
+     * (como los del archivo de datos con árboles B+ o los de la base de datos).
+     *
+     * @param monstresDAO MonstresDAO del que se lee el catálogo.
+     * @return La caché sobre el catálogo del MonstresDAO.
+     */
+    public static MonstresCache of(MonstresDAO monstresDAO) {
+        return new MonstresCache(monstresDAO, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Crea la caché del catálogo de monstruos de la API.
+     *
+     * @return La caché sobre la API de monstruos.
+     * @throws PersistenceException Si ocurre un error al crear la conexión con la API.
+     */
+    public static MonstresCache cloud() throws PersistenceException {
+        long ttl = Long.getLong(TTL_PROPERTY, DEFAULT_TTL_SECONDS);
+        return new MonstresCache(new MonstresAPI(), null, ttl * 1000);
+    }
+
+    /**
+     * Constructor de la clase MonstresCache.
+     *
+     * @param monstresDAO MonstresDAO del que se lee el catálogo.
+     * @param path        Archivo del que se comprueban los cambios, o null para usar el tiempo de validez.
+     * @param ttlMillis   Tiempo de validez del catálogo en milisegundos cuando no hay archivo.
+     */
+    MonstresCache(MonstresDAO monstresDAO, Path path, long ttlMillis) {
+        this.monstresDAO = monstresDAO;
+        this.validity = new CacheValidity(path, ttlMillis);
+    }
+
+    /**
+     * Obtiene el catálogo de monstruos, leyéndolo de nuevo solo si ha cambiado.
+     *
+     * @return El catálogo de monstruos.
+     * @throws PersistenceException Si ocurre algún error durante la lectura de los monstruos.
+     */
+    public synchronized MonstreCatalog getCatalog() throws PersistenceException {
+        try {
+            if (validity.changed()) {
+                catalog = new MonstreCatalog(monstresDAO.readMonsters());
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't open the Monsters file", e);
+        } catch (PersistenceException e) {
+            validity.invalidate();
+            throw e;
+        }
+        return catalog;
+    }
+
+    @Override
+    public ArrayList<Monstre> readMonsters() throws PersistenceException {
+        return getCatalog().toArrayList();
+    }
+}
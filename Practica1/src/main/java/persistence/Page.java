@@ -0,0 +1,151 @@
+package persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Página de una lectura por páginas: los elementos de la página y el cursor para pedir la siguiente.
+ *
+ * El cursor es un texto opaco: quien lo recibe solo debe pasarlo tal cual para leer la página siguiente.
+ * Para leer la primera página se pasa un cursor null.
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final int offset;
+    private final String nextCursor;
+
+    /**
+     * Constructor de la clase Page.
+     *
+     * @param items      Elementos de la página.
+     * @param offset     Posición del primer elemento de la página dentro de todos los elementos.
+     * @param nextCursor Cursor de la página siguiente, o null si esta es la última.
+     */
+    Page(List<T> items, int offset, String nextCursor) {
+        this.items = List.copyOf(items);
+        this.offset = offset;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Obtiene los elementos de la página.
+     *
+     * @return Los elementos de la página, en una lista que no se puede modificar.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Obtiene la posición del primer elemento de la página dentro de todos los elementos.
+     *
+     * @return La posición del primer elemento.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Obtiene el cursor para leer la página siguiente.
+     *
+     * @return El cursor de la página siguiente, o null si no hay más páginas.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Indica si hay más páginas después de esta.
+     *
+     * @return true si hay una página siguiente.
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Crea la página que empieza en el cursor indicado a partir de todos los elementos, recorriéndolos
+     * sin copiarlos.
+     *
+     * @param elements Iterador sobre todos los elementos.
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de elementos de la página.
+     * @return La página.
+     * @throws PersistenceException Si el cursor no es válido.
+     */
+    static <T> Page<T> of(Iterator<T> elements, String cursor, int pageSize) throws PersistenceException {
+        int offset = offset(cursor);
+        checkPageSize(pageSize);
+
+        for (int i = 0; i < offset && elements.hasNext(); i++) {
+            elements.next();
+        }
+        ArrayList<T> items = new ArrayList<>(pageSize);
+        while (items.size() < pageSize && elements.hasNext()) {
+            items.add(elements.next());
+        }
+        return new Page<>(items, offset, elements.hasNext() ? cursor(offset + items.size()) : null);
+    }
+
+    /**
+     * Crea la página que empieza en el cursor indicado a partir de una lista con todos los elementos.
+     *
+     * @param elements Todos los elementos.
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de elementos de la página.
+     * @return La página.
+     * @throws PersistenceException Si el cursor no es válido.
+     */
+    static <T> Page<T> of(List<T> elements, String cursor, int pageSize) throws PersistenceException {
+        int offset = offset(cursor);
+        checkPageSize(pageSize);
+
+        int from = Math.min(offset, elements.size());
+        int to = (int) Math.min((long) from + pageSize, elements.size());
+        return new Page<>(elements.subList(from, to), offset, to < elements.size() ? cursor(to) : null);
+    }
+
+    /**
+     * Obtiene la posición en la que empieza la página del cursor indicado.
+     *
+     * @param cursor Cursor de la página, o null para la primera.
+     * @return La posición del primer elemento de la página.
+     * @throws PersistenceException Si el cursor no es válido.
+     */
+    static int offset(String cursor) throws PersistenceException {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (offset < 0) {
+                throw new NumberFormatException(cursor);
+            }
+            return offset;
+        } catch (IllegalArgumentException e) {
+            throw new PersistenceException("Error: Invalid page cursor", e);
+        }
+    }
+
+    /**
+     * Crea el cursor de la página que empieza en la posición indicada.
+     *
+     * @param offset Posición del primer elemento de la página.
+     * @return El cursor de la página.
+     */
+    static String cursor(int offset) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Integer.toString(offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Comprueba que el tamaño de página sea válido.
+     */
+    static void checkPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+    }
+}
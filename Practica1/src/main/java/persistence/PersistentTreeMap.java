@@ -0,0 +1,251 @@
+package persistence;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Mapa ordenado inmutable (árbol AVL) en el que cada modificación devuelve un mapa nuevo.
+ *
+ * El mapa nuevo solo copia los nodos del camino desde la raíz hasta el elemento modificado y comparte el resto
+ * con el anterior, así que modificar un elemento cuesta O(log n) aunque las dos versiones sigan existiendo.
+ * Como ningún nodo se modifica después de crearlo, cualquier hilo puede leer una versión mientras otro crea
+ * la siguiente sin ningún bloqueo. Cada nodo guarda el tamaño de su subárbol para llegar a una posición en O(log n).
+ *
+ * @param <K> Tipo de las claves.
+ * @param <V> Tipo de los valores.
+ */
+final class PersistentTreeMap<K extends Comparable<K>, V> implements Iterable<Map.Entry<K, V>> {
+    private static final PersistentTreeMap<?, ?> EMPTY = new PersistentTreeMap<>(null);
+
+    private final Node<K, V> root;
+
+    /**
+     * Nodo del árbol. No se modifica nunca después de crearlo.
+     */
+    private static final class Node<K, V> implements Map.Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+        private final int size;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private PersistentTreeMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    /**
+     * Obtiene el mapa vacío.
+     *
+     * @return Un mapa sin elementos.
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<K>, V> PersistentTreeMap<K, V> empty() {
+        return (PersistentTreeMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Obtiene el número de elementos del mapa.
+     *
+     * @return El número de elementos.
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Obtiene el valor de una clave.
+     *
+     * @param key La clave.
+     * @return El valor de la clave, o null si no está en el mapa.
+     */
+    V get(K key) {
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = key.compareTo(n.key);
+            if (c == 0) {
+                return n.value;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    /**
+     * Crea un mapa con los mismos elementos y el valor indicado para la clave.
+     *
+     * @param key   La clave.
+     * @param value El valor.
+     * @return El mapa nuevo; este mapa no cambia.
+     */
+    PersistentTreeMap<K, V> put(K key, V value) {
+        return new PersistentTreeMap<>(put(root, key, value));
+    }
+
+    /**
+     * Crea un mapa con los mismos elementos excepto la clave indicada.
+     *
+     * @param key La clave.
+     * @return El mapa nuevo, o este mismo si la clave no está en el mapa.
+     */
+    PersistentTreeMap<K, V> remove(K key) {
+        Node<K, V> nou = remove(root, key);
+        return nou == root ? this : new PersistentTreeMap<>(nou);
+    }
+
+    /**
+     * Recorre los elementos en orden de clave.
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Recorre los elementos en orden de clave empezando por el de la posición indicada.
+     *
+     * @param from Posición del primer elemento.
+     * @return El iterador sobre los elementos a partir de la posición.
+     */
+    Iterator<Map.Entry<K, V>> iterator(int from) {
+        ArrayDeque<Node<K, V>> stack = new ArrayDeque<>();
+        Node<K, V> n = root;
+        int i = from;
+        //Guardamos el camino hasta el elemento de la posición, con los nodos que quedan a su derecha
+        while (n != null) {
+            int esquerra = size(n.left);
+            if (i < esquerra) {
+                stack.push(n);
+                n = n.left;
+            } else if (i == esquerra) {
+                stack.push(n);
+                break;
+            } else {
+                i -= esquerra + 1;
+                n = n.right;
+            }
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<K, V> actual = stack.pop();
+                for (Node<K, V> m = actual.right; m != null; m = m.left) {
+                    stack.push(m);
+                }
+                return actual;
+            }
+        };
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> put(Node<K, V> n, K key, V value) {
+        if (n == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int c = key.compareTo(n.key);
+        if (c < 0) {
+            return balance(n.key, n.value, put(n.left, key, value), n.right);
+        } else if (c > 0) {
+            return balance(n.key, n.value, n.left, put(n.right, key, value));
+        }
+        return new Node<>(key, value, n.left, n.right);
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> remove(Node<K, V> n, K key) {
+        if (n == null) {
+            return null;
+        }
+        int c = key.compareTo(n.key);
+        if (c < 0) {
+            Node<K, V> left = remove(n.left, key);
+            return left == n.left ? n : balance(n.key, n.value, left, n.right);
+        } else if (c > 0) {
+            Node<K, V> right = remove(n.right, key);
+            return right == n.right ? n : balance(n.key, n.value, n.left, right);
+        }
+
+        if (n.left == null) {
+            return n.right;
+        } else if (n.right == null) {
+            return n.left;
+        }
+        //El nodo tiene dos hijos: lo sustituimos por el menor de su subárbol derecho
+        Node<K, V> menor = n.right;
+        while (menor.left != null) {
+            menor = menor.left;
+        }
+        return balance(menor.key, menor.value, n.left, removeMin(n.right));
+    }
+
+    private static <K, V> Node<K, V> removeMin(Node<K, V> n) {
+        if (n.left == null) {
+            return n.right;
+        }
+        return balance(n.key, n.value, removeMin(n.left), n.right);
+    }
+
+    /**
+     * Crea un nodo con los hijos indicados, rotándolo si la diferencia de altura entre los hijos es mayor que uno.
+     */
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            Node<K, V> mig = left.right;
+            return new Node<>(mig.key, mig.value, new Node<>(left.key, left.value, left.left, mig.left),
+                    new Node<>(key, value, mig.right, right));
+        } else if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            Node<K, V> mig = right.left;
+            return new Node<>(mig.key, mig.value, new Node<>(key, value, left, mig.left),
+                    new Node<>(right.key, right.value, mig.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int height(Node<?, ?> n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static int size(Node<?, ?> n) {
+        return n == null ? 0 : n.size;
+    }
+}
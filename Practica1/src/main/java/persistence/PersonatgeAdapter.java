@@ -0,0 +1,115 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+import business.entities.personatge.PersonatgeFactory;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Convierte los personajes a JSON y de JSON sin reflexión. Solo se escriben los atributos que se guardan
+ * en persistencia, aunque el personaje sea de una subclase con atributos de combate.
+ * Al leer, el atributo "class" indica la subclase que se crea (ver PersonatgeFactory), así que los personajes
+ * leídos ya son un Mage, un Cleric o un Aventurer. La clase y el jugador se internan, ya que se repiten entre muchos
+ * personajes.
+ */
+final class PersonatgeAdapter extends TypeAdapter<Personatge> {
+
+    @Override
+    public void write(JsonWriter out, Personatge p) throws IOException {
+        out.beginObject();
+        out.name("name").value(p.getName());
+        out.name("player").value(p.getPlayer());
+        out.name("class").value(p.getClase());
+        out.name("xp").value(p.getXp());
+        out.name("body").value(p.getBody());
+        out.name("mind").value(p.getMind());
+        out.name("spirit").value(p.getSpirit());
+        out.endObject();
+    }
+
+    @Override
+    public Personatge read(JsonReader in) throws IOException {
+        String name = null;
+        String player = null;
+        String clase = null;
+        int xp = 0;
+        int body = 0;
+        int mind = 0;
+        int spirit = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (field.equals("name")) {
+                name = in.nextString();
+            } else if (field.equals("player")) {
+                player = SharedGson.nextInterned(in, StringPool.PLAYERS);
+            } else if (field.equals("class")) {
+                clase = SharedGson.nextInterned(in, StringPool.CLASSES);
+            } else if (field.equals("xp")) {
+                xp = in.nextInt();
+            } else if (field.equals("body")) {
+                body = in.nextInt();
+            } else if (field.equals("mind")) {
+                mind = in.nextInt();
+            } else if (field.equals("spirit")) {
+                spirit = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return PersonatgeFactory.create(name, player, clase, xp, body, mind, spirit);
+    }
+
+    /**
+     * Crea un objeto JSON con la clave del personaje y solo los atributos que se han modificado
+     * (ver Personatge.getCanvis), para guardar los cambios sin escribir todo el personaje.
+     *
+     * @param p Personaje modificado.
+     * @return El objeto JSON con los cambios.
+     */
+    static JsonObject toDelta(Personatge p) {
+        int canvis = p.getCanvis();
+        JsonObject delta = new JsonObject();
+        delta.addProperty("name", p.getName());
+        delta.addProperty("player", p.getPlayer());
+        if ((canvis & Personatge.CANVI_CLASE) != 0) {
+            delta.addProperty("class", p.getClase());
+        }
+        if ((canvis & Personatge.CANVI_XP) != 0) {
+            delta.addProperty("xp", p.getXp());
+        }
+        if ((canvis & Personatge.CANVI_BODY) != 0) {
+            delta.addProperty("body", p.getBody());
+        }
+        if ((canvis & Personatge.CANVI_MIND) != 0) {
+            delta.addProperty("mind", p.getMind());
+        }
+        if ((canvis & Personatge.CANVI_SPIRIT) != 0) {
+            delta.addProperty("spirit", p.getSpirit());
+        }
+        return delta;
+    }
+
+    /**
+     * Crea un personaje nuevo con los atributos de un personaje guardado y los cambios de un objeto creado con toDelta.
+     *
+     * @param guardat Personaje guardado, que no se modifica.
+     * @param delta   Objeto JSON con los cambios.
+     * @return El personaje con los cambios aplicados.
+     */
+    static Personatge applyDelta(Personatge guardat, JsonObject delta) {
+        return PersonatgeFactory.create(guardat.getName(), guardat.getPlayer(),
+                delta.has("class") ? StringPool.CLASSES.intern(delta.get("class").getAsString()) : guardat.getClase(),
+                delta.has("xp") ? delta.get("xp").getAsInt() : guardat.getXp(),
+                delta.has("body") ? delta.get("body").getAsInt() : guardat.getBody(),
+                delta.has("mind") ? delta.get("mind").getAsInt() : guardat.getMind(),
+                delta.has("spirit") ? delta.get("spirit").getAsInt() : guardat.getSpirit());
+    }
+}
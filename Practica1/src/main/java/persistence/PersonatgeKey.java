@@ -0,0 +1,76 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+
+/**
+ * Clave primaria de un personaje: su nombre junto con el nombre de su jugador.
+ * Las claves se ordenan por jugador y después por nombre.
+ */
+final class PersonatgeKey implements Comparable<PersonatgeKey> {
+    private final String name;
+    private final String player;
+    private final int hash;
+
+    /**
+     * Constructor de la clase PersonatgeKey.
+     *
+     * @param name   Nombre del personaje.
+     * @param player Nombre del jugador.
+     */
+    PersonatgeKey(String name, String player) {
+        this.name = name;
+        this.player = player;
+        this.hash = 31 * name.hashCode() + player.hashCode();
+    }
+
+    /**
+     * Obtiene la clave de un personaje.
+     *
+     * @param p El personaje.
+     * @return La clave del personaje.
+     */
+    static PersonatgeKey of(Personatge p) {
+        return new PersonatgeKey(p.getName(), p.getPlayer());
+    }
+
+    /**
+     * Obtiene el nombre del personaje de la clave.
+     *
+     * @return El nombre del personaje.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Obtiene el nombre del jugador de la clave.
+     *
+     * @return El nombre del jugador.
+     */
+    String getPlayer() {
+        return player;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PersonatgeKey)) {
+            return false;
+        }
+        PersonatgeKey other = (PersonatgeKey) o;
+        return hash == other.hash && name.equals(other.name) && player.equals(other.player);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(PersonatgeKey other) {
+        int c = player.compareTo(other.player);
+        return c != 0 ? c : name.compareTo(other.name);
+    }
+}
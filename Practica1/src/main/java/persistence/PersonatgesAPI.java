@@ -2,12 +2,16 @@ package persistence;
 
 import business.BusinessException;
 import business.entities.personatge.Personatge;
-import business.entities.personatge.PersonatgeJSON;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Implementación de la interfaz PersonatgesDAO que utiliza una API para acceder a los datos de los personajes.
@@ -16,8 +20,12 @@ public class PersonatgesAPI implements PersonatgesDAO {
     public static final String HOST = "https://balandrau.salle.url.edu/dpoo";
     public static final String ID = "S1-Project_43";
 
+    //Número máximo de peticiones simultáneas en las operaciones con varios personajes
+    public static final int MAX_PARALLEL_REQUESTS = 4;
+
     ApiHelper apiHelper;
     Gson gson;
+    private final ExecutorService executor;
 
     /**
      * Constructor de la clase PersonatgesAPI.
@@ -26,7 +34,17 @@ public class PersonatgesAPI implements PersonatgesDAO {
      */
     public PersonatgesAPI() throws PersistenceException {
         apiHelper = new ApiHelper();
-        gson = new Gson();
+        gson = SharedGson.get();
+        executor = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS, r -> {
+            Thread thread = new Thread(r, "personatges-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return true;
     }
 
     /**
@@ -38,10 +56,79 @@ public class PersonatgesAPI implements PersonatgesDAO {
     public ArrayList<Personatge> readPersonatges() throws PersistenceException {
         // CLOUD_DATA
         String personatgesString = apiHelper.getFromUrl(HOST + "/" + ID + "/characters");
-        Type type = new TypeToken<ArrayList<PersonatgeJSON>>() {}.getType();
+        Type type = new TypeToken<ArrayList<Personatge>>() {}.getType();
         return gson.fromJson(personatgesString, type);
     }
 
+    /**
+     * Busca un personaje en la API por su nombre y el de su jugador.
+     * La API no ofrece un índice por clave, así que se leen los personajes y se filtran.
+     *
+     * @param name   El nombre del personaje.
+     * @param player El nombre del jugador.
+     * @return El personaje encontrado, o null si no existe.
+     * @throws PersistenceException Si ocurre un error al intentar leer los personajes.
+     */
+    @Override
+    public Personatge findByKey(String name, String player) throws PersistenceException {
+        // CLOUD_DATA
+        for (Personatge p : readPersonatges()) {
+            if (p.getName().equals(name) && p.getPlayer().equals(player)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Busca en la API los personajes cuyo nombre de jugador contiene el texto indicado.
+     *
+     * @param player Texto a buscar en el nombre del jugador.
+     * @return Una lista con los personajes encontrados.
+     * @throws PersistenceException Si ocurre un error al intentar leer los personajes.
+     */
+    @Override
+    public ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException {
+        // CLOUD_DATA
+        ArrayList<Personatge> trobats = new ArrayList<>();
+        for (Personatge p : readPersonatges()) {
+            if (p.getPlayer().contains(player)) {
+                trobats.add(p);
+            }
+        }
+        return trobats;
+    }
+
+    /**
+     * Lee una página de personajes de la API.
+     * La API no permite pedir páginas, así que se leen todos los personajes y se devuelve la página pedida.
+     *
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de personajes de la página.
+     * @return La página de personajes.
+     * @throws PersistenceException Si ocurre un error al intentar leer los personajes o el cursor no es válido.
+     */
+    @Override
+    public Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        // CLOUD_DATA
+        return Page.of(readPersonatges(), cursor, pageSize);
+    }
+
+    /**
+     * Busca en la API una página de los personajes cuyo nombre de jugador contiene el texto indicado.
+     *
+     * @param player   Texto a buscar en el nombre del jugador.
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de personajes de la página.
+     * @return La página de personajes encontrados.
+     * @throws PersistenceException Si ocurre un error al intentar leer los personajes o el cursor no es válido.
+     */
+    @Override
+    public Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException {
+        // CLOUD_DATA
+        return Page.of(searchByPlayer(player), cursor, pageSize);
+    }
+
     /**
      * Crea un nuevo personaje en la API.
      *
@@ -67,16 +154,97 @@ public class PersonatgesAPI implements PersonatgesDAO {
     }
 
     /**
-     * Actualiza un personaje en la API.
+     * Actualiza un personaje en la API. La API no permite modificar solo algunos atributos, así que el personaje
+     * se sustituye entero, pero solo si se ha modificado (ver Personatge.getCanvis).
      *
      * @param p El personaje actualizado.
      * @throws PersistenceException Si ocurre un error al intentar actualizar el personaje.
      */
     @Override
     public void updateCharacter(Personatge p) throws PersistenceException {
+        if (!p.isModificat()) {
+            return;
+        }
         // Borrar y añadir personaje de nuevo en remoto
         deletePersonatge(p);
         createPersonatge(p);
+        p.netejarCanvis();
+    }
+
+    /**
+     * Crea varios personajes en la API, con como mucho MAX_PARALLEL_REQUESTS peticiones a la vez.
+     *
+     * @param personatges Los personajes que se desean crear.
+     * @throws PersistenceException Si ocurre un error al intentar crear alguno de los personajes.
+     */
+    @Override
+    public void createPersonatges(Collection<? extends Personatge> personatges) throws PersistenceException {
+        runInParallel(personatges, this::createPersonatge);
+    }
+
+    /**
+     * Elimina varios personajes de la API, con como mucho MAX_PARALLEL_REQUESTS peticiones a la vez.
+     *
+     * @param personatges Los personajes que se desean eliminar.
+     * @throws PersistenceException Si ocurre un error al intentar eliminar alguno de los personajes.
+     */
+    @Override
+    public void deletePersonatges(Collection<? extends Personatge> personatges) throws PersistenceException {
+        runInParallel(personatges, this::deletePersonatge);
+    }
+
+    /**
+     * Actualiza varios personajes en la API, con como mucho MAX_PARALLEL_REQUESTS personajes a la vez.
+     *
+     * @param personatges Los personajes actualizados.
+     * @throws PersistenceException Si ocurre un error al intentar actualizar alguno de los personajes.
+     */
+    @Override
+    public void updateCharacters(Collection<? extends Personatge> personatges) throws PersistenceException {
+        runInParallel(personatges, this::updateCharacter);
+    }
+
+    /**
+     * Operación sobre un personaje que se envía a la API.
+     */
+    private interface Request {
+        void send(Personatge p) throws PersistenceException;
+    }
+
+    /**
+     * Ejecuta la operación para cada personaje en el grupo de hilos y espera a que terminen todas.
+     *
+     * @param personatges Los personajes sobre los que se ejecuta la operación.
+     * @param request     La operación a ejecutar.
+     * @throws PersistenceException Si alguna de las operaciones falla.
+     */
+    private void runInParallel(Collection<? extends Personatge> personatges, Request request) throws PersistenceException {
+        ArrayList<Future<Void>> futures = new ArrayList<>(personatges.size());
+        for (Personatge p : personatges) {
+            futures.add(executor.submit(() -> {
+                request.send(p);
+                return null;
+            }));
+        }
+
+        PersistenceException error = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof PersistenceException ? (PersistenceException) e.getCause()
+                            : new PersistenceException("Error sending the Characters to the API.", e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PersistenceException("Error sending the Characters to the API.", e);
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
     }
 }
 
@@ -3,6 +3,7 @@ package persistence;
 import business.entities.personatge.Personatge;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * Esta interfaz proporciona métodos para leer y escribir los datos de los personajes en formato JSON.
@@ -11,12 +12,55 @@ public interface PersonatgesDAO {
 
     /**
      * Lee todos los personajes almacenados en el archivo JSON.
+     * Como en findByKey, los personajes se pueden modificar sin cambiar los guardados hasta que se actualicen.
      *
      * @return Una lista de objetos Personatge que representa los personajes leídos.
      * @throws PersistenceException Si ocurre algún error durante la lectura del archivo.
      */
     ArrayList<Personatge> readPersonatges() throws PersistenceException;
 
+    /**
+     * Busca un personaje por su clave, formada por el nombre del personaje y el de su jugador.
+     * El personaje es de la subclase que corresponde a su clase (ver PersonatgeFactory), listo para combatir,
+     * y se puede modificar sin cambiar el personaje guardado hasta que se actualice.
+     *
+     * @param name   El nombre del personaje.
+     * @param player El nombre del jugador.
+     * @return El personaje encontrado, o null si no existe.
+     * @throws PersistenceException Si ocurre algún error durante la búsqueda.
+     */
+    Personatge findByKey(String name, String player) throws PersistenceException;
+
+    /**
+     * Busca los personajes cuyo nombre de jugador contiene el texto indicado.
+     *
+     * @param player Texto a buscar en el nombre del jugador.
+     * @return Una lista con los personajes encontrados, en el mismo orden que readPersonatges.
+     * @throws PersistenceException Si ocurre algún error durante la búsqueda.
+     */
+    ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException;
+
+    /**
+     * Lee una página de personajes.
+     *
+     * @param cursor   Cursor de la página devuelto por la lectura anterior, o null para la primera página.
+     * @param pageSize Número máximo de personajes de la página.
+     * @return La página de personajes, en el mismo orden que readPersonatges.
+     * @throws PersistenceException Si ocurre algún error durante la lectura o el cursor no es válido.
+     */
+    Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException;
+
+    /**
+     * Busca una página de los personajes cuyo nombre de jugador contiene el texto indicado.
+     *
+     * @param player   Texto a buscar en el nombre del jugador.
+     * @param cursor   Cursor de la página devuelto por la búsqueda anterior, o null para la primera página.
+     * @param pageSize Número máximo de personajes de la página.
+     * @return La página de personajes encontrados.
+     * @throws PersistenceException Si ocurre algún error durante la búsqueda o el cursor no es válido.
+     */
+    Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException;
+
     /**
      * Crea un nuevo personaje y lo guarda en el archivo JSON.
      *
@@ -41,6 +85,52 @@ public interface PersonatgesDAO {
      */
     void updateCharacter(Personatge p) throws PersistenceException;
 
+    /**
+     * Crea varios personajes nuevos y los guarda de una sola vez.
+     *
+     * @param personatges Los personajes que se desean crear y guardar.
+     * @throws PersistenceException Si ocurre algún error durante la operación de creación y guardado.
+     */
+    void createPersonatges(Collection<? extends Personatge> personatges) throws PersistenceException;
+
+    /**
+     * Elimina varios personajes existentes de una sola vez.
+     *
+     * @param personatges Los personajes que se desean eliminar.
+     * @throws PersistenceException Si ocurre algún error durante la operación de eliminación.
+     */
+    void deletePersonatges(Collection<? extends Personatge> personatges) throws PersistenceException;
+
+    /**
+     * Actualiza los datos de varios personajes existentes de una sola vez.
+     * Solo se guardan los atributos modificados de los personajes modificados (ver Personatge.getCanvis);
+     * después de guardarlos, los personajes quedan sin cambios por guardar.
+     *
+     * @param personatges Los personajes que se desean actualizar.
+     * @throws PersistenceException Si ocurre algún error durante la operación de actualización.
+     */
+    void updateCharacters(Collection<? extends Personatge> personatges) throws PersistenceException;
+
+    /**
+     * Obtiene el número de personajes almacenados. Por defecto se leen todos los personajes.
+     *
+     * @return El número de personajes.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    default int countPersonatges() throws PersistenceException {
+        return readPersonatges().size();
+    }
+
+    /**
+     * Indica si el DAO tiene todos los personajes en memoria (o siempre los lee todos de golpe), de forma que
+     * guardar una versión inmutable de todos ellos (ver PersonatgesRoster) no añade lecturas ni otra copia completa
+     * del almacenamiento. Los DAO que leen los personajes por partes devuelven false.
+     *
+     * @return true si las lecturas ya cargan todos los personajes en memoria.
+     */
+    default boolean isInMemory() {
+        return false;
+    }
 }
 
 
@@ -0,0 +1,45 @@
+package persistence;
+
+/**
+ * Clase que proporciona la instancia de PersonatgesDAO local compartida por toda la aplicación,
+ * de forma que todos los gestores trabajen sobre los mismos personajes en memoria.
+ *
+ * El tipo de almacenamiento local se escoge con la propiedad del sistema {@value #STORAGE_PROPERTY}
+ * (por ejemplo {@code -Dlsrpg.characters.storage=journal}). Por defecto se utiliza el archivo JSON.
+ */
+public final class PersonatgesDAOFactory {
+
+    public static final String STORAGE_PROPERTY = "lsrpg.characters.storage";
+
+    public static final String JSON_STORAGE = "json";
+    public static final String JOURNAL_STORAGE = "journal";
+    public static final String BINARY_STORAGE = "binary";
+    public static final String SHARDED_STORAGE = "sharded";
+
+    private static PersonatgesDAO localDAO;
+
+    private PersonatgesDAOFactory() {
+    }
+
+    /**
+     * Obtiene el PersonatgesDAO local compartido, creándolo la primera vez según el tipo de almacenamiento configurado.
+     *
+     * @return La instancia compartida de PersonatgesDAO local.
+     */
+    public static synchronized PersonatgesDAO getLocalDAO() {
+        if (localDAO == null) {
+            String storage = System.getProperty(STORAGE_PROPERTY, JSON_STORAGE);
+
+            if (storage.equals(JOURNAL_STORAGE)) {
+                localDAO = new JournalPersonatgesDAO();
+            } else if (storage.equals(BINARY_STORAGE)) {
+                localDAO = new BinaryPersonatgesDAO();
+            } else if (storage.equals(SHARDED_STORAGE)) {
+                localDAO = new ShardedPersonatgesDAO();
+            } else {
+                localDAO = new JSONPersonatgesDAO();
+            }
+        }
+        return localDAO;
+    }
+}
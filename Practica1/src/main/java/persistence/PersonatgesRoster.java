@@ -0,0 +1,247 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * PersonatgesDAO que responde las lecturas desde una versión inmutable de los personajes (ver PersonatgesSnapshot)
+ * en lugar de consultar otro PersonatgesDAO.
+ *
+ * Las modificaciones se guardan en el PersonatgesDAO y después se publica una versión nueva de golpe, de forma que
+ * las lecturas nunca esperan a que acabe una escritura y siempre ven una versión completa. Las modificaciones se
+ * hacen de una en una para que las versiones sigan el mismo orden que el almacenamiento. Quien necesita ver la misma
+ * versión en varias lecturas (como las páginas de un listado) la obtiene con view().
+ *
+ * Solo se guardan versiones de los PersonatgesDAO que ya tienen todos los personajes en memoria
+ * (ver PersonatgesDAO.isInMemory). Si el PersonatgesDAO ya guarda sus personajes como versiones (ver SnapshotSource),
+ * como el archivo JSON y el diario, se leen esas mismas versiones en lugar de tener otra copia de los personajes
+ * con su propio índice. Con los que leen los personajes por partes (el archivo binario, el B+tree,
+ * la base de datos o los archivos por jugador) las lecturas se hacen directamente en el PersonatgesDAO, para no
+ * cargar todos los personajes ni tener otra copia de ellos; solo las modificaciones se siguen haciendo de una en una.
+ *
+ * Todos los gestores que usan el mismo PersonatgesDAO comparten el mismo PersonatgesRoster, que se obtiene con
+ * {@link #of(PersonatgesDAO)}. Los personajes de la API se vuelven a leer cuando caduca el tiempo de validez.
+ * La experiencia que ganan los personajes se suma en su XpRegistry, que la guarda aquí en segundo plano.
+ */
+public final class PersonatgesRoster implements PersonatgesDAO, PersonatgesView {
+    private static final IdentityHashMap<PersonatgesDAO, PersonatgesRoster> rosters = new IdentityHashMap<>();
+    private static PersonatgesRoster cloudRoster;
+
+    private final PersonatgesDAO personatgesDAO;
+    private final long ttlMillis;
+    private final boolean versions;
+    //Versiones del PersonatgesDAO, o null si las versiones se guardan aquí
+    private final SnapshotSource source;
+    private final Object escriptura;
+    private final XpRegistry xpRegistry;
+
+    private volatile PersonatgesSnapshot snapshot;
+    private volatile long loadedAt;
+
+    /**
+     * Obtiene el PersonatgesRoster compartido de un PersonatgesDAO, creándolo la primera vez.
+     * Las versiones no caducan, así que todas las modificaciones deben pasar por el PersonatgesRoster.
+     *
+     * @param personatgesDAO PersonatgesDAO donde se guardan los personajes.
+     * @return El PersonatgesRoster de ese PersonatgesDAO.
+     */
+    public static synchronized PersonatgesRoster of(PersonatgesDAO personatgesDAO) {
+        PersonatgesRoster roster = rosters.get(personatgesDAO);
+        if (roster == null) {
+            roster = new PersonatgesRoster(personatgesDAO, Long.MAX_VALUE);
+            rosters.put(personatgesDAO, roster);
+        }
+        return roster;
+    }
+
+    /**
+     * Obtiene el PersonatgesRoster compartido de los personajes de la API, con el mismo tiempo de validez
+     * que el catálogo de monstruos.
+     *
+     * @return El PersonatgesRoster de la API.
+     * @throws PersistenceException Si ocurre un error al crear la conexión con la API.
+     */
+    public static synchronized PersonatgesRoster cloud() throws PersistenceException {
+        if (cloudRoster == null) {
+            long ttl = Long.getLong(MonstresCache.TTL_PROPERTY, MonstresCache.DEFAULT_TTL_SECONDS);
+            cloudRoster = new PersonatgesRoster(new PersonatgesAPI(), ttl * 1000);
+        }
+        return cloudRoster;
+    }
+
+    /**
+     * Constructor de la clase PersonatgesRoster.
+     *
+     * @param personatgesDAO PersonatgesDAO donde se guardan los personajes.
+     * @param ttlMillis      Tiempo tras el cual se vuelven a leer los personajes del PersonatgesDAO.
+     */
+    PersonatgesRoster(PersonatgesDAO personatgesDAO, long ttlMillis) {
+        this.personatgesDAO = personatgesDAO;
+        this.ttlMillis = ttlMillis;
+        this.versions = personatgesDAO.isInMemory();
+        this.source = personatgesDAO instanceof SnapshotSource ? (SnapshotSource) personatgesDAO : null;
+        this.escriptura = new Object();
+        this.xpRegistry = new XpRegistry(this);
+    }
+
+    /**
+     * Obtiene el registro de experiencia de los personajes de este PersonatgesRoster.
+     *
+     * @return El XpRegistry compartido por todos los que usan este PersonatgesRoster.
+     */
+    public XpRegistry xpRegistry() {
+        return xpRegistry;
+    }
+
+    /**
+     * Obtiene los personajes para un listado: la versión actual si se guardan versiones, que no cambia aunque
+     * después se modifiquen los personajes, o si no este mismo PersonatgesRoster, que lee del PersonatgesDAO.
+     *
+     * @return Los personajes a leer.
+     * @throws PersistenceException Si ocurre algún error durante la lectura de los personajes.
+     */
+    public PersonatgesView view() throws PersistenceException {
+        return versions ? snapshot() : this;
+    }
+
+    @Override
+    public int size() throws PersistenceException {
+        return countPersonatges();
+    }
+
+    @Override
+    public int countPersonatges() throws PersistenceException {
+        return versions ? snapshot().size() : personatgesDAO.countPersonatges();
+    }
+
+    @Override
+    public boolean isInMemory() {
+        return versions;
+    }
+
+    /**
+     * Obtiene la versión actual de los personajes. Solo la primera vez (o cuando caduca) se leen los personajes
+     * del PersonatgesDAO; el resto de veces no hay ningún bloqueo.
+     */
+    private PersonatgesSnapshot snapshot() throws PersistenceException {
+        if (source != null) {
+            return source.snapshot();
+        }
+        PersonatgesSnapshot actual = snapshot;
+        if (actual != null && System.currentTimeMillis() - loadedAt < ttlMillis) {
+            return actual;
+        }
+        synchronized (escriptura) {
+            if (snapshot == null || System.currentTimeMillis() - loadedAt >= ttlMillis) {
+                load();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Lee los personajes del PersonatgesDAO y publica una versión con ellos. Se llama con el bloqueo de escritura.
+     */
+    private void load() throws PersistenceException {
+        PersonatgesSnapshot anterior = snapshot;
+        PersonatgesSnapshot nou = PersonatgesSnapshot.of(personatgesDAO.readPersonatges());
+        //La versión leída continúa la numeración de la anterior
+        if (anterior != null) {
+            nou = nou.withVersion(anterior.getVersion() + 1);
+            xpRegistry.reloaded();
+        }
+        loadedAt = System.currentTimeMillis();
+        snapshot = nou;
+    }
+
+    @Override
+    public ArrayList<Personatge> readPersonatges() throws PersistenceException {
+        return versions ? snapshot().readPersonatges() : personatgesDAO.readPersonatges();
+    }
+
+    @Override
+    public Personatge findByKey(String name, String player) throws PersistenceException {
+        return versions ? snapshot().findByKey(name, player) : personatgesDAO.findByKey(name, player);
+    }
+
+    @Override
+    public ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException {
+        return versions ? snapshot().searchByPlayer(player) : personatgesDAO.searchByPlayer(player);
+    }
+
+    @Override
+    public Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        if (versions) {
+            return snapshot().readPersonatges(cursor, pageSize);
+        }
+        return personatgesDAO.readPersonatges(cursor, pageSize);
+    }
+
+    @Override
+    public Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException {
+        if (versions) {
+            return snapshot().searchByPlayer(player, cursor, pageSize);
+        }
+        return personatgesDAO.searchByPlayer(player, cursor, pageSize);
+    }
+
+    @Override
+    public void createPersonatge(Personatge p) throws PersistenceException {
+        createPersonatges(List.of(p));
+    }
+
+    @Override
+    public void deletePersonatge(Personatge p) throws PersistenceException {
+        deletePersonatges(List.of(p));
+    }
+
+    @Override
+    public void updateCharacter(Personatge p) throws PersistenceException {
+        updateCharacters(List.of(p));
+    }
+
+    @Override
+    public void createPersonatges(Collection<? extends Personatge> nous) throws PersistenceException {
+        synchronized (escriptura) {
+            if (!versions || source != null) {
+                personatgesDAO.createPersonatges(nous);
+                return;
+            }
+            PersonatgesSnapshot actual = snapshot();
+            personatgesDAO.createPersonatges(nous);
+            snapshot = actual.withCreated(nous);
+        }
+    }
+
+    @Override
+    public void deletePersonatges(Collection<? extends Personatge> eliminats) throws PersistenceException {
+        synchronized (escriptura) {
+            if (versions && source == null) {
+                PersonatgesSnapshot actual = snapshot();
+                personatgesDAO.deletePersonatges(eliminats);
+                snapshot = actual.withDeleted(eliminats);
+            } else {
+                personatgesDAO.deletePersonatges(eliminats);
+            }
+            xpRegistry.forget(eliminats);
+        }
+    }
+
+    @Override
+    public void updateCharacters(Collection<? extends Personatge> modificats) throws PersistenceException {
+        synchronized (escriptura) {
+            if (!versions || source != null) {
+                personatgesDAO.updateCharacters(modificats);
+                return;
+            }
+            //La versión nueva se crea antes de guardar, porque al guardar los personajes dejan de tener cambios
+            PersonatgesSnapshot nou = snapshot().withUpdated(modificats);
+            personatgesDAO.updateCharacters(modificats);
+            snapshot = nou;
+        }
+    }
+}
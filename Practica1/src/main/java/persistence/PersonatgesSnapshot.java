@@ -0,0 +1,344 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+import business.entities.personatge.PersonatgeFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versión inmutable de todos los personajes guardados, que se puede leer desde varios hilos sin bloqueos.
+ *
+ * Los personajes se guardan en mapas persistentes (ver PersistentTreeMap): crear, modificar o eliminar personajes
+ * crea una versión nueva que comparte casi todo con la anterior, y quien está leyendo la anterior (por ejemplo,
+ * pasando las páginas de un listado) la sigue viendo igual. Los personajes se ordenan como en el almacenamiento
+ * del que se leyeron y los nuevos se añaden al final. Las lecturas devuelven personajes nuevos, que se pueden
+ * modificar sin cambiar la versión.
+ *
+ * Las búsquedas por jugador utilizan un índice de trigramas como PlayerIndex, guardado también en mapas persistentes
+ * para que cada versión tenga su propio índice sin copiarlo.
+ */
+public final class PersonatgesSnapshot implements PersonatgesView {
+    private final long version;
+    private final long nextSeq;
+    //Personajes por orden de inserción, índice por clave y personajes de cada jugador por orden de inserción
+    private final PersistentTreeMap<Long, Personatge> ordre;
+    private final PersistentTreeMap<PersonatgeKey, Long> claus;
+    private final PersistentTreeMap<String, PersistentTreeMap<Long, Personatge>> perPlayer;
+    //Jugadores que contienen cada trigrama (ver PlayerIndex)
+    private final PersistentTreeMap<String, PersistentTreeMap<String, Boolean>> trigrams;
+
+    private PersonatgesSnapshot(long version, long nextSeq, PersistentTreeMap<Long, Personatge> ordre,
+                                PersistentTreeMap<PersonatgeKey, Long> claus,
+                                PersistentTreeMap<String, PersistentTreeMap<Long, Personatge>> perPlayer,
+                                PersistentTreeMap<String, PersistentTreeMap<String, Boolean>> trigrams) {
+        this.version = version;
+        this.nextSeq = nextSeq;
+        this.ordre = ordre;
+        this.claus = claus;
+        this.perPlayer = perPlayer;
+        this.trigrams = trigrams;
+    }
+
+    /**
+     * Crea la primera versión con los personajes leídos del almacenamiento.
+     *
+     * @param personatges Los personajes, en el orden del almacenamiento.
+     * @return La versión con los personajes.
+     */
+    static PersonatgesSnapshot of(Collection<? extends Personatge> personatges) {
+        PersonatgesSnapshot buida = new PersonatgesSnapshot(0, 0, PersistentTreeMap.empty(), PersistentTreeMap.empty(),
+                PersistentTreeMap.empty(), PersistentTreeMap.empty());
+        return buida.withCreated(personatges);
+    }
+
+    /**
+     * Obtiene el número de versión. Cada modificación publica una versión con un número mayor.
+     *
+     * @return El número de versión.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Obtiene el número de personajes de la versión.
+     *
+     * @return El número de personajes.
+     */
+    @Override
+    public int size() {
+        return ordre.size();
+    }
+
+    /**
+     * Obtiene todos los personajes de la versión.
+     *
+     * @return Una lista nueva con una copia de cada personaje.
+     */
+    public ArrayList<Personatge> readPersonatges() {
+        return copies(values());
+    }
+
+    /**
+     * Obtiene los personajes de la propia versión, sin copiarlos, para escribirlos o recorrerlos.
+     * No se deben modificar.
+     */
+    ArrayList<Personatge> values() {
+        ArrayList<Personatge> llista = new ArrayList<>(ordre.size());
+        for (Map.Entry<Long, Personatge> entry : ordre) {
+            llista.add(entry.getValue());
+        }
+        return llista;
+    }
+
+    /**
+     * Busca un personaje por su clave. Como en PersonatgesDAO.findByKey, se devuelve un personaje nuevo
+     * que se puede modificar (por ejemplo, en un combate) sin cambiar la versión.
+     *
+     * @param name   El nombre del personaje.
+     * @param player El nombre del jugador.
+     * @return Una copia del personaje, o null si no existe.
+     */
+    @Override
+    public Personatge findByKey(String name, String player) {
+        Long seq = claus.get(new PersonatgeKey(name, player));
+        return seq == null ? null : PersonatgeFactory.copy(ordre.get(seq));
+    }
+
+    /**
+     * Indica si la versión tiene un personaje con la clave indicada.
+     */
+    boolean contains(PersonatgeKey clau) {
+        return claus.get(clau) != null;
+    }
+
+    /**
+     * Busca los personajes cuyo nombre de jugador contiene el texto indicado.
+     *
+     * @param text Texto a buscar (distingue mayúsculas y minúsculas, como String.contains).
+     * @return Una copia de los personajes encontrados, en el orden de la versión.
+     */
+    public ArrayList<Personatge> searchByPlayer(String text) {
+        return copies(matches(text));
+    }
+
+    /**
+     * Busca los personajes cuyo nombre de jugador contiene el texto indicado, sin copiarlos. No se deben modificar.
+     */
+    ArrayList<Personatge> matches(String text) {
+        //Solo se miran los jugadores que tienen todos los trigramas del texto
+        ArrayList<Map.Entry<Long, Personatge>> trobats = new ArrayList<>();
+        for (String player : candidates(text)) {
+            if (player.contains(text)) {
+                for (Map.Entry<Long, Personatge> entry : perPlayer.get(player)) {
+                    trobats.add(entry);
+                }
+            }
+        }
+        trobats.sort(Map.Entry.comparingByKey());
+
+        ArrayList<Personatge> llista = new ArrayList<>(trobats.size());
+        for (Map.Entry<Long, Personatge> entry : trobats) {
+            llista.add(entry.getValue());
+        }
+        return llista;
+    }
+
+    /**
+     * Lee una página de todos los personajes de la versión. Se llega al primer personaje de la página sin recorrer
+     * los anteriores.
+     *
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de personajes de la página.
+     * @return La página de personajes.
+     * @throws PersistenceException Si el cursor no es válido.
+     */
+    @Override
+    public Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        int offset = Page.offset(cursor);
+        Page.checkPageSize(pageSize);
+        ArrayList<Personatge> items = new ArrayList<>(pageSize);
+        Iterator<Map.Entry<Long, Personatge>> it = ordre.iterator(offset);
+        while (items.size() < pageSize && it.hasNext()) {
+            items.add(PersonatgeFactory.copy(it.next().getValue()));
+        }
+        return new Page<>(items, offset, it.hasNext() ? Page.cursor(offset + items.size()) : null);
+    }
+
+    /**
+     * Lee una página de los personajes cuyo nombre de jugador contiene el texto indicado.
+     *
+     * @param text     Texto a buscar.
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de personajes de la página.
+     * @return La página de personajes.
+     * @throws PersistenceException Si el cursor no es válido.
+     */
+    @Override
+    public Page<Personatge> searchByPlayer(String text, String cursor, int pageSize) throws PersistenceException {
+        return copies(Page.of(matches(text), cursor, pageSize));
+    }
+
+    /**
+     * Copia los personajes de una página.
+     */
+    static Page<Personatge> copies(Page<Personatge> page) {
+        return new Page<>(copies(page.getItems()), page.getOffset(), page.getNextCursor());
+    }
+
+    /**
+     * Crea una versión con los mismos personajes y el número de versión indicado.
+     */
+    PersonatgesSnapshot withVersion(long version) {
+        return new PersonatgesSnapshot(version, nextSeq, ordre, claus, perPlayer, trigrams);
+    }
+
+    /**
+     * Crea la versión siguiente con los personajes nuevos añadidos al final.
+     */
+    PersonatgesSnapshot withCreated(Collection<? extends Personatge> nous) {
+        PersistentTreeMap<Long, Personatge> ordre = this.ordre;
+        PersistentTreeMap<PersonatgeKey, Long> claus = this.claus;
+        PersistentTreeMap<String, PersistentTreeMap<Long, Personatge>> perPlayer = this.perPlayer;
+        PersistentTreeMap<String, PersistentTreeMap<String, Boolean>> trigrams = this.trigrams;
+        long seq = nextSeq;
+
+        for (Personatge p : nous) {
+            PersonatgeKey clau = PersonatgeKey.of(p);
+            if (claus.get(clau) != null) {
+                continue;
+            }
+            Personatge copia = PersonatgeFactory.copy(p);
+            if (perPlayer.get(p.getPlayer()) == null) {
+                //Primer personaje del jugador: indexamos sus trigramas
+                for (String trigram : PlayerIndex.trigramsOf(p.getPlayer())) {
+                    trigrams = trigrams.put(trigram, playersOf(trigrams, trigram).put(p.getPlayer(), Boolean.TRUE));
+                }
+            }
+            ordre = ordre.put(seq, copia);
+            claus = claus.put(clau, seq);
+            perPlayer = perPlayer.put(p.getPlayer(), personatgesOf(perPlayer, p.getPlayer()).put(seq, copia));
+            seq++;
+        }
+        return new PersonatgesSnapshot(version + 1, seq, ordre, claus, perPlayer, trigrams);
+    }
+
+    /**
+     * Crea la versión siguiente sin los personajes eliminados.
+     */
+    PersonatgesSnapshot withDeleted(Collection<? extends Personatge> eliminats) {
+        PersistentTreeMap<Long, Personatge> ordre = this.ordre;
+        PersistentTreeMap<PersonatgeKey, Long> claus = this.claus;
+        PersistentTreeMap<String, PersistentTreeMap<Long, Personatge>> perPlayer = this.perPlayer;
+        PersistentTreeMap<String, PersistentTreeMap<String, Boolean>> trigrams = this.trigrams;
+
+        for (Personatge p : eliminats) {
+            PersonatgeKey clau = PersonatgeKey.of(p);
+            Long seq = claus.get(clau);
+            if (seq == null) {
+                continue;
+            }
+            ordre = ordre.remove(seq);
+            claus = claus.remove(clau);
+            PersistentTreeMap<Long, Personatge> delJugador = personatgesOf(perPlayer, p.getPlayer()).remove(seq);
+            if (delJugador.size() > 0) {
+                perPlayer = perPlayer.put(p.getPlayer(), delJugador);
+                continue;
+            }
+
+            //Era el último personaje del jugador: quitamos el jugador de sus trigramas
+            perPlayer = perPlayer.remove(p.getPlayer());
+            for (String trigram : PlayerIndex.trigramsOf(p.getPlayer())) {
+                PersistentTreeMap<String, Boolean> players = playersOf(trigrams, trigram).remove(p.getPlayer());
+                trigrams = players.size() == 0 ? trigrams.remove(trigram) : trigrams.put(trigram, players);
+            }
+        }
+        return new PersonatgesSnapshot(version + 1, nextSeq, ordre, claus, perPlayer, trigrams);
+    }
+
+    /**
+     * Crea la versión siguiente con los atributos modificados de los personajes (ver Personatge.getCanvis).
+     * Los personajes que no existen o no se han modificado no cambian.
+     */
+    PersonatgesSnapshot withUpdated(Collection<? extends Personatge> modificats) {
+        PersistentTreeMap<Long, Personatge> ordre = this.ordre;
+        PersistentTreeMap<String, PersistentTreeMap<Long, Personatge>> perPlayer = this.perPlayer;
+
+        for (Personatge p : modificats) {
+            Long seq = claus.get(PersonatgeKey.of(p));
+            if (seq == null || !p.isModificat()) {
+                continue;
+            }
+            Personatge nou = PersonatgeFactory.merge(ordre.get(seq), p);
+            ordre = ordre.put(seq, nou);
+            perPlayer = perPlayer.put(p.getPlayer(), personatgesOf(perPlayer, p.getPlayer()).put(seq, nou));
+        }
+        return new PersonatgesSnapshot(version + 1, nextSeq, ordre, claus, perPlayer, trigrams);
+    }
+
+    /**
+     * Obtiene los jugadores que pueden contener el texto: los que tienen todos sus trigramas, como en PlayerIndex.
+     * Con textos de menos de tres caracteres no hay trigramas y se miran todos los jugadores.
+     */
+    private ArrayList<String> candidates(String text) {
+        ArrayList<String> candidats = new ArrayList<>();
+        if (text.length() < PlayerIndex.N) {
+            for (Map.Entry<String, PersistentTreeMap<Long, Personatge>> jugador : perPlayer) {
+                candidats.add(jugador.getKey());
+            }
+            return candidats;
+        }
+
+        //Empezamos por el trigrama con menos jugadores y vamos descartando
+        ArrayList<PersistentTreeMap<String, Boolean>> conjunts = new ArrayList<>();
+        PersistentTreeMap<String, Boolean> menor = null;
+        for (String trigram : PlayerIndex.trigramsOf(text)) {
+            PersistentTreeMap<String, Boolean> players = trigrams.get(trigram);
+            if (players == null) {
+                return candidats;
+            }
+            conjunts.add(players);
+            if (menor == null || players.size() < menor.size()) {
+                menor = players;
+            }
+        }
+
+        for (Map.Entry<String, Boolean> jugador : menor) {
+            boolean totes = true;
+            for (PersistentTreeMap<String, Boolean> players : conjunts) {
+                if (players.get(jugador.getKey()) == null) {
+                    totes = false;
+                    break;
+                }
+            }
+            if (totes) {
+                candidats.add(jugador.getKey());
+            }
+        }
+        return candidats;
+    }
+
+    private static ArrayList<Personatge> copies(List<Personatge> personatges) {
+        ArrayList<Personatge> llista = new ArrayList<>(personatges.size());
+        for (Personatge p : personatges) {
+            llista.add(PersonatgeFactory.copy(p));
+        }
+        return llista;
+    }
+
+    private static PersistentTreeMap<String, Boolean> playersOf(
+            PersistentTreeMap<String, PersistentTreeMap<String, Boolean>> trigrams, String trigram) {
+        PersistentTreeMap<String, Boolean> players = trigrams.get(trigram);
+        return players == null ? PersistentTreeMap.empty() : players;
+    }
+
+    private static PersistentTreeMap<Long, Personatge> personatgesOf(
+            PersistentTreeMap<String, PersistentTreeMap<Long, Personatge>> perPlayer, String player) {
+        PersistentTreeMap<Long, Personatge> personatges = perPlayer.get(player);
+        return personatges == null ? PersistentTreeMap.empty() : personatges;
+    }
+}
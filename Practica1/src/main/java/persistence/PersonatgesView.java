@@ -0,0 +1,49 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+
+/**
+ * Lecturas de personajes que utilizan los listados: una versión inmutable de los personajes (ver PersonatgesSnapshot)
+ * o directamente el PersonatgesDAO, según lo que devuelva PersonatgesRoster.view().
+ */
+public interface PersonatgesView {
+
+    /**
+     * Obtiene el número de personajes.
+     *
+     * @return El número de personajes.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    int size() throws PersistenceException;
+
+    /**
+     * Busca un personaje por su clave.
+     *
+     * @param name   El nombre del personaje.
+     * @param player El nombre del jugador.
+     * @return Un personaje nuevo que se puede modificar, o null si no existe.
+     * @throws PersistenceException Si ocurre algún error durante la lectura.
+     */
+    Personatge findByKey(String name, String player) throws PersistenceException;
+
+    /**
+     * Lee una página de todos los personajes.
+     *
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de personajes de la página.
+     * @return La página de personajes.
+     * @throws PersistenceException Si ocurre algún error durante la lectura o el cursor no es válido.
+     */
+    Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException;
+
+    /**
+     * Lee una página de los personajes cuyo nombre de jugador contiene el texto indicado.
+     *
+     * @param player   Texto a buscar en el nombre del jugador.
+     * @param cursor   Cursor de la página, o null para la primera.
+     * @param pageSize Número máximo de personajes de la página.
+     * @return La página de personajes encontrados.
+     * @throws PersistenceException Si ocurre algún error durante la búsqueda o el cursor no es válido.
+     */
+    Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException;
+}
@@ -0,0 +1,160 @@
+package persistence;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice invertido de trigramas sobre los nombres de jugador, para buscar personajes cuyo jugador
+ * contiene un texto sin recorrer todos los personajes.
+ *
+ * Cada trigrama (grupo de tres caracteres seguidos) apunta a los nombres de jugador que lo contienen,
+ * y cada nombre de jugador a las claves de sus personajes. Una búsqueda solo mira los jugadores que
+ * tienen todos los trigramas del texto buscado y comprueba que realmente lo contienen.
+ * El índice se mantiene al crear y eliminar personajes; no es seguro para varios hilos.
+ */
+final class PlayerIndex {
+    static final int N = 3;
+
+    private final HashMap<String, HashSet<String>> trigrams;
+    //Personajes de cada jugador, con su orden de inserción
+    private final HashMap<String, LinkedHashMap<PersonatgeKey, Long>> perPlayer;
+    private long seq;
+
+    /**
+     * Constructor de la clase PlayerIndex. Crea un índice vacío.
+     */
+    PlayerIndex() {
+        trigrams = new HashMap<>();
+        perPlayer = new HashMap<>();
+    }
+
+    /**
+     * Crea un índice con las claves indicadas, manteniendo su orden.
+     *
+     * @param claus Claves de los personajes.
+     * @return El índice construido.
+     */
+    static PlayerIndex of(Iterable<PersonatgeKey> claus) {
+        PlayerIndex index = new PlayerIndex();
+        for (PersonatgeKey clau : claus) {
+            index.add(clau);
+        }
+        return index;
+    }
+
+    /**
+     * Añade un personaje al índice. Los resultados de las búsquedas siguen el orden en que se añaden.
+     *
+     * @param clau Clave del personaje.
+     */
+    void add(PersonatgeKey clau) {
+        LinkedHashMap<PersonatgeKey, Long> postings = perPlayer.get(clau.getPlayer());
+        if (postings == null) {
+            //Primer personaje del jugador: indexamos sus trigramas
+            postings = new LinkedHashMap<>();
+            perPlayer.put(clau.getPlayer(), postings);
+            for (String trigram : trigramsOf(clau.getPlayer())) {
+                trigrams.computeIfAbsent(trigram, t -> new HashSet<>()).add(clau.getPlayer());
+            }
+        }
+        postings.putIfAbsent(clau, seq++);
+    }
+
+    /**
+     * Elimina un personaje del índice.
+     *
+     * @param clau Clave del personaje.
+     */
+    void remove(PersonatgeKey clau) {
+        LinkedHashMap<PersonatgeKey, Long> postings = perPlayer.get(clau.getPlayer());
+        if (postings == null || postings.remove(clau) == null || !postings.isEmpty()) {
+            return;
+        }
+
+        //Era el último personaje del jugador: quitamos el jugador de sus trigramas
+        perPlayer.remove(clau.getPlayer());
+        for (String trigram : trigramsOf(clau.getPlayer())) {
+            HashSet<String> players = trigrams.get(trigram);
+            players.remove(clau.getPlayer());
+            if (players.isEmpty()) {
+                trigrams.remove(trigram);
+            }
+        }
+    }
+
+    /**
+     * Busca los personajes cuyo nombre de jugador contiene el texto indicado.
+     *
+     * @param text Texto a buscar (distingue mayúsculas y minúsculas, como String.contains).
+     * @return Las claves de los personajes encontrados, en el orden en que se añadieron al índice.
+     */
+    List<PersonatgeKey> search(String text) {
+        ArrayList<Map.Entry<PersonatgeKey, Long>> trobats = new ArrayList<>();
+        for (String player : candidates(text)) {
+            if (player.contains(text)) {
+                trobats.addAll(perPlayer.get(player).entrySet());
+            }
+        }
+        trobats.sort(Map.Entry.comparingByValue(Comparator.naturalOrder()));
+
+        ArrayList<PersonatgeKey> claus = new ArrayList<>(trobats.size());
+        for (Map.Entry<PersonatgeKey, Long> entry : trobats) {
+            claus.add(entry.getKey());
+        }
+        return claus;
+    }
+
+    /**
+     * Obtiene los jugadores que pueden contener el texto: los que tienen todos sus trigramas.
+     * Con textos de menos de tres caracteres no hay trigramas y se miran todos los jugadores.
+     */
+    private Iterable<String> candidates(String text) {
+        if (text.length() < N) {
+            return perPlayer.keySet();
+        }
+
+        //Empezamos por el trigrama con menos jugadores y vamos descartando
+        HashSet<String> menor = null;
+        HashSet<String> grams = trigramsOf(text);
+        for (String trigram : grams) {
+            HashSet<String> players = trigrams.get(trigram);
+            if (players == null) {
+                return List.of();
+            }
+            if (menor == null || players.size() < menor.size()) {
+                menor = players;
+            }
+        }
+
+        ArrayList<String> candidats = new ArrayList<>();
+        for (String player : menor) {
+            boolean totes = true;
+            for (String trigram : grams) {
+                if (!trigrams.get(trigram).contains(player)) {
+                    totes = false;
+                    break;
+                }
+            }
+            if (totes) {
+                candidats.add(player);
+            }
+        }
+        return candidats;
+    }
+
+    /**
+     * Obtiene los trigramas distintos de un texto.
+     */
+    static HashSet<String> trigramsOf(String text) {
+        HashSet<String> grams = new HashSet<>();
+        for (int i = 0; i + N <= text.length(); i++) {
+            grams.add(text.substring(i, i + N));
+        }
+        return grams;
+    }
+}
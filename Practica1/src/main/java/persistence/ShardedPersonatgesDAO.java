@@ -0,0 +1,565 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Implementación de PersonatgesDAO que reparte los personajes en varios archivos JSON (shards) según su jugador.
+ *
+ * Todos los personajes de un jugador están en el mismo archivo, elegido con el hash del nombre del jugador,
+ * de forma que leer o modificar los personajes de un jugador solo carga y reescribe su archivo.
+ * Cada archivo se gestiona con su propio JSONPersonatgesDAO y solo se carga la primera vez que se necesita.
+ *
+ * El número de archivos se decide al crear el directorio con la propiedad del sistema {@value #SHARDS_PROPERTY}
+ * y se guarda en el archivo {@value #MANIFEST} del directorio; después se utiliza siempre ese número, y si falta
+ * alguno de los archivos no se abre el directorio (los personajes de ese archivo parecerían no existir y se
+ * podrían crear de nuevo). Si el directorio no existe, se crea repartiendo los personajes del archivo JSON
+ * de personajes.
+ *
+ * El manifiesto también guarda cuántos personajes hay en cada archivo, junto con el tamaño y la fecha de
+ * modificación del archivo cuando se contaron, para saber el número total de personajes sin cargar los archivos.
+ * Si un archivo ha cambiado desde entonces (por ejemplo, porque no se pudo guardar el manifiesto), se carga
+ * para volver a contarlo. Las escrituras de cada archivo se hacen de una en una, para que el número guardado
+ * corresponda siempre al contenido del archivo.
+ * Las operaciones con personajes de varios jugadores no son atómicas entre archivos distintos.
+ */
+public class ShardedPersonatgesDAO implements PersonatgesDAO {
+    public static final String RUTA = "src/data/personatges";
+    public static final String SHARDS_PROPERTY = "lsrpg.characters.shards";
+    public static final int DEFAULT_SHARDS = 16;
+    public static final String MANIFEST = "manifest.json";
+
+    private final Path directory;
+    private final String rutaJson;
+    private final int defaultShards;
+
+    private JSONPersonatgesDAO[] shards;
+    //Bloqueo de las escrituras de cada archivo
+    private Object[] locks;
+    //Número de personajes de cada archivo, o -1 si no se conoce sin cargarlo
+    private int[] counts;
+    private Manifest manifest;
+
+    /**
+     * Constructor de la clase ShardedPersonatgesDAO con las rutas por defecto.
+     */
+    public ShardedPersonatgesDAO() {
+        this(RUTA, JsonFiles.dataFile(JSONPersonatgesDAO.RUTA), Integer.getInteger(SHARDS_PROPERTY, DEFAULT_SHARDS));
+    }
+
+    /**
+     * Constructor de la clase ShardedPersonatgesDAO.
+     *
+     * @param ruta          Directorio de los archivos de personajes.
+     * @param rutaJson      Ruta del archivo JSON a repartir si el directorio todavía no existe, o null.
+     * @param defaultShards Número de archivos a crear si el directorio todavía no existe.
+     */
+    public ShardedPersonatgesDAO(String ruta, String rutaJson, int defaultShards) {
+        if (defaultShards < 1) {
+            throw new IllegalArgumentException("The number of shards must be positive: " + defaultShards);
+        }
+        this.directory = Paths.get(ruta);
+        this.rutaJson = rutaJson;
+        this.defaultShards = defaultShards;
+    }
+
+    @Override
+    public ArrayList<Personatge> readPersonatges() throws PersistenceException {
+        ArrayList<Personatge> personatges = new ArrayList<>();
+        for (int i = 0; i < shardCount(); i++) {
+            personatges.addAll(shard(i).readPersonatges());
+        }
+        return personatges;
+    }
+
+    @Override
+    public int countPersonatges() throws PersistenceException {
+        int total = 0;
+        boolean canvis = false;
+        for (int i = 0; i < shardCount(); i++) {
+            synchronized (lock(i)) {
+                if (count(i) < 0) {
+                    recordCount(i);
+                    canvis = true;
+                }
+                total += count(i);
+            }
+        }
+        if (canvis) {
+            saveManifest();
+        }
+        return total;
+    }
+
+    @Override
+    public Personatge findByKey(String name, String player) throws PersistenceException {
+        return shardOf(player).findByKey(name, player);
+    }
+
+    @Override
+    public ArrayList<Personatge> searchByPlayer(String player) throws PersistenceException {
+        //El texto buscado puede estar en jugadores de cualquier archivo
+        ArrayList<Personatge> trobats = new ArrayList<>();
+        for (int i = 0; i < shardCount(); i++) {
+            trobats.addAll(shard(i).searchByPlayer(player));
+        }
+        return trobats;
+    }
+
+    @Override
+    public Page<Personatge> readPersonatges(String cursor, int pageSize) throws PersistenceException {
+        //Los archivos se cargan a medida que se recorren, solo hasta completar la página
+        return page(null, cursor, pageSize);
+    }
+
+    @Override
+    public Page<Personatge> searchByPlayer(String player, String cursor, int pageSize) throws PersistenceException {
+        return page(player, cursor, pageSize);
+    }
+
+    @Override
+    public void createPersonatge(Personatge p) throws PersistenceException {
+        createPersonatges(List.of(p));
+    }
+
+    @Override
+    public void deletePersonatge(Personatge p) throws PersistenceException {
+        deletePersonatges(List.of(p));
+    }
+
+    @Override
+    public void updateCharacter(Personatge p) throws PersistenceException {
+        updateCharacters(List.of(p));
+    }
+
+    @Override
+    public void createPersonatges(Collection<? extends Personatge> nous) throws PersistenceException {
+        //Comprobamos todas las claves antes de crear nada en ningún archivo
+        HashSet<PersonatgeKey> claus = new HashSet<>();
+        for (Personatge p : nous) {
+            if (!claus.add(PersonatgeKey.of(p)) || findByKey(p.getName(), p.getPlayer()) != null) {
+                throw new PersistenceException("Error: The character " + p.getName() + " of " + p.getPlayer() + " already exists", null);
+            }
+        }
+
+        write(nous, JSONPersonatgesDAO::createPersonatges);
+    }
+
+    @Override
+    public void deletePersonatges(Collection<? extends Personatge> eliminats) throws PersistenceException {
+        write(eliminats, JSONPersonatgesDAO::deletePersonatges);
+    }
+
+    @Override
+    public void updateCharacters(Collection<? extends Personatge> modificats) throws PersistenceException {
+        write(modificats, JSONPersonatgesDAO::updateCharacters);
+    }
+
+    /**
+     * Obtiene el número de archivos en los que se reparten los personajes.
+     *
+     * @return El número de archivos.
+     * @throws PersistenceException Si no se puede crear o leer el directorio de personajes.
+     */
+    public synchronized int shardCount() throws PersistenceException {
+        open();
+        return shards.length;
+    }
+
+    /**
+     * Calcula el archivo que corresponde a un jugador.
+     *
+     * @param player      Nombre del jugador.
+     * @param shardCount  Número de archivos.
+     * @return La posición del archivo del jugador.
+     */
+    static int shardIndex(String player, int shardCount) {
+        return Math.floorMod(player.hashCode(), shardCount);
+    }
+
+    /**
+     * Operación de escritura sobre los personajes de un archivo.
+     */
+    private interface ShardWrite {
+        void write(JSONPersonatgesDAO shard, List<Personatge> personatges) throws PersistenceException;
+    }
+
+    /**
+     * Ejecuta la escritura en los archivos de los jugadores de los personajes (solo se reescriben esos archivos)
+     * y guarda en el manifiesto el nuevo número de personajes y el estado de cada archivo escrito.
+     * Si falla la escritura de un archivo, su número de personajes se olvida y se vuelve a contar cuando se pida.
+     */
+    private void write(Collection<? extends Personatge> personatges, ShardWrite escriptura) throws PersistenceException {
+        List<List<Personatge>> perShard = split(personatges);
+        try {
+            for (int i = 0; i < perShard.size(); i++) {
+                if (perShard.get(i).isEmpty()) {
+                    continue;
+                }
+                synchronized (lock(i)) {
+                    try {
+                        escriptura.write(shard(i), perShard.get(i));
+                    } catch (PersistenceException e) {
+                        forgetCount(i);
+                        throw e;
+                    }
+                    recordCount(i);
+                }
+            }
+        } finally {
+            saveManifest();
+        }
+    }
+
+    /**
+     * Obtiene el bloqueo de las escrituras de un archivo.
+     */
+    private synchronized Object lock(int index) throws PersistenceException {
+        open();
+        return locks[index];
+    }
+
+    /**
+     * Obtiene el número de personajes conocido de un archivo, o -1 si no se conoce.
+     */
+    private synchronized int count(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Cuenta los personajes de un archivo, cargándolo si hace falta, y apunta el número en el manifiesto junto con
+     * el tamaño y la fecha del archivo. Se llama con el bloqueo del archivo, así que no hay escrituras a medias.
+     */
+    private void recordCount(int index) throws PersistenceException {
+        int count = shard(index).countPersonatges();
+        ShardCount nou = null;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(shardPath(directory, index), BasicFileAttributes.class);
+            nou = new ShardCount(count, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            //Sin el estado del archivo no se guarda el número; se volverá a contar al abrir el directorio
+        }
+        synchronized (this) {
+            counts[index] = count;
+            manifest.counts[index] = nou;
+        }
+    }
+
+    /**
+     * Olvida el número de personajes de un archivo.
+     */
+    private synchronized void forgetCount(int index) {
+        counts[index] = -1;
+        manifest.counts[index] = null;
+    }
+
+    /**
+     * Guarda el manifiesto con el número de personajes de cada archivo. Si no se puede guardar no pasa nada: al abrir
+     * el directorio se descartan los números de los archivos que han cambiado desde que se guardaron.
+     */
+    private synchronized void saveManifest() {
+        try {
+            writeManifest(directory.resolve(MANIFEST), manifest);
+        } catch (IOException e) {
+            //Los archivos modificados se volverán a contar
+        }
+    }
+
+    /**
+     * Lee una página recorriendo los archivos en orden.
+     */
+    private Page<Personatge> page(String player, String cursor, int pageSize) throws PersistenceException {
+        try {
+            //Se recorren los personajes de cada archivo sin copiarlos y solo se copian los de la página
+            return PersonatgesSnapshot.copies(Page.of(new ShardIterator(player), cursor, pageSize));
+        } catch (ShardException e) {
+            throw (PersistenceException) e.getCause();
+        }
+    }
+
+    /**
+     * Reparte los personajes por archivo.
+     */
+    private List<List<Personatge>> split(Collection<? extends Personatge> personatges) throws PersistenceException {
+        int count = shardCount();
+        ArrayList<List<Personatge>> perShard = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            perShard.add(new ArrayList<>());
+        }
+        for (Personatge p : personatges) {
+            perShard.get(shardIndex(p.getPlayer(), count)).add(p);
+        }
+        return perShard;
+    }
+
+    /**
+     * Obtiene el DAO del archivo de un jugador.
+     */
+    private JSONPersonatgesDAO shardOf(String player) throws PersistenceException {
+        return shard(shardIndex(player, shardCount()));
+    }
+
+    /**
+     * Obtiene el DAO del archivo indicado, creándolo la primera vez. El archivo se lee cuando se usa el DAO.
+     */
+    private synchronized JSONPersonatgesDAO shard(int index) throws PersistenceException {
+        open();
+        if (shards[index] == null) {
+            shards[index] = new JSONPersonatgesDAO(shardPath(directory, index).toString());
+        }
+        return shards[index];
+    }
+
+    /**
+     * Comprueba el directorio de personajes la primera vez y lo crea si no existe.
+     */
+    private void open() throws PersistenceException {
+        if (shards != null) {
+            return;
+        }
+        try {
+            if (!Files.isDirectory(directory)) {
+                split(rutaJson, directory, defaultShards);
+            }
+
+            Path ruta = directory.resolve(MANIFEST);
+            Manifest llegit;
+            if (Files.exists(ruta)) {
+                llegit = readManifest(ruta);
+                checkShards(directory, llegit.shards);
+            } else {
+                //Directorio creado antes de guardar el manifiesto: se toma el número del último archivo
+                llegit = new Manifest(lastShard(directory) + 1);
+                checkShards(directory, llegit.shards);
+                writeManifest(ruta, llegit);
+            }
+            if (llegit.counts == null || llegit.counts.length != llegit.shards) {
+                llegit.counts = new ShardCount[llegit.shards];
+            }
+
+            int[] guardats = new int[llegit.shards];
+            Object[] bloquejos = new Object[llegit.shards];
+            for (int i = 0; i < llegit.shards; i++) {
+                guardats[i] = savedCount(llegit, i, shardPath(directory, i));
+                if (guardats[i] < 0) {
+                    llegit.counts[i] = null;
+                }
+                bloquejos[i] = new Object();
+            }
+            manifest = llegit;
+            counts = guardats;
+            locks = bloquejos;
+            shards = new JSONPersonatgesDAO[llegit.shards];
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't open the Characters directory", e);
+        }
+    }
+
+    /**
+     * Crea el directorio de personajes repartiendo los personajes de un archivo JSON en el número de archivos indicado.
+     *
+     * @param rutaJson   Ruta del archivo JSON de origen, o null para empezar sin personajes.
+     * @param directory  Directorio a crear.
+     * @param shardCount Número de archivos.
+     * @throws PersistenceException Si ocurre algún error durante la lectura o la escritura.
+     */
+    static void split(String rutaJson, Path directory, int shardCount) throws PersistenceException {
+        ArrayList<Personatge> personatges = rutaJson != null && Files.exists(Paths.get(rutaJson))
+                ? new JSONPersonatgesDAO(rutaJson).readFile() : new ArrayList<>();
+
+        ArrayList<ArrayList<Personatge>> perShard = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            perShard.add(new ArrayList<>());
+        }
+        for (Personatge p : personatges) {
+            perShard.get(shardIndex(p.getPlayer(), shardCount)).add(p);
+        }
+
+        //Se escribe en un directorio temporal que después se renombra, para no dejar un reparto a medias
+        Path tmp = directory.resolveSibling(directory.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(tmp);
+            for (int i = 0; i < shardCount; i++) {
+                new JSONPersonatgesDAO(shardPath(tmp, i).toString()).writeCharacters(perShard.get(i));
+            }
+            writeManifest(tmp.resolve(MANIFEST), new Manifest(shardCount));
+            Files.move(tmp, directory);
+        } catch (IOException e) {
+            throw new PersistenceException("Error: Couldn't create the Characters directory", e);
+        }
+    }
+
+    /**
+     * Lee el manifiesto del directorio.
+     */
+    private static Manifest readManifest(Path manifest) throws IOException {
+        Manifest leido;
+        try {
+            leido = SharedGson.get().fromJson(Files.readString(manifest, StandardCharsets.UTF_8), Manifest.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid character shards manifest " + manifest, e);
+        }
+        if (leido == null || leido.shards < 1) {
+            throw new IOException("Invalid character shards manifest " + manifest);
+        }
+        return leido;
+    }
+
+    /**
+     * Obtiene el número de personajes de un archivo guardado en el manifiesto, si el archivo no ha cambiado
+     * desde que se contó.
+     *
+     * @return El número de personajes, o -1 si no está en el manifiesto o el archivo ha cambiado.
+     */
+    private static int savedCount(Manifest manifest, int index, Path shard) throws IOException {
+        ShardCount guardat = manifest.counts[index];
+        if (guardat == null) {
+            return -1;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(shard, BasicFileAttributes.class);
+        if (attributes.size() != guardat.size || attributes.lastModifiedTime().toMillis() != guardat.modified) {
+            return -1;
+        }
+        return guardat.count;
+    }
+
+    /**
+     * Guarda el manifiesto del directorio con un renombrado atómico.
+     */
+    private static void writeManifest(Path manifest, Manifest nou) throws IOException {
+        Path tmp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        Files.writeString(tmp, SharedGson.get().toJson(nou), StandardCharsets.UTF_8);
+        Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Obtiene el número más alto de los archivos del directorio.
+     */
+    private static int lastShard(Path directory) throws IOException {
+        int last = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "shard-*.json")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    last = Math.max(last, Integer.parseInt(name.substring("shard-".length(), name.length() - ".json".length())));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Unexpected file " + file + " in the Characters directory", e);
+                }
+            }
+        }
+        if (last < 0) {
+            throw new IOException("No character shards in " + directory);
+        }
+        return last;
+    }
+
+    /**
+     * Comprueba que existen todos los archivos del directorio, del primero al indicado.
+     */
+    private static void checkShards(Path directory, int shardCount) throws IOException {
+        for (int i = 0; i < shardCount; i++) {
+            if (!Files.exists(shardPath(directory, i))) {
+                throw new IOException("Missing character shard " + shardPath(directory, i));
+            }
+        }
+    }
+
+    /**
+     * Obtiene la ruta del archivo indicado dentro del directorio de personajes.
+     */
+    private static Path shardPath(Path directory, int index) {
+        return directory.resolve(String.format("shard-%03d.json", index));
+    }
+
+    /**
+     * Recorre los personajes de todos los archivos en orden, cargando cada archivo solo cuando se llega a él.
+     * Si se indica un jugador, solo se recorren los personajes cuyo jugador lo contiene.
+     */
+    private class ShardIterator implements Iterator<Personatge> {
+        private final String player;
+        private int next;
+        private Iterator<Personatge> actual = Collections.emptyIterator();
+
+        ShardIterator(String player) {
+            this.player = player;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (!actual.hasNext() && next < shardCount()) {
+                    JSONPersonatgesDAO shard = shard(next++);
+                    PersonatgesSnapshot personatges = shard.snapshot();
+                    actual = (player == null ? personatges.values() : personatges.matches(player)).iterator();
+                }
+            } catch (PersistenceException e) {
+                throw new ShardException(e);
+            }
+            return actual.hasNext();
+        }
+
+        @Override
+        public Personatge next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return actual.next();
+        }
+    }
+
+    /**
+     * Contenido del manifiesto del directorio de personajes.
+     */
+    private static class Manifest {
+        private int shards;
+        //Número de personajes de cada archivo, o null si no se conoce
+        private ShardCount[] counts;
+
+        Manifest(int shards) {
+            this.shards = shards;
+            this.counts = new ShardCount[shards];
+        }
+    }
+
+    /**
+     * Número de personajes de un archivo, con el tamaño y la fecha de modificación que tenía el archivo al contarlos.
+     */
+    private static class ShardCount {
+        private int count;
+        private long size;
+        private long modified;
+
+        ShardCount(int count, long size, long modified) {
+            this.count = count;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * Error al cargar un archivo mientras se recorren los personajes.
+     */
+    private static class ShardException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ShardException(PersistenceException cause) {
+            super(cause);
+        }
+    }
+}
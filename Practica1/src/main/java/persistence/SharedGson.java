@@ -0,0 +1,58 @@
+package persistence;
+
+import business.entities.Aventura;
+import business.entities.Combat;
+import business.entities.Monstre;
+import business.entities.personatge.Personatge;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Objeto Gson compartido por todos los DAO y las clases de la API.
+ *
+ * Los monstruos, los combates, las aventuras y los personajes se convierten con adaptadores escritos a mano
+ * que leen y escriben en streaming sin reflexión. Las aventuras se guardan con copias completas de los monstruos,
+ * como en la API; los DAO que guardan referencias al catálogo utilizan AventuraAdapter.toGson().
+ * Gson se puede utilizar desde varios hilos a la vez, así que no hace falta crear uno en cada clase.
+ */
+final class SharedGson {
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Monstre.class, new MonstreAdapter().nullSafe())
+            .registerTypeAdapter(Combat.class, new CombatAdapter(null).nullSafe())
+            .registerTypeAdapter(Aventura.class, new AventuraAdapter(null).nullSafe())
+            .registerTypeHierarchyAdapter(Personatge.class, new PersonatgeAdapter().nullSafe())
+            .create();
+
+    private SharedGson() {
+    }
+
+    /**
+     * Obtiene el objeto Gson compartido.
+     *
+     * @return El objeto Gson con los adaptadores de las entidades.
+     */
+    static Gson get() {
+        return GSON;
+    }
+
+    /**
+     * Lee un texto que se repite entre objetos (como la clase de un personaje o el tipo de daño de un monstruo)
+     * y lo interna en el conjunto de textos del atributo, de forma que todos los objetos comparten la misma cadena.
+     *
+     * @param in   Lector JSON situado en el valor.
+     * @param pool Conjunto de textos del atributo.
+     * @return El texto internado, o null si el valor es null.
+     * @throws IOException Si el valor no es un texto.
+     */
+    static String nextInterned(JsonReader in, StringPool pool) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return pool.intern(in.nextString());
+    }
+}
@@ -0,0 +1,17 @@
+package persistence;
+
+/**
+ * PersonatgesDAO que guarda en memoria todos sus personajes como una PersonatgesSnapshot. PersonatgesRoster
+ * lee directamente de esa versión en lugar de guardar otra copia de los personajes con su propio índice.
+ */
+interface SnapshotSource {
+
+    /**
+     * Obtiene la versión actual de los personajes, leyéndolos del almacenamiento la primera vez.
+     * Cada modificación guardada publica una versión nueva.
+     *
+     * @return La versión actual de los personajes.
+     * @throws PersistenceException Si ocurre algún error durante la lectura de los personajes.
+     */
+    PersonatgesSnapshot snapshot() throws PersistenceException;
+}
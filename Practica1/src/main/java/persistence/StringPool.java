@@ -0,0 +1,57 @@
+package persistence;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conjunto de textos compartidos para un atributo que se repite entre objetos (la dificultad, el dado y el tipo
+ * de daño de los monstruos, o la clase y el jugador de los personajes).
+ *
+ * Todos los DAO pasan estos atributos por el conjunto del atributo al leerlos, sea cual sea el almacenamiento
+ * (JSON, B+tree, binario o base de datos), de forma que miles de monstruos o personajes comparten unas pocas cadenas
+ * en lugar de tener cada uno su copia. Cada conjunto solo guarda sus primeros textos, por si el atributo tuviera
+ * muchos valores distintos; el resto se devuelven sin compartir. Como cada atributo tiene su propio conjunto,
+ * un atributo con muchos valores (como el nombre de los monstruos) no deja sin espacio a los demás.
+ */
+final class StringPool {
+    //Atributos con pocos valores distintos
+    static final StringPool CHALLENGES = new StringPool(256);
+    static final StringPool DAMAGE_DICE = new StringPool(256);
+    static final StringPool DAMAGE_TYPES = new StringPool(256);
+    static final StringPool CLASSES = new StringPool(256);
+    //Atributos con más valores, que igualmente se repiten
+    static final StringPool MONSTER_NAMES = new StringPool(4096);
+    static final StringPool PLAYERS = new StringPool(4096);
+
+    private final int maxInterned;
+    private final ConcurrentHashMap<String, String> interned;
+
+    /**
+     * Constructor de la clase StringPool.
+     *
+     * @param maxInterned Número máximo de textos que se guardan.
+     */
+    StringPool(int maxInterned) {
+        this.maxInterned = maxInterned;
+        this.interned = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Obtiene la cadena compartida igual al texto indicado, añadiéndolo la primera vez si aún hay espacio.
+     *
+     * @param text El texto.
+     * @return La cadena compartida, el mismo texto si no cabe en el conjunto, o null si el texto es null.
+     */
+    String intern(String text) {
+        if (text == null) {
+            return null;
+        }
+        String anterior = interned.get(text);
+        if (anterior != null) {
+            return anterior;
+        }
+        if (interned.size() < maxInterned) {
+            anterior = interned.putIfAbsent(text, text);
+        }
+        return anterior != null ? anterior : text;
+    }
+}
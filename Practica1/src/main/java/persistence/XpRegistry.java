@@ -0,0 +1,203 @@
+package persistence;
+
+import business.entities.personatge.Personatge;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registro de la experiencia de los personajes que comparten todas las aventuras que usan el mismo PersonatgesRoster.
+ *
+ * Cada personaje tiene un contador de experiencia que se actualiza de forma atómica, así que varias aventuras pueden
+ * dar experiencia al mismo personaje a la vez sin bloqueos y sin perder ninguna suma (antes cada aventura guardaba la
+ * experiencia de su copia del personaje, y la última en guardar borraba la de las otras). Los personajes con
+ * experiencia nueva se guardan en el PersonatgesRoster de golpe desde un hilo en segundo plano, como mucho un
+ * intervalo después de recibirla (propiedad {@value #FLUSH_INTERVAL_PROPERTY}, en milisegundos), o al llamar a
+ * {@link #flush()}. La experiencia pendiente de todos los registros también se guarda al cerrarse la aplicación,
+ * aunque no se cierre desde el menú.
+ *
+ * Al guardar solo se suma la experiencia ganada desde el último guardado a la que tiene el personaje en el
+ * PersonatgesRoster, de forma que no se pierde la experiencia que otro proceso haya guardado (por ejemplo, en
+ * la API) y que el PersonatgesRoster haya vuelto a leer.
+ */
+public final class XpRegistry {
+    public static final String FLUSH_INTERVAL_PROPERTY = "lsrpg.xp.flush.interval";
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 500;
+
+    //Un solo hilo guarda la experiencia de todos los registros
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "xp-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+    //Registros que se guardan al cerrarse la aplicación, con un solo hilo de cierre para todos
+    private static final Set<XpRegistry> registres = Collections.newSetFromMap(new WeakHashMap<>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(XpRegistry::flushEnTancar, "xp-shutdown-flush"));
+    }
+
+    private final PersonatgesRoster roster;
+    private final long intervalMillis;
+    //Experiencia total de cada personaje, calculada a partir de la que tenía la primera vez que ganó experiencia
+    private final ConcurrentHashMap<PersonatgeKey, Integer> totals;
+    //Experiencia ganada por cada personaje que todavía no se ha guardado
+    private final ConcurrentHashMap<PersonatgeKey, Integer> pendents;
+    private final AtomicBoolean programat;
+    private final Object escriptura;
+
+    /**
+     * Constructor de la clase XpRegistry.
+     *
+     * @param roster PersonatgesRoster donde se guarda la experiencia.
+     */
+    XpRegistry(PersonatgesRoster roster) {
+        this.roster = roster;
+        this.intervalMillis = Long.getLong(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL_MILLIS);
+        this.totals = new ConcurrentHashMap<>();
+        this.pendents = new ConcurrentHashMap<>();
+        this.programat = new AtomicBoolean();
+        this.escriptura = new Object();
+        synchronized (registres) {
+            registres.add(this);
+        }
+    }
+
+    /**
+     * Suma experiencia a un personaje. La primera vez (o la primera después de que el PersonatgesRoster vuelva
+     * a leer los personajes) se parte de la experiencia que tiene el personaje indicado más la que todavía no
+     * se ha guardado.
+     *
+     * @param p  El personaje.
+     * @param xp La experiencia ganada.
+     * @return La experiencia total del personaje después de sumarla.
+     */
+    public int ganarXP(Personatge p, int xp) {
+        PersonatgeKey clau = PersonatgeKey.of(p);
+        //La experiencia pendiente se suma con el total bloqueado, para que los dos cambien a la vez
+        int total = totals.compute(clau, (k, actual) -> {
+            int anterior = actual != null ? actual : p.getXp() + pendents.getOrDefault(k, 0);
+            pendents.merge(k, xp, Integer::sum);
+            return anterior + xp;
+        });
+        if (programat.compareAndSet(false, true)) {
+            flusher.schedule(this::flushEnSegonPla, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return total;
+    }
+
+    /**
+     * Obtiene la experiencia actual de un personaje, que puede ser más nueva que la guardada.
+     *
+     * @param p El personaje.
+     * @return La experiencia del registro, o la del personaje si todavía no ha ganado experiencia.
+     */
+    public int getXp(Personatge p) {
+        Integer total = totals.get(PersonatgeKey.of(p));
+        return total == null ? p.getXp() : total;
+    }
+
+    /**
+     * Guarda en el PersonatgesRoster la experiencia que todavía no se ha guardado, sumándola a la que tiene
+     * cada personaje en el PersonatgesRoster.
+     *
+     * @throws PersistenceException Si ocurre un error al guardar los personajes. Se volverán a intentar guardar.
+     */
+    public void flush() throws PersistenceException {
+        synchronized (escriptura) {
+            HashMap<PersonatgeKey, Integer> guanyada = new HashMap<>();
+            ArrayList<Personatge> modificats = new ArrayList<>();
+            for (PersonatgeKey clau : new ArrayList<>(pendents.keySet())) {
+                //Se quita de forma atómica: la experiencia que se gane después vuelve a quedar pendiente
+                Integer xp = pendents.remove(clau);
+                if (xp == null) {
+                    continue;
+                }
+                Personatge guardat = roster.findByKey(clau.getName(), clau.getPlayer());
+                if (guardat == null) {
+                    totals.remove(clau);
+                    continue;
+                }
+                guardat.setXp(guardat.getXp() + xp);
+                guanyada.put(clau, xp);
+                modificats.add(guardat);
+            }
+            if (modificats.isEmpty()) {
+                return;
+            }
+
+            try {
+                roster.updateCharacters(modificats);
+            } catch (PersistenceException e) {
+                for (Map.Entry<PersonatgeKey, Integer> entry : guanyada.entrySet()) {
+                    pendents.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Descarta los totales de experiencia cuando el PersonatgesRoster vuelve a leer los personajes, porque otro
+     * proceso puede haberlos cambiado. La experiencia pendiente de guardar se conserva y se suma a la leída.
+     */
+    void reloaded() {
+        totals.clear();
+    }
+
+    /**
+     * Deja de seguir la experiencia de los personajes eliminados, para que un personaje nuevo con la misma clave
+     * no herede la experiencia del anterior.
+     *
+     * @param personatges Los personajes.
+     */
+    void forget(Collection<? extends Personatge> personatges) {
+        for (Personatge p : personatges) {
+            PersonatgeKey clau = PersonatgeKey.of(p);
+            totals.remove(clau);
+            pendents.remove(clau);
+        }
+    }
+
+    /**
+     * Guarda la experiencia pendiente de todos los registros al cerrarse la aplicación. Si falla ya no se puede
+     * volver a intentar, y se pierde como mucho la experiencia del último intervalo.
+     */
+    private static void flushEnTancar() {
+        ArrayList<XpRegistry> actius;
+        synchronized (registres) {
+            actius = new ArrayList<>(registres);
+        }
+        for (XpRegistry registre : actius) {
+            try {
+                registre.flush();
+            } catch (PersistenceException e) {
+                //La aplicación se está cerrando
+            }
+        }
+    }
+
+    /**
+     * Guarda la experiencia pendiente desde el hilo en segundo plano. Si falla, se vuelve a intentar más tarde.
+     */
+    private void flushEnSegonPla() {
+        programat.set(false);
+        try {
+            flush();
+        } catch (PersistenceException e) {
+            if (programat.compareAndSet(false, true)) {
+                flusher.schedule(this::flushEnSegonPla, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
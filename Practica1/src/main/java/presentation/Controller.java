@@ -2,16 +2,27 @@ package presentation;
 
 
 import business.AdventureManager;
+import business.AsyncTasks;
 import business.BusinessException;
 import business.PersonatgeManager;
 import business.entities.personatge.Aventurer;
 import business.entities.personatge.Cleric;
 import business.entities.personatge.Mage;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Controlador principal del juego.
+ *
+ * Los monstruos, las aventuras y los personajes se cargan en paralelo. Con la API, la carga de los datos locales
+ * empieza a la vez, por si falla la conexión, y la de la API se da por fallida si supera el tiempo máximo
+ * configurado con la propiedad del sistema {@value #CLOUD_TIMEOUT_PROPERTY} (en milisegundos).
  */
 public class Controller {
+    public static final String CLOUD_TIMEOUT_PROPERTY = "lsrpg.cloud.timeout";
+    public static final long DEFAULT_CLOUD_TIMEOUT_MILLIS = 3000;
 
     private Menu menu;
     private PersonatgeManager personatgeManager;
@@ -52,43 +63,57 @@ public class Controller {
         do {
             typeData = menu.askForInteger("-> Answer: ");
 
-            if (typeData != 1 && typeData != 2) {
+            if (typeData < 1 || typeData > 4) {
                 menu.showMessage("\nInvalid number.\n");
             }
 
-        } while (typeData != 1 && typeData != 2);
+        } while (typeData < 1 || typeData > 4);
 
         //Cargar tipo de Storage
-        try {
-            menu.showMessage("Loading data...");
-            adventureManager.setDataType(typeData);
-            personatgeManager.setDataType(typeData);
+        menu.showMessage("Loading data...");
+        ExecutorService executor = AsyncTasks.newExecutor();
+        CompletableFuture<Void> carrega = load(adventureManager, personatgeManager, typeData, executor);
+
+        //Con la API, los datos locales se cargan a la vez por si falla la conexión
+        AdventureManager localAdventureManager = null;
+        PersonatgeManager localPersonatgeManager = null;
+        CompletableFuture<Void> carregaLocal = null;
+        if (typeData == PersonatgeManager.CLOUD_DATA) {
+            carrega = carrega.orTimeout(Long.getLong(CLOUD_TIMEOUT_PROPERTY, DEFAULT_CLOUD_TIMEOUT_MILLIS), TimeUnit.MILLISECONDS);
+            localAdventureManager = new AdventureManager();
+            localPersonatgeManager = new PersonatgeManager();
+            carregaLocal = load(localAdventureManager, localPersonatgeManager, PersonatgeManager.LOCAL_DATA, executor);
+        }
 
+        try {
             //Comprobar que se carga correctamente la informacion de Storage
-            adventureManager.readMonsters();
-            adventureManager.getAventures();
-            personatgeManager.readPersonatges();
+            AsyncTasks.join(carrega);
 
         } catch (BusinessException e) {
-            //En caso de no conectar correctamente con la API se cambiara a LOCAL_DATA (aqui solo puede causar excepccion el modo CLOUD_DATA)
-            menu.showMessage("Couldn’t connect to the remote server.");
+            //En caso de no conectar correctamente con la API (o no poder abrir el archivo B+tree o la base de datos) se cambiara a LOCAL_DATA
+            if (typeData == PersonatgeManager.CLOUD_DATA) {
+                menu.showMessage("Couldn’t connect to the remote server.");
+            } else {
+                menu.showMessage("Couldn’t open the local data storage.");
+            }
             menu.showMessage("Reverting to local data.\n");
             menu.showMessage("Loading data...");
             typeData = PersonatgeManager.LOCAL_DATA;
-            adventureManager.setDataType(typeData);
-            personatgeManager.setDataType(typeData);
-        }
+            if (carregaLocal != null) {
+                adventureManager = localAdventureManager;
+                personatgeManager = localPersonatgeManager;
+            } else {
+                carregaLocal = load(adventureManager, personatgeManager, typeData, executor);
+            }
 
-        //Comprobar si se efectuan correctamente la lectura de Storage Local (en caso contrario salta exception)
-        if (typeData == PersonatgeManager.LOCAL_DATA) {
+            //Comprobar si se efectuan correctamente la lectura de Storage Local (en caso contrario salta exception)
             try {
-                adventureManager.readMonsters();
-                adventureManager.getAventures();
-                personatgeManager.readPersonatges();
-
-            } catch (BusinessException e) {
+                AsyncTasks.join(carregaLocal);
+            } catch (BusinessException ex) {
                 throw new BusinessException("Error: Can not acces to the LOCAL STORAGE.", null);
             }
+        } finally {
+            executor.shutdown();
         }
 
         menu.showMessage("Data was successfully loaded.\n");
@@ -102,6 +127,16 @@ public class Controller {
     }
 
 
+    /**
+     * Carga a la vez los datos de los dos gestores con el tipo de datos indicado.
+     *
+     * @return El resultado de la carga, que acaba cuando se han cargado todos los datos o alguno ha fallado.
+     */
+    private static CompletableFuture<Void> load(AdventureManager adventureManager, PersonatgeManager personatgeManager,
+                                                int typeData, ExecutorService executor) {
+        return CompletableFuture.allOf(adventureManager.load(typeData, executor), personatgeManager.load(typeData, executor));
+    }
+
     /**
      * Ejecuta la opción seleccionada por el usuario.
      *
@@ -128,6 +163,8 @@ public class Controller {
                     break;
 
                 case EXIT:
+                    //Guardar la experiencia pendiente antes de salir
+                    adventureManager.flushXP();
                     menu.showMessage("Tavern keeper: “Are you leaving already? See you soon, adventurer.”");
                     return true;
 
@@ -233,10 +270,26 @@ public class Controller {
 
         //buscamos los personajes cuyo player contenga el name introducido por usuario
         String personatges = personatgeManager.searchPersonatges(player);
-        menu.showMessage(personatges);
+        int eleccio;
+        boolean mes;
+        //mostramos una página cada vez, la última opción pasa a la página siguiente
+        do {
+            menu.showMessage(personatges);
+
+            int length = personatgeManager.getPersonatgesFiltratsLength();
+            mes = personatgeManager.hasMorePersonatges();
+            if (mes) {
+                menu.showMessage("\t" + (length + 1) + ". More characters");
+            }
+            menu.showMessage("\t0. Back\n");
+            eleccio = menu.askForInteger("Who would you like to meet [0.." + (mes ? length + 1 : length) + "]:");
 
-        menu.showMessage("\t0. Back\n");
-        int eleccio = menu.askForInteger("Who would you like to meet [0.." + personatgeManager.getPersonatgesFiltratsLength() + "]:");
+            if (mes && eleccio == length + 1) {
+                personatges = personatgeManager.nextPersonatgesPage();
+            } else {
+                mes = false;
+            }
+        } while (mes);
 
         if (eleccio == 0) {
             return;
@@ -361,9 +414,26 @@ public class Controller {
             menu.showMessage("\nTavern keeper: “So, you are looking to go on an adventure?”");
             menu.showMessage("“Where do you fancy going?”");
             menu.showMessage("\nAvailable adventures:");
-            menu.showMessage(adventureManager.showAdventures());
+            String aventures = adventureManager.showAdventures();
+            int indexAventura;
+            boolean mes;
+            //mostramos una página cada vez, la última opción pasa a la página siguiente
+            do {
+                menu.showMessage(aventures);
 
-            int indexAventura = menu.askForInteger("-> Choose an adventure: ");
+                int length = adventureManager.getAdventuresPageLength();
+                mes = adventureManager.hasMoreAdventures();
+                if (mes) {
+                    menu.showMessage("\t" + (length + 1) + ". More adventures\n");
+                }
+                indexAventura = menu.askForInteger("-> Choose an adventure: ");
+
+                if (mes && indexAventura == length + 1) {
+                    aventures = adventureManager.nextAdventuresPage();
+                } else {
+                    mes = false;
+                }
+            } while (mes);
 
             String name = adventureManager.setAdventure(indexAventura -1);
             menu.showMessage("Tavern keeper: “" +name+ "”");
@@ -397,10 +467,26 @@ public class Controller {
 
                 //Fem que mostri tots els personatges fent que busqui un sense nom
                 //(com quan en la opcio de llistar personatges no ens introduien res)
-                menu.showMessage(personatgeManager.searchPersonatges(""));
-                int index = menu.askForInteger("-> Choose character " +(i+1)+ " in your party: ");
-
-                adventureManager.addCharacterToParty(index -1);
+                String personatges = personatgeManager.searchPersonatges("");
+                int index;
+                do {
+                    menu.showMessage(personatges);
+
+                    int length = personatgeManager.getPersonatgesFiltratsLength();
+                    mes = personatgeManager.hasMorePersonatges();
+                    if (mes) {
+                        menu.showMessage("\t" + (length + 1) + ". More characters\n");
+                    }
+                    index = menu.askForInteger("-> Choose character " +(i+1)+ " in your party: ");
+
+                    if (mes && index == length + 1) {
+                        personatges = personatgeManager.nextPersonatgesPage();
+                    } else {
+                        mes = false;
+                    }
+                } while (mes);
+
+                adventureManager.addCharacterToParty(personatgeManager.getNameByIndex(index -1), personatgeManager.getPlayerByIndex(index -1));
             }
 
             menu.showMessage("\n\n------------------------------");
@@ -482,6 +568,9 @@ public class Controller {
 
             }
 
+            //Guardar la experiencia de la aventura sin esperar al guardado en segundo plano
+            adventureManager.flushXP();
+
             if (adventureManager.monstresMorts()) {
                 menu.showMessage("\nCongratulations, your party completed “" +name+ "”");
             }
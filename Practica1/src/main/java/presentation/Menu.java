@@ -32,7 +32,9 @@ public class Menu {
 
         System.out.println("Do you want to use your local or cloud data?");
         System.out.println("\t1) Local data");
-        System.out.println("\t2) Cloud data\n");
+        System.out.println("\t2) Cloud data");
+        System.out.println("\t3) Local data (B+tree file)");
+        System.out.println("\t4) Local data (H2 database)\n");
 
     }
 
@@ -0,0 +1,129 @@
+package persistence;
+
+import business.entities.Aventura;
+import business.entities.Combat;
+import business.entities.Monstre;
+import business.entities.personatge.Personatge;
+import business.entities.personatge.PersonatgeJSON;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+
+/**
+ * Programa que compara el rendimiento de la conversión a JSON y de JSON con los adaptadores escritos a mano
+ * de SharedGson y con la conversión por reflexión de un Gson sin adaptadores.
+ *
+ * Se ejecuta con {@code java -cp target/classes:target/test-classes:gson.jar persistence.GsonBenchmark [iteraciones]} y muestra,
+ * para cada tipo de dato, cuántos objetos por segundo se escriben y se leen con cada Gson.
+ */
+public final class GsonBenchmark {
+    private static final int DEFAULT_ITERATIONS = 200;
+    private static final int WARMUP_ITERATIONS = 50;
+
+    private GsonBenchmark() {
+    }
+
+    /**
+     * Ejecuta la comparación.
+     *
+     * @param args Número de iteraciones (opcional).
+     */
+    public static void main(String[] args) {
+        int iteracions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        Gson reflexio = new Gson();
+        Gson adaptadors = SharedGson.get();
+
+        ArrayList<Monstre> monstres = monstres(200);
+        ArrayList<Aventura> aventures = aventures(monstres, 50);
+        ArrayList<Personatge> personatges = personatges(2000);
+
+        System.out.printf("%-12s %-10s %15s %15s %8s%n", "Type", "Operation", "Reflective/s", "Adapters/s", "Gain");
+        Type tipusMonstres = new TypeToken<ArrayList<Monstre>>() {}.getType();
+        Type tipusAventures = new TypeToken<ArrayList<Aventura>>() {}.getType();
+        compare("Monstre", monstres, tipusMonstres, tipusMonstres, reflexio, adaptadors, iteracions);
+        compare("Aventura", aventures, tipusAventures, tipusAventures, reflexio, adaptadors, iteracions);
+        //Por reflexión hace falta una clase concreta; los adaptadores crean la subclase de cada personaje
+        compare("Personatge", personatges, new TypeToken<ArrayList<PersonatgeJSON>>() {}.getType(),
+                new TypeToken<ArrayList<Personatge>>() {}.getType(), reflexio, adaptadors, iteracions);
+    }
+
+    /**
+     * Mide la escritura y la lectura de una lista de objetos con los dos Gson y muestra el resultado.
+     */
+    private static void compare(String nom, ArrayList<?> dades, Type tipusReflexio, Type tipusAdaptadors,
+                                Gson reflexio, Gson adaptadors, int iteracions) {
+        String json = reflexio.toJson(dades, tipusReflexio);
+
+        double escripturaReflexio = throughput(() -> reflexio.toJson(dades, tipusReflexio), dades.size(), iteracions);
+        double escripturaAdaptadors = throughput(() -> adaptadors.toJson(dades, tipusAdaptadors), dades.size(), iteracions);
+        double lecturaReflexio = throughput(() -> reflexio.fromJson(json, tipusReflexio), dades.size(), iteracions);
+        double lecturaAdaptadors = throughput(() -> adaptadors.fromJson(json, tipusAdaptadors), dades.size(), iteracions);
+
+        System.out.printf("%-12s %-10s %15.0f %15.0f %7.2fx%n", nom, "serialize",
+                escripturaReflexio, escripturaAdaptadors, escripturaAdaptadors / escripturaReflexio);
+        System.out.printf("%-12s %-10s %15.0f %15.0f %7.2fx%n", nom, "parse",
+                lecturaReflexio, lecturaAdaptadors, lecturaAdaptadors / lecturaReflexio);
+    }
+
+    /**
+     * Ejecuta una operación varias veces (después de unas iteraciones de calentamiento) y devuelve
+     * el número de objetos procesados por segundo.
+     */
+    private static double throughput(Runnable operacio, int objectes, int iteracions) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operacio.run();
+        }
+        long inici = System.nanoTime();
+        for (int i = 0; i < iteracions; i++) {
+            operacio.run();
+        }
+        long nanos = System.nanoTime() - inici;
+        return (double) objectes * iteracions * 1_000_000_000L / nanos;
+    }
+
+    private static ArrayList<Monstre> monstres(int n) {
+        String[] challenges = {"Minion", "Lieutenant", "Boss"};
+        String[] types = {"Physical", "Magical", "Psychical"};
+        ArrayList<Monstre> monstres = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            monstres.add(new Monstre("Monster " + i, challenges[i % 3], 10 + i, 5 + i % 40, i % 20,
+                    "d" + (4 + 2 * (i % 5)), types[i % 3]));
+        }
+        return monstres;
+    }
+
+    private static ArrayList<Aventura> aventures(ArrayList<Monstre> monstres, int n) {
+        ArrayList<Aventura> aventures = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Aventura aventura = new Aventura("Adventure " + i, 4);
+            for (int c = 0; c < 4; c++) {
+                Combat combat = new Combat(c);
+                for (int m = 0; m < 10; m++) {
+                    combat.addMonstre(monstres.get((i + c + m / 3) % monstres.size()));
+                }
+                aventura.addCombat(combat);
+            }
+            aventures.add(aventura);
+        }
+        return aventures;
+    }
+
+    private static ArrayList<Personatge> personatges(int n) {
+        String[] classes = {"Adventurer", "Warrior", "Champion", "Cleric", "Paladin", "Mage"};
+        ArrayList<Personatge> personatges = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Personatge p = new PersonatgeJSON();
+            p.setName("Character " + i);
+            p.setPlayer("Player " + i % 50);
+            p.setClase(classes[i % classes.length]);
+            p.setXp(i * 7 % 1000);
+            p.setBody(i % 4);
+            p.setMind(i % 3);
+            p.setSpirit(i % 5);
+            personatges.add(p);
+        }
+        return personatges;
+    }
+}
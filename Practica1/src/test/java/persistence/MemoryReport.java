@@ -0,0 +1,179 @@
+package persistence;
+
+import business.entities.Monstre;
+import business.entities.personatge.Personatge;
+import business.entities.personatge.PersonatgeFactory;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Programa que muestra cuánta memoria ocupa cada monstruo y cada personaje leído con los textos internados
+ * (ver StringPool) y cuánta ocuparía si cada uno tuviera su propia copia de los textos, como antes.
+ *
+ * Se ejecuta con {@code java -cp target/classes:target/test-classes:gson.jar persistence.MemoryReport [objetos]}. Los tamaños son una
+ * estimación para una JVM de 64 bits con referencias comprimidas (cabecera de 12 bytes, referencias de 4 bytes
+ * y objetos alineados a 8 bytes): para cada objeto se suma su tamaño y el de las cadenas que referencia, contando
+ * una sola vez las cadenas compartidas, y se divide entre el número de objetos.
+ */
+public final class MemoryReport {
+    private static final int DEFAULT_OBJECTS = 10000;
+    private static final int HEADER_BYTES = 12;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private MemoryReport() {
+    }
+
+    /**
+     * Muestra la comparación.
+     *
+     * @param args Número de monstruos y de personajes (opcional).
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OBJECTS;
+        Gson gson = SharedGson.get();
+
+        //Los objetos se leen de JSON igual que en los DAO, así que los textos repetidos se internan
+        String jsonMonstres = gson.toJson(monstres(n));
+        String jsonPersonatges = gson.toJson(personatges(n));
+        ArrayList<Monstre> monstres = gson.fromJson(jsonMonstres, new TypeToken<ArrayList<Monstre>>() {}.getType());
+        ArrayList<Personatge> personatges = gson.fromJson(jsonPersonatges, new TypeToken<ArrayList<Personatge>>() {}.getType());
+
+        //Los mismos objetos con su propia copia de cada texto
+        ArrayList<Monstre> monstresCopia = new ArrayList<>(n);
+        for (Monstre m : monstres) {
+            monstresCopia.add(new Monstre(copia(m.getName()), copia(m.getChallenge()), m.getExperience(),
+                    m.getHitPoints(), m.getInitiative(), copia(m.getDamageDice()), copia(m.getDamageType())));
+        }
+        ArrayList<Personatge> personatgesCopia = new ArrayList<>(n);
+        for (Personatge p : personatges) {
+            personatgesCopia.add(PersonatgeFactory.create(copia(p.getName()), copia(p.getPlayer()), copia(p.getClase()),
+                    p.getXp(), p.getBody(), p.getMind(), p.getSpirit()));
+        }
+
+        System.out.printf("%-12s %10s %18s %18s %8s%n", "Type", "Objects", "Copies B/object", "Interned B/object", "Saved");
+        report("Monstre", monstresCopia, monstres);
+        report("Personatge", personatgesCopia, personatges);
+    }
+
+    /**
+     * Muestra los bytes por objeto de las dos listas y el porcentaje que se ahorra.
+     */
+    private static void report(String nom, List<?> copies, List<?> internats) {
+        double abans = (double) retainedBytes(copies) / copies.size();
+        double despres = (double) retainedBytes(internats) / internats.size();
+        System.out.printf("%-12s %10d %18.1f %18.1f %7.1f%%%n", nom, copies.size(), abans, despres,
+                100 * (abans - despres) / abans);
+    }
+
+    /**
+     * Estima la memoria que ocupan los objetos de la lista junto con sus cadenas, contando cada cadena una sola vez.
+     */
+    private static long retainedBytes(List<?> objectes) {
+        IdentityHashMap<String, Boolean> cadenes = new IdentityHashMap<>();
+        long bytes = 0;
+        for (Object o : objectes) {
+            bytes += shallowBytes(o.getClass());
+            for (Class<?> c = o.getClass(); c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.getType() != String.class || Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    String text = valor(field, o);
+                    if (text != null && cadenes.put(text, Boolean.TRUE) == null) {
+                        bytes += stringBytes(text);
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Estima el tamaño de un objeto de la clase indicada sin contar los objetos que referencia.
+     */
+    private static long shallowBytes(Class<?> clase) {
+        long bytes = HEADER_BYTES;
+        for (Class<?> c = clase; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    bytes += fieldBytes(field.getType());
+                }
+            }
+        }
+        return align(bytes);
+    }
+
+    /**
+     * Estima el tamaño de una cadena: el objeto String y su array de bytes (un byte por carácter si todos
+     * los caracteres son Latin-1 y dos si no).
+     */
+    private static long stringBytes(String text) {
+        boolean latin1 = true;
+        for (int i = 0; i < text.length() && latin1; i++) {
+            latin1 = text.charAt(i) < 256;
+        }
+        long array = ARRAY_HEADER_BYTES + (long) text.length() * (latin1 ? 1 : 2);
+        return shallowBytes(String.class) + align(array);
+    }
+
+    private static long fieldBytes(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE_BYTES;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) / 8 * 8;
+    }
+
+    private static String valor(Field field, Object o) {
+        try {
+            field.setAccessible(true);
+            return (String) field.get(o);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Crea una cadena nueva con el mismo texto, como la que se obtenía antes al leer cada objeto.
+     */
+    private static String copia(String text) {
+        return text == null ? null : new String(text);
+    }
+
+    private static ArrayList<Monstre> monstres(int n) {
+        String[] challenges = {"Minion", "Lieutenant", "Boss"};
+        String[] types = {"Physical", "Magical", "Psychical"};
+        ArrayList<Monstre> monstres = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            monstres.add(new Monstre("Monster " + i, challenges[i % 3], 10 + i % 200, 5 + i % 40, i % 20,
+                    "d" + (4 + 2 * (i % 5)), types[i % 3]));
+        }
+        return monstres;
+    }
+
+    private static ArrayList<Personatge> personatges(int n) {
+        String[] classes = {"Adventurer", "Warrior", "Champion", "Cleric", "Paladin", "Mage"};
+        ArrayList<Personatge> personatges = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            personatges.add(PersonatgeFactory.create("Character " + i, "Player " + i % 50, classes[i % classes.length],
+                    i * 7 % 1000, i % 4, i % 3, i % 5));
+        }
+        return personatges;
+    }
+}